@@ -0,0 +1,32 @@
+package jpa.bench;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 벤치마크용 EntityManagerFactory
+ *
+ * "hello" 영속성 유닛을 그대로 사용하되 SQL 출력을 끄고, 벤치마크마다 별도의 H2 인메모리 DB를 사용한다.
+ */
+public final class BenchmarkSupport {
+    private BenchmarkSupport() {
+    }
+
+    public static EntityManagerFactory createEntityManagerFactory(String database) {
+        return createEntityManagerFactory(database, new HashMap<>());
+    }
+
+    public static EntityManagerFactory createEntityManagerFactory(String database, Map<String, Object> overrides) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("javax.persistence.jdbc.url", "jdbc:h2:mem:" + database);
+        properties.put("hibernate.show_sql", "false");
+        properties.put("hibernate.format_sql", "false");
+        properties.put("hibernate.use_sql_comments", "false");
+        // 풀 MBean 이름이 겹치지 않도록 DB 이름을 사용한다.
+        properties.put("hibernate.hikari.poolName", database);
+        properties.putAll(overrides);
+        return Persistence.createEntityManagerFactory("hello", properties);
+    }
+}
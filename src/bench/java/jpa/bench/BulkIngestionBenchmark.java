@@ -0,0 +1,113 @@
+package jpa.bench;
+
+import jpa.shop.domain.Delivery;
+import jpa.shop.domain.Item;
+import jpa.shop.domain.Order;
+import jpa.shop.domain.OrderItem;
+import jpa.shop.domain.OrderStatus;
+import jpa.shop.ingest.BulkIngester;
+import org.openjdk.jmh.annotations.*;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+/**
+ * StatelessSession 대량 적재 처리량 (rows/s)
+ *
+ * 호출마다 10만 행을 적재하고 @OperationsPerInvocation으로 나눠서 점수가 초당 행 수가 되도록 한다.
+ * items: 상품 10만 건
+ * orders: 주문 2만 건 x (배송 1 + 주문 1 + 주문상품 3) = 10만 행
+ * partitions: 키 범위를 나눈 병렬 세션 수 (코어 수만큼 늘려본다, 목표는 4코어에서 100k rows/s 이상)
+ * 호출 전마다 테이블을 비워서 테이블 크기가 결과에 영향을 주지 않게 한다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BulkIngestionBenchmark {
+    private static final int ROWS = 100_000;
+    private static final int ORDERS = ROWS / 5;
+    private static final int CATALOG = 3;
+
+    @Param({"1", "4"})
+    private int partitions;
+
+    @Param({"1000"})
+    private int chunkSize;
+
+    private EntityManagerFactory entityManagerFactory;
+    private BulkIngester ingester;
+    private List<Item> catalog;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        entityManagerFactory = BenchmarkSupport.createEntityManagerFactory("bulk_ingestion");
+        ingester = new BulkIngester(entityManagerFactory, chunkSize, null);
+    }
+
+    @Setup(Level.Invocation)
+    public void truncate() {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        entityManager.getTransaction().begin();
+        entityManager.createNativeQuery("set referential_integrity false").executeUpdate();
+        for (String table : new String[]{"order_item", "orders", "delivery", "category_item", "item"}) {
+            entityManager.createNativeQuery("truncate table " + table).executeUpdate();
+        }
+        entityManager.createNativeQuery("set referential_integrity true").executeUpdate();
+        entityManager.getTransaction().commit();
+        entityManager.close();
+
+        catalog = items(0, CATALOG);
+        ingester.ingestItems(catalog);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        entityManagerFactory.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long items() {
+        return ingester.ingestItemsInParallel(0, ROWS, partitions, BulkIngestionBenchmark::items);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long orders() {
+        return ingester.ingestOrdersInParallel(0, ORDERS, partitions, (from, to) -> LongStream.range(from, to)
+                .mapToObj(key -> order())
+                .collect(Collectors.toList()));
+    }
+
+    private static List<Item> items(long from, long to) {
+        return LongStream.range(from, to).mapToObj(key -> {
+            Item item = new Item();
+            item.setName("item" + key);
+            item.setPrice(1_000);
+            item.setStockQuantity(100);
+            return item;
+        }).collect(Collectors.toList());
+    }
+
+    private Order order() {
+        Order order = new Order();
+        order.setOrderDate(LocalDateTime.now());
+        order.setOrderStatus(OrderStatus.ORDER);
+        order.setDelivery(new Delivery());
+        for (Item item : catalog) {
+            OrderItem orderItem = new OrderItem();
+            orderItem.setItem(item);
+            orderItem.setOrderPrice(item.getPrice());
+            orderItem.setCount(1);
+            order.addOrderItem(orderItem);
+        }
+        return order;
+    }
+}
@@ -0,0 +1,104 @@
+package jpa.bench;
+
+import jpa.shop.domain.Item;
+import jpa.shop.domain.Member;
+import jpa.shop.domain.Order;
+import jpa.shop.domain.OrderItem;
+import jpa.shop.domain.OrderStatus;
+import jpa.support.JdbcRoundTripCounter;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 주문 대량 적재 벤치마크
+ *
+ * Order + OrderItem을 persist()로 적재하면서 데이터베이스로 나간 JDBC 호출 수를 비교한다.
+ * 1. 배치 없음: 엔티티 하나당 INSERT 한번 (IDENTITY 전략을 쓰면 무조건 이렇게 된다.)
+ * 2. 배치 + order_inserts 끔: Order, OrderItem INSERT가 번갈아 나가서 배치가 자주 끊긴다.
+ * 3. 배치 + order_inserts 켬: persistence.xml 기본 설정
+ *
+ * 실행: mvn -Pbench test-compile exec:java -Dexec.mainClass=jpa.bench.BulkLoadBenchmark -Dexec.args="1000000 3"
+ * 인자: 주문 수(기본 1,000,000), 주문당 주문상품 수(기본 3)
+ */
+public class BulkLoadBenchmark {
+    private static final int FLUSH_SIZE = 50;
+    private static final int COMMIT_SIZE = 10_000;
+
+    public static void main(String[] args) {
+        int orders = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int itemsPerOrder = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        run("no batching", orders, itemsPerOrder, 0, false);
+        run("batch_size=50", orders, itemsPerOrder, 50, false);
+        run("batch_size=50 + order_inserts", orders, itemsPerOrder, 50, true);
+    }
+
+    private static void run(String name, int orders, int itemsPerOrder, int batchSize, boolean orderInserts) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("hibernate.jdbc.batch_size", String.valueOf(batchSize));
+        properties.put("hibernate.order_inserts", String.valueOf(orderInserts));
+
+        EntityManagerFactory entityManagerFactory =
+                BenchmarkSupport.createEntityManagerFactory("bulk_" + batchSize + "_" + orderInserts, properties);
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        JdbcRoundTripCounter counter = JdbcRoundTripCounter.attach(entityManager);
+
+        EntityTransaction transaction = entityManager.getTransaction();
+        transaction.begin();
+
+        Member member = new Member();
+        member.setName("bulk");
+        entityManager.persist(member);
+
+        Item[] items = new Item[itemsPerOrder];
+        for (int i = 0; i < itemsPerOrder; i++) {
+            items[i] = new Item();
+            items[i].setName("item" + i);
+            items[i].setPrice(1000 * (i + 1));
+            items[i].setStockQuantity(Integer.MAX_VALUE);
+            entityManager.persist(items[i]);
+        }
+        entityManager.flush();
+        counter.reset();
+
+        long start = System.nanoTime();
+        for (int i = 1; i <= orders; i++) {
+            Order order = new Order();
+            order.setMember(entityManager.getReference(Member.class, member.getId()));
+            order.setOrderDate(LocalDateTime.now());
+            order.setOrderStatus(OrderStatus.ORDER);
+            for (Item item : items) {
+                OrderItem orderItem = new OrderItem();
+                orderItem.setItem(entityManager.getReference(Item.class, item.getId()));
+                orderItem.setOrderPrice(item.getPrice());
+                orderItem.setCount(1);
+                order.addOrderItem(orderItem);
+            }
+            entityManager.persist(order);
+
+            if (i % FLUSH_SIZE == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+            if (i % COMMIT_SIZE == 0) {
+                transaction.commit();
+                transaction.begin();
+            }
+        }
+        transaction.commit();
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        long rows = (long) orders * (itemsPerOrder + 1);
+        System.out.printf("%-32s rows=%,d prepared=%,d statements=%,d batches=%,d roundTrips=%,d (%.3f/row) %,dms%n",
+                name, rows, counter.getPreparedStatements(), counter.getStatements(), counter.getBatches(),
+                counter.getRoundTrips(), (double) counter.getRoundTrips() / rows, elapsedMillis);
+
+        entityManager.close();
+        entityManagerFactory.close();
+    }
+}
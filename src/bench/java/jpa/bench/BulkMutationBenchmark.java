@@ -0,0 +1,153 @@
+package jpa.bench;
+
+import jpa.shop.domain.Category;
+import jpa.shop.domain.Item;
+import jpa.shop.domain.Member;
+import jpa.shop.domain.Order;
+import jpa.shop.domain.OrderStatus;
+import jpa.shop.repository.BulkMutations;
+import org.openjdk.jmh.annotations.*;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 조회 + 변경 감지 vs 벌크 연산
+ *
+ * 회원 한 명의 주문 rows건 취소, 카테고리 하나의 상품 rows건 재고 추가를 비교한다.
+ * *ByDirtyChecking: 엔티티를 모두 조회해서 값을 바꾸고 커밋 (SELECT 1번 + UPDATE rows번, 배치)
+ * *Bulk: UPDATE 1번
+ * *BulkChunked: 식별자 1,000개 범위마다 UPDATE + 커밋
+ * 호출 전마다 상태와 재고를 되돌린다.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BulkMutationBenchmark {
+    private static final int CHUNK_SIZE = 1_000;
+
+    @Param({"10000"})
+    private int rows;
+
+    private EntityManagerFactory entityManagerFactory;
+    private EntityManager entityManager;
+    private Long memberId;
+    private Long categoryId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        entityManagerFactory = BenchmarkSupport.createEntityManagerFactory("bulk_mutation_" + rows);
+        entityManager = entityManagerFactory.createEntityManager();
+        entityManager.getTransaction().begin();
+
+        Member member = new Member();
+        member.setName("kim");
+        entityManager.persist(member);
+        memberId = member.getId();
+
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            Item item = new Item();
+            item.setName("item" + i);
+            item.setPrice(1_000);
+            item.setStockQuantity(0);
+            entityManager.persist(item);
+            items.add(item);
+
+            Order order = new Order();
+            order.setMember(member);
+            order.setOrderDate(LocalDateTime.now());
+            order.setOrderStatus(OrderStatus.ORDER);
+            entityManager.persist(order);
+        }
+
+        Category category = new Category();
+        category.setName("book");
+        category.setItems(items);
+        entityManager.persist(category);
+        categoryId = category.getId();
+
+        entityManager.getTransaction().commit();
+        entityManager.clear();
+    }
+
+    @Setup(Level.Invocation)
+    public void reset() {
+        entityManager.getTransaction().begin();
+        entityManager.createQuery("update Order o set o.orderStatus = :order")
+                .setParameter("order", OrderStatus.ORDER)
+                .executeUpdate();
+        entityManager.createQuery("update jpa.shop.domain.Item i set i.stockQuantity = 0").executeUpdate();
+        entityManager.getTransaction().commit();
+        entityManager.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        entityManager.close();
+        entityManagerFactory.close();
+    }
+
+    @Benchmark
+    public int cancelByDirtyChecking() {
+        entityManager.getTransaction().begin();
+        List<Order> orders = entityManager.createQuery(
+                "select o from Order o where o.member.id = :memberId and o.orderStatus = :order", Order.class)
+                .setParameter("memberId", memberId)
+                .setParameter("order", OrderStatus.ORDER)
+                .getResultList();
+        for (Order order : orders) {
+            order.setOrderStatus(OrderStatus.CANCEL);
+        }
+        entityManager.getTransaction().commit();
+        entityManager.clear();
+        return orders.size();
+    }
+
+    @Benchmark
+    public int cancelBulk() {
+        entityManager.getTransaction().begin();
+        int updated = new BulkMutations(entityManager).cancelOrdersByMember(memberId);
+        entityManager.getTransaction().commit();
+        return updated;
+    }
+
+    @Benchmark
+    public int cancelBulkChunked() {
+        return new BulkMutations(entityManager).cancelOrdersByMember(memberId, CHUNK_SIZE);
+    }
+
+    @Benchmark
+    public int restockByDirtyChecking() {
+        entityManager.getTransaction().begin();
+        List<Item> items = entityManager.createQuery(
+                "select i from Category c join c.items i where c.id = :categoryId", Item.class)
+                .setParameter("categoryId", categoryId)
+                .getResultList();
+        for (Item item : items) {
+            item.setStockQuantity(item.getStockQuantity() + 10);
+        }
+        entityManager.getTransaction().commit();
+        entityManager.clear();
+        return items.size();
+    }
+
+    @Benchmark
+    public int restockBulk() {
+        entityManager.getTransaction().begin();
+        int updated = new BulkMutations(entityManager).restockCategory(categoryId, 10);
+        entityManager.getTransaction().commit();
+        return updated;
+    }
+
+    @Benchmark
+    public int restockBulkChunked() {
+        return new BulkMutations(entityManager).restockCategory(categoryId, 10, CHUNK_SIZE);
+    }
+}
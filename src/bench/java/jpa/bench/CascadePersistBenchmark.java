@@ -0,0 +1,61 @@
+package jpa.bench;
+
+import jpa.Child;
+import jpa.Parent;
+import org.openjdk.jmh.annotations.*;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 영속성 전이(CascadeType.ALL)로 Parent -> Child 그래프를 저장하는 비용
+ *
+ * persist(parent) 한번으로 자식까지 영속화하고 flush()로 INSERT를 전송한다.
+ * 매 호출마다 롤백해서 테이블 크기가 측정에 영향을 주지 않게 한다.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CascadePersistBenchmark {
+    @Param({"1", "10", "100"})
+    private int children;
+
+    private EntityManagerFactory entityManagerFactory;
+    private EntityManager entityManager;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        entityManagerFactory = BenchmarkSupport.createEntityManagerFactory("cascade_persist_" + children);
+        entityManager = entityManagerFactory.createEntityManager();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        entityManager.close();
+        entityManagerFactory.close();
+    }
+
+    @Benchmark
+    public Parent persistGraph() {
+        EntityTransaction transaction = entityManager.getTransaction();
+        transaction.begin();
+
+        Parent parent = new Parent();
+        parent.setName("parent");
+        for (int i = 0; i < children; i++) {
+            Child child = new Child();
+            child.setName("child" + i);
+            parent.addChild(child);
+        }
+        entityManager.persist(parent);
+        entityManager.flush();
+
+        transaction.rollback();
+        entityManager.clear();
+        return parent;
+    }
+}
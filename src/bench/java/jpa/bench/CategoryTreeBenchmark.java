@@ -0,0 +1,118 @@
+package jpa.bench;
+
+import jpa.shop.category.CategoryNode;
+import jpa.shop.category.CategoryTreeService;
+import jpa.shop.domain.Category;
+import org.openjdk.jmh.annotations.*;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 카테고리 트리 읽기: 지연 로딩 vs 재귀 CTE vs 캐시
+ *
+ * 최상위 카테고리 하나 밑에 depth 단계, 단계마다 breadth개의 카테고리를 둔다. (노드 1 + depth * breadth개)
+ * lazyWalk: getChild()로 내려간다. Category.child의 @BatchSize(100) 덕분에 단계마다 breadth / 100 + 1번 SELECT
+ * recursiveQuery: CategoryTreeService.loadSubtree, SELECT 1번 + 트리 만들기
+ * cached: CategoryTreeService.getSubtree, 캐시 적중
+ * 2차 캐시는 끈다. (지연 로딩이 DB 대신 캐시에서 읽지 않도록)
+ *
+ * mvn -Pbench test-compile exec:exec -Djmh.include=CategoryTreeBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CategoryTreeBenchmark {
+    @Param({"10"})
+    private int depth;
+
+    @Param({"50", "500"})
+    private int breadth;
+
+    private EntityManagerFactory entityManagerFactory;
+    private CategoryTreeService service;
+    private Long rootId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Map<String, Object> overrides = new HashMap<>();
+        overrides.put("hibernate.cache.use_second_level_cache", "false");
+        overrides.put("hibernate.cache.use_query_cache", "false");
+        entityManagerFactory = BenchmarkSupport.createEntityManagerFactory("category_tree_" + breadth, overrides);
+        service = new CategoryTreeService(entityManagerFactory);
+
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        entityManager.getTransaction().begin();
+        Category root = category(entityManager, "root", null);
+        rootId = root.getId();
+        List<Category> level = new ArrayList<>();
+        level.add(root);
+        for (int d = 1; d <= depth; d++) {
+            List<Category> next = new ArrayList<>(breadth);
+            for (int i = 0; i < breadth; i++) {
+                next.add(category(entityManager, "category" + d + "-" + i, level.get(i % level.size())));
+            }
+            level = next;
+        }
+        entityManager.getTransaction().commit();
+        entityManager.close();
+
+        int nodes = service.getSubtree(rootId).size();
+        if (nodes != 1 + depth * breadth) {
+            throw new IllegalStateException("노드 수가 다릅니다: " + nodes);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        entityManagerFactory.close();
+    }
+
+    @Benchmark
+    public int lazyWalk() {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            return count(entityManager.find(Category.class, rootId));
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    @Benchmark
+    public int recursiveQuery() {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            return service.loadSubtree(entityManager, rootId).size();
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    @Benchmark
+    public CategoryNode cached() {
+        return service.getSubtree(rootId);
+    }
+
+    private static int count(Category category) {
+        int nodes = 1;
+        for (Category child : category.getChild()) {
+            nodes += count(child);
+        }
+        return nodes;
+    }
+
+    private static Category category(EntityManager entityManager, String name, Category parent) {
+        Category category = new Category();
+        category.setName(name);
+        category.setParent(parent);
+        entityManager.persist(category);
+        return category;
+    }
+}
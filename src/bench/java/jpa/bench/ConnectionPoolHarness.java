@@ -0,0 +1,143 @@
+package jpa.bench;
+
+import jpa.support.ConnectionPoolStatistics;
+import org.hibernate.HibernateException;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import javax.persistence.EntityManagerFactory;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 커넥션 획득 시간 부하 테스트 (내장 풀 vs HikariCP)
+ *
+ * threads개 스레드가 커넥션을 얻고, 짧은 쿼리를 실행하고, 반환하기를 반복한다. 풀 크기는 스레드보다 작게 해서 대기가 생기게 한다.
+ * 커넥션을 얻는 데 걸린 시간(ConnectionProvider.getConnection)의 p50, p99, p99.9, 최대값을 출력한다.
+ * HikariCP는 실행 중 측정한 최대 pending(커넥션을 기다린 스레드 수)도 출력한다.
+ * 내장 풀은 커넥션이 모두 사용 중이면 기다리지 않고 바로 예외를 던진다. 이 경우는 rejected로 세고 획득 시간에서 뺀다.
+ *
+ * 실행: mvn -Pbench test-compile exec:java -Dexec.mainClass=jpa.bench.ConnectionPoolHarness -Dexec.args="64 10 2000"
+ * 인자: 스레드 수(기본 64), 풀 크기(기본 10), 스레드당 반복 수(기본 2,000)
+ */
+public class ConnectionPoolHarness {
+    private static final String BUILT_IN = "org.hibernate.engine.jdbc.connections.internal.DriverManagerConnectionProviderImpl";
+    private static final String HIKARI = "org.hibernate.hikaricp.internal.HikariCPConnectionProvider";
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int poolSize = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 2_000;
+
+        Map<String, Object> builtIn = new HashMap<>();
+        builtIn.put("hibernate.connection.provider_class", BUILT_IN);
+        builtIn.put("hibernate.connection.pool_size", String.valueOf(poolSize));
+        run("built-in", builtIn, threads, iterations);
+
+        Map<String, Object> hikari = new HashMap<>();
+        hikari.put("hibernate.connection.provider_class", HIKARI);
+        hikari.put("hibernate.hikari.maximumPoolSize", String.valueOf(poolSize));
+        hikari.put("hibernate.hikari.minimumIdle", String.valueOf(poolSize));
+        run("hikari", hikari, threads, iterations);
+    }
+
+    private static void run(String name, Map<String, Object> properties, int threads, int iterations) throws Exception {
+        EntityManagerFactory entityManagerFactory = BenchmarkSupport.createEntityManagerFactory("pool_" + name.replace('-', '_'), properties);
+        ConnectionProvider provider = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(ConnectionProvider.class);
+
+        // 예열: 풀을 채우고 JIT가 돌게 한다.
+        work(provider, threads, iterations / 10, new AtomicInteger());
+
+        AtomicInteger maxPending = new AtomicInteger();
+        Thread monitor = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                for (ConnectionPoolStatistics.Pool pool : ConnectionPoolStatistics.pools()) {
+                    maxPending.accumulateAndGet(pool.getPending(), Math::max);
+                }
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+        monitor.setDaemon(true);
+        monitor.start();
+
+        AtomicInteger rejected = new AtomicInteger();
+        long start = System.nanoTime();
+        long[] latencies = work(provider, threads, iterations, rejected);
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        monitor.interrupt();
+
+        // 거절된 획득(-1)은 빼고 정렬한다.
+        latencies = Arrays.stream(latencies).filter(latency -> latency >= 0).sorted().toArray();
+        System.out.printf("%-9s threads=%d acquires=%d rejected=%d elapsed=%.2fs p50=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus maxPending=%d%n",
+                name, threads, latencies.length, rejected.get(), elapsed,
+                percentile(latencies, 0.50), percentile(latencies, 0.99), percentile(latencies, 0.999),
+                latencies[latencies.length - 1] / 1e3, maxPending.get());
+
+        entityManagerFactory.close();
+    }
+
+    // 스레드마다 iterations 번 커넥션을 얻고 쿼리 후 반환한다. 획득 시간(ns)을 모두 반환한다. 거절된 획득은 -1이다.
+    private static long[] work(ConnectionProvider provider, int threads, int iterations, AtomicInteger rejected)
+            throws InterruptedException {
+        long[] latencies = new long[threads * iterations];
+        AtomicInteger failures = new AtomicInteger();
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch go = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            int offset = t * iterations;
+            new Thread(() -> {
+                try {
+                    ready.countDown();
+                    go.await();
+                    for (int i = 0; i < iterations; i++) {
+                        long begin = System.nanoTime();
+                        Connection connection;
+                        try {
+                            connection = provider.getConnection();
+                        } catch (HibernateException e) {
+                            latencies[offset + i] = -1;
+                            rejected.incrementAndGet();
+                            continue;
+                        }
+                        latencies[offset + i] = System.nanoTime() - begin;
+                        try (Statement statement = connection.createStatement();
+                             ResultSet resultSet = statement.executeQuery("select count(*) from orders")) {
+                            resultSet.next();
+                        } finally {
+                            provider.closeConnection(connection);
+                        }
+                    }
+                } catch (SQLException | InterruptedException e) {
+                    failures.incrementAndGet();
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        ready.await();
+        go.countDown();
+        done.await();
+        if (failures.get() > 0) {
+            throw new IllegalStateException(failures.get() + "개 스레드가 실패했습니다.");
+        }
+        return latencies;
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)] / 1e3;
+    }
+}
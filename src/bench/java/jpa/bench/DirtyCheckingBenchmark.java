@@ -0,0 +1,79 @@
+package jpa.bench;
+
+import jpa.MemberOld;
+import org.openjdk.jmh.annotations.*;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 변경 감지 비용
+ *
+ * flush()가 일어나면 영속성 컨텍스트의 모든 엔티티를 스냅샷과 비교한다.
+ * 관리 중인 MemberOld 수(managed)에 따라 flush() 한번의 비용이 어떻게 늘어나는지 본다.
+ *
+ * flushUnchanged: 바뀐 엔티티 없이 flush() -> 스냅샷 비교만 수행
+ * flushOneChanged: 엔티티 하나만 바꾸고 flush() -> 스냅샷 비교 + UPDATE 한번
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DirtyCheckingBenchmark {
+    @Param({"1000", "10000", "100000"})
+    private int managed;
+
+    private EntityManagerFactory entityManagerFactory;
+    private EntityManager entityManager;
+    private List<MemberOld> members;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        entityManagerFactory = BenchmarkSupport.createEntityManagerFactory("dirty_checking_" + managed);
+        entityManager = entityManagerFactory.createEntityManager();
+
+        EntityTransaction transaction = entityManager.getTransaction();
+        transaction.begin();
+        for (int i = 0; i < managed; i++) {
+            entityManager.persist(MemberOld.builder()
+                    .name("member" + i)
+                    .age(i % 100)
+                    .build());
+            if (i % 1_000 == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        transaction.commit();
+        entityManager.clear();
+
+        // 측정하는 동안 트랜잭션을 열어두고 모든 엔티티를 영속 상태로 유지한다.
+        entityManager.getTransaction().begin();
+        members = entityManager.createQuery("select m from MemberOld m", MemberOld.class).getResultList();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        entityManager.getTransaction().rollback();
+        entityManager.close();
+        entityManagerFactory.close();
+    }
+
+    @Benchmark
+    public void flushUnchanged() {
+        entityManager.flush();
+    }
+
+    @Benchmark
+    public void flushOneChanged() {
+        cursor = (cursor + 1) % managed;
+        MemberOld member = members.get(cursor);
+        member.setAge(member.getAge() + 1);
+        entityManager.flush();
+    }
+}
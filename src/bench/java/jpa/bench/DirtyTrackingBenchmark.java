@@ -0,0 +1,83 @@
+package jpa.bench;
+
+import jpa.shop.domain.Order;
+import jpa.shop.domain.OrderStatus;
+import org.hibernate.engine.spi.SelfDirtinessTracker;
+import org.openjdk.jmh.annotations.*;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 바이트코드 향상(인라인 변경 추적) 유무에 따른 flush 비용
+ *
+ * 주문 가져오기처럼 긴 트랜잭션에서 관리 중인 Order가 많을 때 flush() 한번의 비용을 본다.
+ * 향상된 엔티티는 변경된 필드를 스스로 기록하므로 스냅샷과 필드 단위 비교를 하지 않는다.
+ *
+ * 향상 켬: mvn -Pbench clean test-compile exec:exec -Djmh.include=DirtyTrackingBenchmark
+ * 향상 끔: mvn -Pbench clean test-compile exec:exec -Djmh.include=DirtyTrackingBenchmark -DskipEnhance
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DirtyTrackingBenchmark {
+    @Param({"10000", "100000"})
+    private int managed;
+
+    private EntityManagerFactory entityManagerFactory;
+    private EntityManager entityManager;
+    private List<Order> orders;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        System.out.println("enhanced = " + SelfDirtinessTracker.class.isAssignableFrom(Order.class));
+
+        entityManagerFactory = BenchmarkSupport.createEntityManagerFactory("dirty_tracking_" + managed);
+        entityManager = entityManagerFactory.createEntityManager();
+
+        EntityTransaction transaction = entityManager.getTransaction();
+        transaction.begin();
+        for (int i = 0; i < managed; i++) {
+            Order order = new Order();
+            order.setOrderDate(LocalDateTime.now());
+            order.setOrderStatus(OrderStatus.ORDER);
+            entityManager.persist(order);
+            if (i % 1_000 == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        transaction.commit();
+        entityManager.clear();
+
+        entityManager.getTransaction().begin();
+        orders = entityManager.createQuery("select o from Order o", Order.class).getResultList();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        entityManager.getTransaction().rollback();
+        entityManager.close();
+        entityManagerFactory.close();
+    }
+
+    @Benchmark
+    public void flushUnchanged() {
+        entityManager.flush();
+    }
+
+    @Benchmark
+    public void flushOneChanged() {
+        cursor = (cursor + 1) % managed;
+        Order order = orders.get(cursor);
+        order.setOrderStatus(order.getOrderStatus() == OrderStatus.ORDER ? OrderStatus.CANCEL : OrderStatus.ORDER);
+        entityManager.flush();
+    }
+}
@@ -0,0 +1,176 @@
+package jpa.bench;
+
+import jpa.Album;
+import jpa.Book;
+import jpa.Item;
+import jpa.ItemInheritance;
+import jpa.ItemQueries;
+import jpa.Movie;
+import org.openjdk.jmh.annotations.*;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Item 상속관계 매핑 전략별 조회, 저장 (ItemInheritance)
+ *
+ * Album, Book, Movie를 같은 비율로 rows건 저장해두고 전략마다 같은 쿼리를 실행한다.
+ * polymorphicPage: select i from Item i, id 순서로 100건 (SINGLE_TABLE 1개 테이블, JOINED 4개 테이블 외부 조인, TABLE_PER_CLASS UNION ALL)
+ * polymorphicCount: select count(i) from Item i
+ * subtypeByType: where type(i) in (Book) 100건 (구분자 인덱스)
+ * subtypeByTreat: where treat(i as Book).author = ? 100건
+ * subtypeEntity: select b from Book b 100건
+ * insert: Album, Book, Movie를 섞어서 100건 저장 (JOINED는 부모, 자식 테이블에 INSERT 2번)
+ * 2차 캐시는 끈다.
+ *
+ * mvn -Pbench test-compile exec:exec -Djmh.include=ItemInheritanceBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ItemInheritanceBenchmark {
+    private static final int PAGE_SIZE = 100;
+    private static final int INSERTS = 100;
+    private static final int AUTHORS = 100;
+
+    @Param({"single_table", "joined", "table_per_class"})
+    private String inheritance;
+
+    @Param({"1000000"})
+    private int rows;
+
+    private EntityManagerFactory entityManagerFactory;
+    private long minId;
+    private long maxId;
+    private int sequence;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Map<String, Object> overrides = new HashMap<>();
+        overrides.put(ItemInheritance.PROPERTY, inheritance);
+        overrides.put("hibernate.cache.use_second_level_cache", "false");
+        overrides.put("hibernate.cache.use_query_cache", "false");
+        entityManagerFactory = BenchmarkSupport.createEntityManagerFactory("item_inheritance_" + inheritance, overrides);
+
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        entityManager.getTransaction().begin();
+        for (int i = 0; i < rows; i++) {
+            entityManager.persist(item(i));
+            if (i % 1_000 == 999) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        entityManager.getTransaction().commit();
+        Object[] range = entityManager.createQuery("select min(i.id), max(i.id) from jpa.Item i", Object[].class).getSingleResult();
+        minId = (Long) range[0];
+        maxId = (Long) range[1];
+        entityManager.close();
+        sequence = rows;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        entityManagerFactory.close();
+    }
+
+    @Benchmark
+    public List<Item> polymorphicPage() {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            return entityManager.createQuery("select i from jpa.Item i where i.id >= :from order by i.id", Item.class)
+                    .setParameter("from", randomId())
+                    .setMaxResults(PAGE_SIZE)
+                    .getResultList();
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    @Benchmark
+    public long polymorphicCount() {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            return entityManager.createQuery("select count(i) from jpa.Item i", Long.class).getSingleResult();
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    @Benchmark
+    public List<Item> subtypeByType() {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            return new ItemQueries(entityManager).findByTypes(Collections.singletonList(Book.class), PAGE_SIZE);
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    @Benchmark
+    public List<Item> subtypeByTreat() {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            return new ItemQueries(entityManager).findByAuthor("author" + ThreadLocalRandom.current().nextInt(AUTHORS), PAGE_SIZE);
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    @Benchmark
+    public List<Book> subtypeEntity() {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            return new ItemQueries(entityManager).findBooks(PAGE_SIZE);
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INSERTS)
+    public void insert() {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            entityManager.getTransaction().begin();
+            for (int i = 0; i < INSERTS; i++) {
+                entityManager.persist(item(sequence++));
+            }
+            entityManager.getTransaction().commit();
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    private long randomId() {
+        return ThreadLocalRandom.current().nextLong(minId, maxId - PAGE_SIZE);
+    }
+
+    private static Item item(int i) {
+        switch (i % 3) {
+            case 0:
+                Album album = new Album();
+                album.setName("album" + i);
+                album.setArtist("artist" + i % AUTHORS);
+                return album;
+            case 1:
+                Book book = new Book();
+                book.setName("book" + i);
+                book.setAuthor("author" + i % AUTHORS);
+                return book;
+            default:
+                Movie movie = new Movie();
+                movie.setName("movie" + i);
+                movie.setActor("actor" + i % AUTHORS);
+                return movie;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package jpa.bench;
+
+import jpa.MemberOld;
+import org.openjdk.jmh.annotations.*;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * App.main의 JPQL 조회 비용
+ *
+ * likeKim: select m from MemberOld m where m.name like '%kim%' (offset 1, limit 100)
+ * ageOver18: select m from MemberOld m where m.age > 18
+ * 조회한 엔티티는 매번 영속성 컨텍스트에서 비운다.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class JpqlQueryBenchmark {
+    @Param({"10000"})
+    private int members;
+
+    private EntityManagerFactory entityManagerFactory;
+    private EntityManager entityManager;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        entityManagerFactory = BenchmarkSupport.createEntityManagerFactory("jpql_query_" + members);
+        entityManager = entityManagerFactory.createEntityManager();
+
+        EntityTransaction transaction = entityManager.getTransaction();
+        transaction.begin();
+        for (int i = 0; i < members; i++) {
+            // 10명 중 한명은 이름에 kim이 들어간다.
+            String name = (i % 10 == 0 ? "kim" : "lee") + i;
+            entityManager.persist(MemberOld.builder()
+                    .name(name)
+                    .age(i % 40)
+                    .build());
+            if (i % 1_000 == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        transaction.commit();
+        entityManager.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        entityManager.close();
+        entityManagerFactory.close();
+    }
+
+    @Benchmark
+    public List<MemberOld> likeKim() {
+        List<MemberOld> result = entityManager.createQuery("select m from MemberOld m where m.name like '%kim%'", MemberOld.class)
+                .setFirstResult(1)
+                .setMaxResults(100)
+                .getResultList();
+        entityManager.clear();
+        return result;
+    }
+
+    @Benchmark
+    public List<MemberOld> ageOver18() {
+        List<MemberOld> result = entityManager.createQuery("select m from MemberOld m where m.age > 18", MemberOld.class)
+                .getResultList();
+        entityManager.clear();
+        return result;
+    }
+}
@@ -0,0 +1,102 @@
+package jpa.bench;
+
+import jpa.shop.domain.Order;
+import jpa.support.KeysetPage;
+import jpa.support.KeysetPaginator;
+import org.openjdk.jmh.annotations.*;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * offset 페이징 vs 키셋 페이징
+ *
+ * 주문 rows건을 (orderDate, id) 순으로 100건씩 넘길 때 page번째 페이지를 읽는 시간을 비교한다.
+ * offset은 페이지가 뒤로 갈수록 느려지고(10,000 페이지면 앞의 999,900건을 읽고 버린다) 키셋은 페이지와 상관없이 같다.
+ * 주문은 네이티브 SQL(system_range)로 넣는다. 5백만건이면 H2 인메모리 DB가 힙을 많이 쓰므로 -Xmx3g로 포크한다.
+ *
+ * mvn -Pbench test-compile exec:exec -Djmh.include=KeysetPaginationBenchmark
+ * 빠르게 확인할 때: -Djmh.include="KeysetPaginationBenchmark -p rows=1100000"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class KeysetPaginationBenchmark {
+    private static final int PAGE_SIZE = 100;
+    private static final int INSERT_CHUNK = 100_000;
+    private static final String ORDER_BY_DATE = "select o from Order o order by o.orderDate, o.id";
+
+    @Param({"5000000"})
+    private int rows;
+
+    @Param({"1", "10000"})
+    private int page;
+
+    private EntityManagerFactory entityManagerFactory;
+    private EntityManager entityManager;
+    private KeysetPaginator<Order> paginator;
+    private String token;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // 같은 SQL, 같은 파라미터를 반복하면 H2가 이전 결과를 재사용해서 offset 비용이 측정되지 않는다.
+        String database = "keyset_pagination_" + rows;
+        Map<String, Object> overrides = new HashMap<>();
+        overrides.put("javax.persistence.jdbc.url", "jdbc:h2:mem:" + database + ";OPTIMIZE_REUSE_RESULTS=0");
+        entityManagerFactory = BenchmarkSupport.createEntityManagerFactory(database, overrides);
+        entityManager = entityManagerFactory.createEntityManager();
+
+        // 4건씩 주문일이 같도록 넣어서 정렬키가 겹칠 때 id로 이어지는 경우도 포함한다.
+        for (int from = 1; from <= rows; from += INSERT_CHUNK) {
+            entityManager.getTransaction().begin();
+            entityManager.createNativeQuery("insert into orders (id, orderDate, orderStatus)"
+                    + " select x, dateadd('SECOND', x / 4, timestamp '2020-01-01 00:00:00'), 'ORDER'"
+                    + " from system_range(?, ?)")
+                    .setParameter(1, from)
+                    .setParameter(2, Math.min(rows, from + INSERT_CHUNK - 1))
+                    .executeUpdate();
+            entityManager.getTransaction().commit();
+        }
+
+        paginator = new KeysetPaginator<>(entityManager, Order.class, "orderDate");
+        // 이전 페이지의 마지막 주문 다음부터 읽는 토큰 (클라이언트가 이전 페이지에서 받아온 값)
+        if (page > 1) {
+            Order last = entityManager.createQuery(ORDER_BY_DATE, Order.class)
+                    .setFirstResult((page - 1) * PAGE_SIZE - 1)
+                    .setMaxResults(1)
+                    .getSingleResult();
+            token = paginator.tokenAfter(last);
+        }
+        entityManager.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        entityManager.close();
+        entityManagerFactory.close();
+    }
+
+    @Benchmark
+    public List<Order> offset() {
+        List<Order> result = entityManager.createQuery(ORDER_BY_DATE, Order.class)
+                .setFirstResult((page - 1) * PAGE_SIZE)
+                .setMaxResults(PAGE_SIZE)
+                .getResultList();
+        entityManager.clear();
+        return result;
+    }
+
+    @Benchmark
+    public KeysetPage<Order> keyset() {
+        KeysetPage<Order> result = paginator.next(token, PAGE_SIZE);
+        entityManager.clear();
+        return result;
+    }
+}
@@ -0,0 +1,123 @@
+package jpa.bench;
+
+import jpa.MemberNameIndex;
+import jpa.MemberOld;
+import jpa.MemberOldQueries;
+import org.openjdk.jmh.annotations.*;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 회원 이름 부분 문자열 검색: like '%검색어%' 전체 읽기 vs n-gram 색인 (MemberNameIndex)
+ *
+ * 회원 members명을 SQL로 넣고(성 + 이름 2음절 + 번호, ex. kimminjun123) 범위마다 rebuild로 색인을 만든 뒤 같은 순위로 100명을 찾는다.
+ * fragment: kim(성, 10%), minjun(1/64), 123456(번호, 몇 명)
+ * likeScan: where lower(m.name) like '%검색어%' (member_old 전체를 읽는다.)
+ * nGramSearch: MemberOldQueries.searchMembersByName (kim은 후보가 DEFAULT_MAX_CANDIDATES보다 많아서 전체를 읽는다.)
+ * gram 행이 회원의 십여 배라서 인메모리 DB에 들어가지 않으므로 임시 디렉터리의 파일 DB를 사용한다. 2차 캐시는 끈다.
+ * H2에서 색인을 만드는 데 오래 걸리므로(100만 명에 10분 정도) 회원 수마다 한 번만 만들고 다음 실행에서도 다시 쓴다.
+ * 다 만든 DB에는 loaded 파일을 남긴다. 데이터를 바꾸면 java.io.tmpdir/member_name_search_* 디렉터리를 지운다.
+ *
+ * mvn -Pbench test-compile exec:exec -Djmh.include=MemberNameSearchBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MemberNameSearchBenchmark {
+    private static final int LIMIT = 100;
+    private static final int CHUNK = 100_000;
+    private static final String LIKE_SCAN =
+            "select m.* from member_old m where lower(m.name) like :pattern"
+                    + " order by case when lower(m.name) = :fragment then 0 else 1 end,"
+                    + " locate(:fragment, lower(m.name)), length(m.name), m.id";
+    private static final String LOAD =
+            "insert into member_old (id, name, age)"
+                    + " select x,"
+                    + " array_get(('kim', 'lee', 'park', 'choi', 'jung', 'kang', 'cho', 'yoon', 'jang', 'lim'), mod(x, 10) + 1)"
+                    + " || array_get(('min', 'seo', 'ji', 'ha', 'do', 'ye', 'yu', 'su'), mod(x / 10, 8) + 1)"
+                    + " || array_get(('jun', 'yeon', 'woo', 'hoon', 'eun', 'bin', 'won', 'ho'), mod(x / 80, 8) + 1)"
+                    + " || x, mod(x, 60) + 10"
+                    + " from system_range(%d, %d)";
+
+    @Param({"1000000", "10000000"})
+    private int members;
+
+    @Param({"kim", "minjun", "123456"})
+    private String fragment;
+
+    private EntityManagerFactory entityManagerFactory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Path directory = Paths.get(System.getProperty("java.io.tmpdir"), "member_name_search_" + members);
+        Path loaded = directory.resolve("loaded");
+        boolean reuse = Files.exists(loaded);
+        Map<String, Object> overrides = new HashMap<>();
+        overrides.put("javax.persistence.jdbc.url", "jdbc:h2:file:" + directory.resolve("db"));
+        overrides.put("hibernate.hbm2ddl.auto", reuse ? "none" : "create");
+        overrides.put("hibernate.cache.use_second_level_cache", "false");
+        overrides.put("hibernate.cache.use_query_cache", "false");
+        entityManagerFactory = BenchmarkSupport.createEntityManagerFactory("member_name_search_" + members, overrides);
+        if (!reuse) {
+            load();
+            Files.createFile(loaded);
+        }
+    }
+
+    private void load() {
+        // 한 트랜잭션으로 넣으면 H2 undo 로그가 커지므로 CHUNK명씩 커밋한다.
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        for (long from = 1; from <= members; from += CHUNK) {
+            long to = Math.min(from + CHUNK - 1, members);
+            entityManager.getTransaction().begin();
+            entityManager.createNativeQuery(String.format(LOAD, from, to)).executeUpdate();
+            MemberNameIndex.rebuild(entityManager, from, to);
+            entityManager.getTransaction().commit();
+        }
+        entityManager.getTransaction().begin();
+        entityManager.createNativeQuery("analyze").executeUpdate();
+        entityManager.getTransaction().commit();
+        entityManager.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        entityManagerFactory.close();
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public List<MemberOld> likeScan() {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            return entityManager.createNativeQuery(LIKE_SCAN, MemberOld.class)
+                    .setParameter("pattern", "%" + fragment + "%")
+                    .setParameter("fragment", fragment)
+                    .setMaxResults(LIMIT)
+                    .getResultList();
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    @Benchmark
+    public List<MemberOld> nGramSearch() {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            return new MemberOldQueries(entityManager).searchMembersByName(fragment, LIMIT);
+        } finally {
+            entityManager.close();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package jpa.bench;
+
+import jpa.MemberOld;
+import org.hibernate.Hibernate;
+import org.openjdk.jmh.annotations.*;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 1차 캐시와 프록시
+ *
+ * findHit: 영속성 컨텍스트에 이미 있는 엔티티를 find() -> DB 조회 없음
+ * findMiss: 영속성 컨텍스트를 비운 뒤 find() -> SELECT 한번
+ * getReferenceInitialize: 영속성 컨텍스트를 비운 뒤 getReference()로 프록시를 받고 초기화 -> SELECT 한번 + 프록시 생성
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PersistenceContextBenchmark {
+    private static final int MEMBERS = 1_000;
+
+    private EntityManagerFactory entityManagerFactory;
+    private EntityManager entityManager;
+    private long firstId;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        entityManagerFactory = BenchmarkSupport.createEntityManagerFactory("persistence_context");
+        entityManager = entityManagerFactory.createEntityManager();
+
+        EntityTransaction transaction = entityManager.getTransaction();
+        transaction.begin();
+        for (int i = 0; i < MEMBERS; i++) {
+            MemberOld member = MemberOld.builder()
+                    .name("member" + i)
+                    .age(i % 100)
+                    .build();
+            entityManager.persist(member);
+            if (i == 0) {
+                firstId = member.getId();
+            }
+        }
+        transaction.commit();
+        entityManager.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        entityManager.close();
+        entityManagerFactory.close();
+    }
+
+    private long nextId() {
+        cursor = (cursor + 1) % MEMBERS;
+        return firstId + cursor;
+    }
+
+    @Benchmark
+    public MemberOld findHit() {
+        return entityManager.find(MemberOld.class, firstId);
+    }
+
+    @Benchmark
+    public MemberOld findMiss() {
+        entityManager.clear();
+        return entityManager.find(MemberOld.class, nextId());
+    }
+
+    @Benchmark
+    public String getReferenceInitialize() {
+        entityManager.clear();
+        MemberOld reference = entityManager.getReference(MemberOld.class, nextId());
+        Hibernate.initialize(reference);
+        return reference.getName();
+    }
+}
@@ -0,0 +1,170 @@
+package jpa.bench;
+
+import jpa.MemberOld;
+import jpa.MemberOldQueries;
+import jpa.MemberSummary;
+import jpa.RoleType;
+import jpa.shop.domain.Item;
+import jpa.shop.domain.Member;
+import jpa.shop.domain.Order;
+import jpa.shop.domain.OrderItem;
+import jpa.shop.domain.OrderStatus;
+import jpa.shop.dto.ItemStock;
+import jpa.shop.dto.OrderLine;
+import jpa.shop.repository.ItemQueries;
+import jpa.shop.repository.OrderQueries;
+import org.openjdk.jmh.annotations.*;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 엔티티 조회 vs DTO 조회
+ *
+ * 같은 목록 화면 데이터를 엔티티로 조회해서 변환하는 경우와 DTO(생성자 표현식, Tuple)로 바로 조회하는 경우를 비교한다.
+ * 할당량은 -prof gc의 gc.alloc.rate.norm(B/op)을 본다.
+ * members: 회원 목록 (MemberOld 1,000명, description 1KB, 값 타입 컬렉션 포함)
+ * orderLines: 한 회원의 주문 100건 x 주문상품 3건
+ * itemStocks: 상품 1,000개 중 재고 부족 상품 500개
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ProjectionBenchmark {
+    private static final int MEMBERS = 1_000;
+    private static final int ORDERS = 100;
+    private static final int LINES_PER_ORDER = 3;
+    private static final int ITEMS = 1_000;
+    private static final int STOCK_THRESHOLD = 50;
+
+    private EntityManagerFactory entityManagerFactory;
+    private EntityManager entityManager;
+    private Long memberId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        entityManagerFactory = BenchmarkSupport.createEntityManagerFactory("projection");
+        entityManager = entityManagerFactory.createEntityManager();
+        entityManager.getTransaction().begin();
+
+        char[] description = new char[1_024];
+        Arrays.fill(description, 'x');
+        for (int i = 0; i < MEMBERS; i++) {
+            entityManager.persist(MemberOld.builder()
+                    .name("member" + i)
+                    .age(i % 40)
+                    .roleType(RoleType.USER)
+                    .description(new String(description))
+                    .favoriteFood(new HashSet<>(Arrays.asList("chicken", "pizza", "ramen")))
+                    .addressHistory(new ArrayList<>())
+                    .build());
+        }
+
+        Item[] items = new Item[ITEMS];
+        for (int i = 0; i < ITEMS; i++) {
+            items[i] = new Item();
+            items[i].setName("item" + i);
+            items[i].setPrice(1_000);
+            items[i].setStockQuantity(i % 100);
+            entityManager.persist(items[i]);
+        }
+
+        Member member = new Member();
+        member.setName("kim");
+        entityManager.persist(member);
+        memberId = member.getId();
+        for (int i = 0; i < ORDERS; i++) {
+            Order order = new Order();
+            order.setMember(member);
+            order.setOrderDate(LocalDateTime.now());
+            order.setOrderStatus(OrderStatus.ORDER);
+            for (int j = 0; j < LINES_PER_ORDER; j++) {
+                OrderItem orderItem = new OrderItem();
+                orderItem.setItem(items[(i * LINES_PER_ORDER + j) % ITEMS]);
+                orderItem.setOrderPrice(1_000);
+                orderItem.setCount(1);
+                order.addOrderItem(orderItem);
+            }
+            entityManager.persist(order);
+        }
+
+        entityManager.getTransaction().commit();
+        entityManager.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        entityManager.close();
+        entityManagerFactory.close();
+    }
+
+    @Benchmark
+    public List<MemberSummary> membersAsEntities() {
+        List<MemberOld> members = entityManager.createQuery("select m from MemberOld m order by m.name", MemberOld.class)
+                .setMaxResults(MEMBERS)
+                .getResultList();
+        List<MemberSummary> result = new ArrayList<>(members.size());
+        for (MemberOld m : members) {
+            result.add(new MemberSummary(m.getId(), m.getName(), m.getAge(), m.getRoleType(),
+                    m.getAddress() == null ? null : m.getAddress().getCity()));
+        }
+        entityManager.clear();
+        return result;
+    }
+
+    @Benchmark
+    public List<MemberSummary> membersAsDtos() {
+        List<MemberSummary> result = new MemberOldQueries(entityManager).findSummaries(MEMBERS);
+        entityManager.clear();
+        return result;
+    }
+
+    @Benchmark
+    public List<OrderLine> orderLinesAsEntities() {
+        List<OrderLine> result = new ArrayList<>();
+        for (Order o : new OrderQueries(entityManager).findByMemberWithLines(memberId)) {
+            for (OrderItem oi : o.getOrderItem()) {
+                result.add(new OrderLine(o.getId(), o.getOrderDate(), o.getOrderStatus(), o.getMember().getName(),
+                        oi.getItem().getName(), oi.getOrderPrice(), oi.getCount()));
+            }
+        }
+        entityManager.clear();
+        return result;
+    }
+
+    @Benchmark
+    public List<OrderLine> orderLinesAsDtos() {
+        List<OrderLine> result = new OrderQueries(entityManager).findLinesByMember(memberId);
+        entityManager.clear();
+        return result;
+    }
+
+    @Benchmark
+    public List<ItemStock> itemStocksAsEntities() {
+        List<Item> items = entityManager.createQuery(
+                "select i from jpa.shop.domain.Item i where i.stockQuantity < :threshold order by i.stockQuantity, i.id", Item.class)
+                .setParameter("threshold", STOCK_THRESHOLD)
+                .getResultList();
+        List<ItemStock> result = new ArrayList<>(items.size());
+        for (Item i : items) {
+            result.add(new ItemStock(i.getId(), i.getName(), i.getPrice(), i.getStockQuantity()));
+        }
+        entityManager.clear();
+        return result;
+    }
+
+    @Benchmark
+    public List<ItemStock> itemStocksAsDtos() {
+        List<ItemStock> result = new ItemQueries(entityManager).findStockBelow(STOCK_THRESHOLD);
+        entityManager.clear();
+        return result;
+    }
+}
@@ -0,0 +1,107 @@
+package jpa.bench;
+
+import jpa.MemberOld;
+import jpa.support.PersistenceMetrics;
+import org.openjdk.jmh.annotations.*;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 리터럴 JPQL vs 파라미터 바인딩 vs Named 쿼리의 번역, 파싱 비용
+ *
+ * 회원 members명(나이 0~99)을 넣고 나이가 100보다 큰 회원을 찾는다. 결과가 없으므로 번역, 파싱 비용이 대부분이다.
+ * literal: where m.age > 101, 102, ... (매번 다른 JPQL이라 하이버네이트가 SQL로 번역하고 H2도 SQL을 다시 파싱한다.)
+ * bound: where m.age > :age, 문자열 JPQL (쿼리 계획 캐시 적중)
+ * named: MemberOld.findOlderThan (기동할 때 번역해둔 계획)
+ * queryCacheSize: H2가 세션마다 파싱한 SQL을 재사용하는 수 (dataSource.QUERY_CACHE_SIZE, 0이면 매번 파싱)
+ * 끝날 때 쿼리 계획 캐시 적중률을 출력한다. (PersistenceMetrics)
+ *
+ * mvn -Pbench test-compile exec:exec -Djmh.include=QueryPlanCacheBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class QueryPlanCacheBenchmark {
+    private static final String OLDER_THAN = "select m from MemberOld m where m.age > :age";
+
+    @Param({"0", "64"})
+    private String queryCacheSize;
+
+    @Param({"1000"})
+    private int members;
+
+    private EntityManagerFactory entityManagerFactory;
+    private int age = 100;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Map<String, Object> overrides = new HashMap<>();
+        overrides.put("hibernate.hikari.dataSource.QUERY_CACHE_SIZE", queryCacheSize);
+        overrides.put("hibernate.cache.use_second_level_cache", "false");
+        overrides.put("hibernate.cache.use_query_cache", "false");
+        entityManagerFactory = BenchmarkSupport.createEntityManagerFactory("query_plan_cache_" + queryCacheSize, overrides);
+
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        entityManager.getTransaction().begin();
+        for (int i = 0; i < members; i++) {
+            entityManager.persist(MemberOld.builder().name("member" + i).age(i % 100).build());
+        }
+        entityManager.getTransaction().commit();
+        entityManager.close();
+        PersistenceMetrics.of(entityManagerFactory).clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        PersistenceMetrics metrics = PersistenceMetrics.of(entityManagerFactory);
+        System.out.printf("%nqueryPlanCacheHitRatio=%.4f compiles=%d%n", metrics.getQueryPlanCacheHitRatio(), metrics.getQueryPlanCompileCount());
+        entityManagerFactory.close();
+    }
+
+    @Benchmark
+    public List<MemberOld> literal() {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            return entityManager.createQuery("select m from MemberOld m where m.age > " + nextAge(), MemberOld.class)
+                    .getResultList();
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    @Benchmark
+    public List<MemberOld> bound() {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            return entityManager.createQuery(OLDER_THAN, MemberOld.class)
+                    .setParameter("age", nextAge())
+                    .getResultList();
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    @Benchmark
+    public List<MemberOld> named() {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            return entityManager.createNamedQuery("MemberOld.findOlderThan", MemberOld.class)
+                    .setParameter("age", nextAge())
+                    .getResultList();
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    // 결과가 없도록 항상 100보다 크고, literal에서는 매번 다른 JPQL이 된다.
+    private int nextAge() {
+        return ++age;
+    }
+}
@@ -0,0 +1,183 @@
+package jpa.bench;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * 기동 시간 테스트 (App, jpa.shop.Main)
+ *
+ * 실행할 때마다 새 JVM을 띄워서 JVM 시작부터 main 진입, 첫 쿼리(SELECT/INSERT/UPDATE/DELETE, DDL 제외), main 종료까지의 시간을 잰다.
+ * 1. default: persistence.xml 그대로 (스캔, create)
+ * 2. fast: -Djpa.fast_boot=true (등록한 클래스만, validate)
+ * 3. fast+cds: fast + AppCDS 아카이브 (첫 실행에서 로딩한 클래스를 아카이브에 저장해두고 다음 실행부터 매핑해서 사용한다.)
+ * AppCDS는 클래스패스에 디렉터리를 쓸 수 없으므로 target/classes, target/test-classes를 jar로 묶어서 실행한다.
+ * validate는 스키마가 있어야 하므로 인메모리 DB 대신 임시 디렉터리의 H2 파일 DB를 사용하고, 처음에 default로 한 번 실행해서 스키마를 만든다.
+ * jpa.shop.Main은 쿼리를 실행하지 않으므로 main 종료 시간만 본다.
+ *
+ * 실행: mvn -Pbench test-compile exec:java -Dexec.mainClass=jpa.bench.StartupHarness -Dexec.args="5"
+ * 인자: 설정마다 실행 횟수(기본 5), 중앙값을 출력한다.
+ */
+public class StartupHarness {
+    private static final List<String> MAINS = Arrays.asList("jpa.App", "jpa.shop.Main");
+
+    public static void main(String[] args) throws Exception {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        Path directory = Files.createTempDirectory("startup-harness");
+        String url = "jdbc:h2:" + directory.resolve("jpabasic").toAbsolutePath();
+        String archive = directory.resolve("app.jsa").toString();
+        String classpath = jarDirectories(System.getProperty("java.class.path"), directory);
+
+        List<String> common = Arrays.asList(
+                "-Djavax.persistence.jdbc.url=" + url,
+                "-Dhibernate.show_sql=false",
+                "-Dhibernate.format_sql=false",
+                "-Dhibernate.use_sql_comments=false");
+        List<String> fast = concat(common, "-Djpa.fast_boot=true");
+
+        // 스키마 생성, AppCDS 아카이브 생성 (두 main에서 로딩하는 클래스가 거의 같으므로 App으로 만든다.)
+        probe(classpath, common, "jpa.shop.Main");
+        probe(classpath, concat(fast, "-XX:ArchiveClassesAtExit=" + archive), "jpa.App");
+
+        System.out.printf("%-14s %-10s %10s %14s %10s%n", "main", "config", "main(ms)", "firstQuery(ms)", "end(ms)");
+        for (String main : MAINS) {
+            print(classpath, main, "default", runs, common);
+            print(classpath, main, "fast", runs, fast);
+            print(classpath, main, "fast+cds", runs, concat(fast, "-XX:SharedArchiveFile=" + archive));
+        }
+    }
+
+    private static void print(String classpath, String main, String config, int runs, List<String> options) throws Exception {
+        List<long[]> results = new ArrayList<>();
+        for (int i = 0; i < runs; i++) {
+            results.add(probe(classpath, options, main));
+        }
+        System.out.printf("%-14s %-10s %10d %14s %10d%n", main, config,
+                median(results, 0), median(results, 1) < 0 ? "-" : String.valueOf(median(results, 1)), median(results, 2));
+    }
+
+    private static long median(List<long[]> results, int index) {
+        List<Long> values = new ArrayList<>();
+        for (long[] result : results) {
+            values.add(result[index]);
+        }
+        Collections.sort(values);
+        return values.get(values.size() / 2);
+    }
+
+    // 새 JVM에서 Probe를 실행하고 [main 진입, 첫 쿼리, main 종료] (JVM 시작부터 ms)를 읽는다.
+    private static long[] probe(String classpath, List<String> options, String main) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.add("-cp");
+        command.add(classpath);
+        command.addAll(options);
+        command.add(Probe.class.getName());
+        command.add(main);
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+
+        long[] result = null;
+        List<String> output = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                output.add(line);
+                if (line.startsWith("STARTUP ")) {
+                    String[] values = line.substring("STARTUP ".length()).split(" ");
+                    result = new long[]{Long.parseLong(values[0]), Long.parseLong(values[1]), Long.parseLong(values[2])};
+                }
+            }
+        }
+        if (process.waitFor() != 0 || result == null) {
+            throw new IllegalStateException(main + " " + options + " 실행 실패\n" + String.join("\n", output));
+        }
+        return result;
+    }
+
+    // 클래스패스의 디렉터리를 jar로 묶는다.
+    private static String jarDirectories(String classpath, Path directory) throws IOException {
+        List<String> entries = new ArrayList<>();
+        for (String entry : classpath.split(File.pathSeparator)) {
+            Path path = Paths.get(entry);
+            if (!Files.isDirectory(path)) {
+                entries.add(entry);
+                continue;
+            }
+            Path jar = directory.resolve(entries.size() + "-" + path.getFileName() + ".jar");
+            try (JarOutputStream output = new JarOutputStream(Files.newOutputStream(jar));
+                 Stream<Path> files = Files.walk(path)) {
+                for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                    output.putNextEntry(new JarEntry(path.relativize(file).toString().replace(File.separatorChar, '/')));
+                    Files.copy(file, output);
+                    output.closeEntry();
+                }
+            }
+            entries.add(jar.toString());
+        }
+        return String.join(File.pathSeparator, entries);
+    }
+
+    private static List<String> concat(List<String> options, String option) {
+        List<String> result = new ArrayList<>(options);
+        result.add(option);
+        return result;
+    }
+
+    /**
+     * 측정 대상 main을 실행하는 JVM
+     *
+     * org.hibernate.SQL 로거(DEBUG = FINE)로 하이버네이트가 SQL을 준비하는 시점을 받는다. show_sql과 상관없이 동작한다.
+     */
+    public static class Probe {
+        // JUL 로거는 약한 참조로 관리되므로 잡아둔다.
+        private static final Logger SQL = Logger.getLogger("org.hibernate.SQL");
+
+        public static void main(String[] args) throws Exception {
+            long jvmStart = ManagementFactory.getRuntimeMXBean().getStartTime();
+            long[] firstQuery = {-1};
+            SQL.setLevel(Level.FINE);
+            SQL.setUseParentHandlers(false);
+            SQL.addHandler(new Handler() {
+                @Override
+                public void publish(LogRecord record) {
+                    String sql = String.valueOf(record.getMessage()).trim().toLowerCase();
+                    if (firstQuery[0] < 0 && (sql.startsWith("select") || sql.startsWith("insert")
+                            || sql.startsWith("update") || sql.startsWith("delete"))) {
+                        firstQuery[0] = System.currentTimeMillis() - jvmStart;
+                    }
+                }
+
+                @Override
+                public void flush() {
+                }
+
+                @Override
+                public void close() {
+                }
+            });
+
+            long mainStart = System.currentTimeMillis() - jvmStart;
+            Class.forName(args[0]).getMethod("main", String[].class).invoke(null, (Object) new String[0]);
+            long end = System.currentTimeMillis() - jvmStart;
+            System.out.println("STARTUP " + mainStart + " " + firstQuery[0] + " " + end);
+            // 커넥션 풀, 캐시의 백그라운드 스레드를 기다리지 않는다.
+            System.exit(0);
+        }
+    }
+}
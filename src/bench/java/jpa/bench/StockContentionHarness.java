@@ -0,0 +1,135 @@
+package jpa.bench;
+
+import jpa.shop.domain.Item;
+import jpa.shop.stock.StockReservation;
+import jpa.shop.stock.StockReservation.Result;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 인기 상품 재고 차감 경합 테스트
+ *
+ * threads개 스레드가 hot개 상품 중 하나를 골라 1개씩 주문한다. seconds초 동안 또는 재고가 모두 떨어질 때까지 실행한다.
+ * 방식(낙관적 락 + 재시도, 조건부 UPDATE)마다 다음을 출력한다.
+ * 처리량: 초당 성공한 주문 수
+ * abort율: 재시도를 모두 충돌로 실패한 주문 / (성공 + abort)
+ * 충돌: 낙관적 락 충돌로 다시 시도한 횟수
+ * 마지막에 상품마다 (처음 재고 - 성공한 주문 수 = 남은 재고 >= 0)인지 확인하고 아니면 실패한다.
+ *
+ * 실행: mvn -Pbench test-compile exec:java -Dexec.mainClass=jpa.bench.StockContentionHarness -Dexec.args="64 10 5000 10"
+ * 인자: 스레드 수(기본 64), 상품 수(기본 10), 상품당 재고(기본 5,000), 최대 실행 시간 초(기본 10)
+ */
+public class StockContentionHarness {
+    private static final int MAX_ATTEMPTS = 10;
+    private static final long BACKOFF_MILLIS = 1;
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int hot = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int stock = args.length > 2 ? Integer.parseInt(args[2]) : 5_000;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+
+        // 충돌할 때마다 하이버네이트가 남기는 ERROR 로그를 끈다.
+        Logger hibernateLogger = Logger.getLogger("org.hibernate");
+        hibernateLogger.setLevel(Level.OFF);
+
+        boolean oversold = run("optimistic", threads, hot, stock, seconds, (reservation, itemId) -> reservation.reserveOptimistic(itemId, 1));
+        oversold |= run("conditional", threads, hot, stock, seconds, (reservation, itemId) -> reservation.reserveConditional(itemId, 1));
+        if (oversold) {
+            throw new IllegalStateException("재고보다 많이 팔렸습니다.");
+        }
+    }
+
+    private static boolean run(String name, int threads, int hot, int stock, int seconds,
+                               Reserve reserve) throws InterruptedException {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("hibernate.hikari.maximumPoolSize", String.valueOf(threads));
+        EntityManagerFactory entityManagerFactory = BenchmarkSupport.createEntityManagerFactory("stock_" + name, properties);
+        List<Long> itemIds = saveItems(entityManagerFactory, hot, stock);
+        StockReservation reservation = new StockReservation(entityManagerFactory, MAX_ATTEMPTS, BACKOFF_MILLIS);
+
+        AtomicLongArray reserved = new AtomicLongArray(hot);
+        AtomicLongArray results = new AtomicLongArray(Result.values().length);
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        CountDownLatch done = new CountDownLatch(threads);
+
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                try {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    boolean[] soldOut = new boolean[hot];
+                    int soldOutCount = 0;
+                    while (System.nanoTime() < deadline && soldOutCount < hot) {
+                        int index = random.nextInt(hot);
+                        if (soldOut[index]) {
+                            continue;
+                        }
+                        Result result = reserve.apply(reservation, itemIds.get(index));
+                        results.incrementAndGet(result.ordinal());
+                        if (result == Result.RESERVED) {
+                            reserved.incrementAndGet(index);
+                        } else if (result == Result.OUT_OF_STOCK) {
+                            soldOut[index] = true;
+                            soldOutCount++;
+                        }
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        done.await();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        long ok = results.get(Result.RESERVED.ordinal());
+        long aborted = results.get(Result.ABORTED.ordinal());
+        System.out.printf("%-12s threads=%d items=%d elapsed=%.2fs reserved=%d throughput=%.0f/s aborted=%d abortRate=%.2f%% conflicts=%d%n",
+                name, threads, hot, elapsed, ok, ok / elapsed, aborted,
+                ok + aborted == 0 ? 0 : 100.0 * aborted / (ok + aborted), reservation.getConflicts());
+
+        boolean oversold = false;
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        for (int i = 0; i < hot; i++) {
+            int remaining = entityManager.find(Item.class, itemIds.get(i)).getStockQuantity();
+            if (remaining < 0 || remaining != stock - reserved.get(i)) {
+                System.out.printf("  item %d: stock=%d reserved=%d remaining=%d OVERSOLD%n", i, stock, reserved.get(i), remaining);
+                oversold = true;
+            }
+        }
+        entityManager.close();
+        entityManagerFactory.close();
+        return oversold;
+    }
+
+    private static List<Long> saveItems(EntityManagerFactory entityManagerFactory, int hot, int stock) {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        entityManager.getTransaction().begin();
+        List<Long> itemIds = new ArrayList<>();
+        for (int i = 0; i < hot; i++) {
+            Item item = new Item();
+            item.setName("hot" + i);
+            item.setPrice(1_000);
+            item.setStockQuantity(stock);
+            entityManager.persist(item);
+            itemIds.add(item.getId());
+        }
+        entityManager.getTransaction().commit();
+        entityManager.close();
+        return itemIds;
+    }
+
+    private interface Reserve {
+        Result apply(StockReservation reservation, Long itemId);
+    }
+}
@@ -0,0 +1,122 @@
+package jpa.bench;
+
+import jpa.shop.domain.Item;
+import jpa.support.UnitOfWorkExecutor;
+import jpa.support.VirtualThreadPinning;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 작업 단위 처리량 테스트 (가상 스레드 vs 고정 크기 플랫폼 스레드 풀)
+ *
+ * 요청 하나는 다른 서비스를 호출하고(ioMillis 동안 대기) 짧은 트랜잭션 하나(식별자로 상품 재고 조회)를 실행한다.
+ * 실행기마다 처리량(요청/초)과 요청 지연 시간의 p50, p99, 최대값을 출력한다.
+ * 마지막으로 가상 스레드로 요청 수의 1/10을 한 번 더 실행하면서 20ms 이상 캐리어 스레드에 고정된 횟수와 위치를 출력한다.
+ *
+ * 실행: mvn -Pbench test-compile exec:java -Dexec.mainClass=jpa.bench.UnitOfWorkHarness -Dexec.args="10000 200 20 10"
+ * 인자: 요청 수(기본 10,000), 플랫폼 스레드 수(기본 200), 대기 시간 ms(기본 20), 커넥션 풀 크기(기본 10)
+ */
+public class UnitOfWorkHarness {
+    private static final int ITEMS = 1_000;
+
+    public static void main(String[] args) throws Exception {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int platformThreads = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int ioMillis = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        int poolSize = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("hibernate.hikari.maximumPoolSize", String.valueOf(poolSize));
+        properties.put("hibernate.hikari.minimumIdle", String.valueOf(poolSize));
+        EntityManagerFactory entityManagerFactory = BenchmarkSupport.createEntityManagerFactory("unit_of_work", properties);
+        List<Long> itemIds = saveItems(entityManagerFactory);
+
+        // 예열
+        try (UnitOfWorkExecutor executor = UnitOfWorkExecutor.platformThreads(entityManagerFactory, platformThreads)) {
+            run(executor, itemIds, requests / 10, ioMillis);
+        }
+        try (UnitOfWorkExecutor executor = UnitOfWorkExecutor.virtualThreads(entityManagerFactory)) {
+            run(executor, itemIds, requests / 10, ioMillis);
+        }
+
+        try (UnitOfWorkExecutor executor = UnitOfWorkExecutor.platformThreads(entityManagerFactory, platformThreads)) {
+            print("platform(" + platformThreads + ")", requests, run(executor, itemIds, requests, ioMillis));
+        }
+        try (UnitOfWorkExecutor executor = UnitOfWorkExecutor.virtualThreads(entityManagerFactory)) {
+            print("virtual", requests, run(executor, itemIds, requests, ioMillis));
+        }
+        // JFR 스트림이 처리량을 떨어뜨리므로 고정 감지는 따로 실행한다.
+        try (VirtualThreadPinning pinning = new VirtualThreadPinning(Duration.ofMillis(20));
+             UnitOfWorkExecutor executor = UnitOfWorkExecutor.virtualThreads(entityManagerFactory)) {
+            run(executor, itemIds, requests / 10, ioMillis);
+            pinning.close();
+            System.out.println("pinned=" + pinning.getPinned());
+            pinning.getLocations().entrySet().stream()
+                    .sorted((a, b) -> Long.compare(b.getValue(), a.getValue()))
+                    .forEach(entry -> System.out.printf("  %6d %s%n", entry.getValue(), entry.getKey()));
+        }
+        entityManagerFactory.close();
+    }
+
+    // [0]: 전체 실행 시간, [1..]: 요청마다 지연 시간 (ns)
+    private static long[] run(UnitOfWorkExecutor executor, List<Long> itemIds, int requests, int ioMillis) throws Exception {
+        List<Future<Long>> futures = new ArrayList<>(requests);
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            long submitted = System.nanoTime();
+            futures.add(executor.submitRequest(() -> {
+                // 다른 서비스 호출
+                Thread.sleep(ioMillis);
+                Long itemId = itemIds.get(ThreadLocalRandom.current().nextInt(itemIds.size()));
+                executor.inTransaction(entityManager -> entityManager
+                        .createQuery("select i.stockQuantity from jpa.shop.domain.Item i where i.id = :id", Integer.class)
+                        .setParameter("id", itemId)
+                        .getSingleResult());
+                return System.nanoTime() - submitted;
+            }));
+        }
+        long[] result = new long[requests + 1];
+        for (int i = 0; i < requests; i++) {
+            result[i + 1] = futures.get(i).get();
+        }
+        result[0] = System.nanoTime() - start;
+        return result;
+    }
+
+    private static void print(String name, int requests, long[] result) {
+        double elapsed = result[0] / 1e9;
+        long[] latencies = Arrays.copyOfRange(result, 1, result.length);
+        Arrays.sort(latencies);
+        System.out.printf("%-14s requests=%d elapsed=%.2fs throughput=%.0f/s p50=%.1fms p99=%.1fms max=%.1fms%n",
+                name, requests, elapsed, requests / elapsed,
+                latencies[latencies.length / 2] / 1e6,
+                latencies[(int) (latencies.length * 0.99)] / 1e6,
+                latencies[latencies.length - 1] / 1e6);
+    }
+
+    private static List<Long> saveItems(EntityManagerFactory entityManagerFactory) {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        entityManager.getTransaction().begin();
+        List<Long> itemIds = new ArrayList<>();
+        for (int i = 0; i < ITEMS; i++) {
+            Item item = new Item();
+            item.setName("item" + i);
+            item.setPrice(1_000);
+            item.setStockQuantity(100);
+            entityManager.persist(item);
+            itemIds.add(item.getId());
+        }
+        entityManager.getTransaction().commit();
+        entityManager.close();
+        return itemIds;
+    }
+}
@@ -0,0 +1,39 @@
+package jpa;
+
+import jpa.support.SequenceAllocation;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+
+/**
+ * 값 타입 컬렉션 대신 일대다 관계
+ *
+ * 주소 이력을 식별자가 있는 엔티티로 만들고 값은 Address(값 타입)로 가진다.
+ * 식별자가 있어서 하나를 추가하면 INSERT 한 번, 하나를 지우면 DELETE 한 번이다.
+ * 생명주기는 MemberOld가 관리한다. (영속성 전이 + 고아 객체 제거)
+ */
+@Entity
+@Table(name = "address_history")
+@SequenceGenerator(name = "address_history_seq_generator", sequenceName = "address_history_seq", allocationSize = SequenceAllocation.DEFAULT)
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class AddressHistory {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "address_history_seq_generator")
+    private Long id;
+
+    // 연관관계의 주인, 외래 키를 여기서 관리해야 추가할 때 UPDATE가 따로 나가지 않는다.
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "member_id")
+    private MemberOld member;
+
+    @Embedded
+    private Address address;
+
+    AddressHistory(MemberOld member, Address address) {
+        this.member = member;
+        this.address = address;
+    }
+}
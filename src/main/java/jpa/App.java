@@ -1,5 +1,9 @@
 package jpa;
 
+import jpa.support.FastBoot;
+import jpa.support.KeysetPage;
+import jpa.support.KeysetPaginator;
+
 import javax.persistence.*;
 import java.util.List;
 
@@ -117,7 +121,8 @@ import java.util.List;
 public class App {
     public static void main(String[] args) {
         // 설정정보를 가져와서 EntityManagerFactory를 만듬. EntityManagerFactory는 EntityManager를 관리해주는 객체이다.
-        EntityManagerFactory entityManagerFactory = Persistence.createEntityManagerFactory("hello");
+        // Persistence.createEntityManagerFactory("hello")와 같고 -Djpa.fast_boot=true면 빠르게 기동한다. (FastBoot)
+        EntityManagerFactory entityManagerFactory = FastBoot.createEntityManagerFactory("hello");
         // EntityManagerFactory에서 EntityManager를 가져옴. EntityManager는 풀에서 커넥션을 하나 가져온다.
         EntityManager entityManager = entityManagerFactory.createEntityManager();
         EntityTransaction transaction = entityManager.getTransaction();
@@ -225,11 +230,14 @@ public class App {
              * SELECT 절에 조회할 대상을 지정하는 것
              * 프로젝션 대상: 엔티티, 임베디드 타입, 스칼라 타입(숫자, 문자등 기본 데이터 타입)
              * new 연산자를 사용해서 DTO를 통해 가져오는 방법이 가장 좋다. 하지만 패키지명을 그대로 적어야 한다는 단점이 있다.
+             * DTO는 영속성 컨텍스트에 올라가지 않아서 스냅샷, 프록시, 변경 감지 비용이 없다. 목록 화면은 DTO로 조회한다. (MemberOldQueries, OrderQueries.findLinesByMember)
              *
              * 페이징 API
              * JPA는 페이징 API를 간단하게 추상화해준다...
              * setFirstResult(int startPosition) : 조회 시작 위치 (0부터 시작) : offset
              * setMaxResults(int maxResult) : 조회할 데이터 수 : limit
+             * offset은 앞의 데이터를 모두 읽고 버리기 때문에 뒤 페이지일수록 느려진다.
+             * 다음 페이지만 필요하면 마지막으로 읽은 (정렬키, id) 다음부터 읽는 키셋 페이징을 사용한다. (KeysetPaginator)
              *
              * 조인
              * join, left join을 지원한다...
@@ -287,16 +295,23 @@ public class App {
              * ABS, SQRT, MOD
              * SIZE(컬렉션의 사이즈를 확인하는 함수), INDEX(JPA 용도)
              */
-            List<MemberOld> likeKim = entityManager.createQuery("select m from MemberOld m where m.name like '%kim%'", MemberOld.class)
-                    .setFirstResult(1)
-                    .setMaxResults(100)
-                    .getResultList();
+            // 이름에 kim이 들어간 회원, 드문 검색어는 n-gram 색인으로 찾고 kim처럼 흔하면 전체를 읽는다. (MemberNameIndex)
+            List<MemberOld> likeKim = new MemberOldQueries(entityManager).searchMembersByName("kim", 100);
+
+            // 이름(유니크) 순 키셋 페이징, 다음 페이지는 page.getNextToken()으로 조회한다.
+            KeysetPage<MemberOld> page = new KeysetPaginator<>(entityManager, MemberOld.class, "name").first(100);
 
-            List<MemberOld> resultList = entityManager.createQuery("select m from MemberOld m where m.age > 18", MemberOld.class)
-                    .getResultList();
+            /**
+             * Named 쿼리
+             * 엔티티에 @NamedQuery로 이름을 붙여 정의해둔 정적 JPQL
+             * 애플리케이션 로딩 시점에 문법과 타입을 검증하고 SQL로 번역해서 쿼리 계획 캐시에 둔다. (hibernate.query.startup_check)
+             * "select m from Member m"을 MemberOld로 받는 실수는 실행할 때가 아니라 EntityManagerFactory를 만들 때 실패한다.
+             * 값은 리터럴(m.age > 18) 대신 파라미터로 바인딩한다. 값마다 JPQL 문자열이 달라지면 쿼리 계획 캐시와 JDBC 문장 캐시를 다시 쓰지 못한다.
+             */
+            List<MemberOld> resultList = new MemberOldQueries(entityManager).findOlderThan(18);
 
             // 반환 타입이 명확할 때 사용
-            TypedQuery<MemberOld> typedQuery = entityManager.createQuery("SELECT m FROM Member m", MemberOld.class);
+            TypedQuery<MemberOld> typedQuery = entityManager.createNamedQuery("MemberOld.findAll", MemberOld.class);
 
             // 반환 타입이 명확하지 않을 때 사용
             // Query query = entityManager.createQuery("select m.username, m.age from Member m");
@@ -1,5 +1,8 @@
 package jpa;
 
+import jpa.support.SequenceAllocation;
+import lombok.Getter;
+
 import javax.persistence.*;
 import java.time.LocalDateTime;
 
@@ -18,9 +21,11 @@ import java.time.LocalDateTime;
  */
 @MappedSuperclass
 // @EntityListeners(AuditingEntityListener.class) // 엔티티의 라이프사이클 이벤트를 감지하는 리스너를 지정한다.
+@SequenceGenerator(name = "base_entity_seq_generator", sequenceName = "base_entity_seq", allocationSize = SequenceAllocation.DEFAULT)
+@Getter
 public abstract class BaseEntity {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "base_entity_seq_generator")
     private Long id;
 
     // @CreatedDate // @EntityListeners와 같이 사용됨.
@@ -30,4 +35,15 @@ public abstract class BaseEntity {
     // @LastModifiedDate // @EntityListeners와 같이 사용됨.
     @Column(name = "updated_at", columnDefinition = "DATETIME")
     private LocalDateTime updatedAt;
+
+    // 스프링 데이터 JPA의 Auditing 없이 JPA 콜백으로 등록일, 수정일을 채운다.
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
 }
@@ -6,8 +6,8 @@ import lombok.Setter;
 import javax.persistence.*;
 
 @Entity
-@Table(name = "book_map")
 @DiscriminatorValue("book")
+@NamedQuery(name = "Book.findAll", query = "select b from Book b order by b.id")
 @Getter
 @Setter
 public class Book extends Item {
@@ -1,16 +1,19 @@
 package jpa;
 
+import jpa.support.SequenceAllocation;
 import lombok.Getter;
 import lombok.Setter;
 
 import javax.persistence.*;
 
 @Entity
+@Table(indexes = @Index(name = "idx_child_parent_id", columnList = "parent_id"))
+@SequenceGenerator(name = "child_seq_generator", sequenceName = "child_seq", allocationSize = SequenceAllocation.DEFAULT)
 @Getter
 @Setter
 public class Child {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "child_seq_generator")
     private Long id;
 
     private String name;
@@ -1,5 +1,6 @@
 package jpa;
 
+import jpa.support.SequenceAllocation;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -12,12 +13,13 @@ import javax.persistence.*;
  * 테이블과 객체의 패러다임은 이런 큰 간격이 있다.
  */
 @Entity
-@Table(name = "developer")
+@Table(name = "developer", indexes = @Index(name = "idx_developer_team_id", columnList = "team_id"))
+@SequenceGenerator(name = "developer_seq_generator", sequenceName = "developer_seq", allocationSize = SequenceAllocation.DEFAULT)
 @Getter
 @Setter
 public class Developer {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "developer_seq_generator")
     private Long id;
 
     @Column(name = "name")
@@ -29,7 +31,9 @@ public class Developer {
     @JoinColumn(name = "team_id") // id가 아니라 team_id로 해야 충돌이 일어나지 않는다.
     private Team team;
 
-    @OneToOne
-    @JoinColumn(name = "locker_id", foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
+    // 일대일이지만 반대편(Locker.developers)이 컬렉션이라서 @ManyToOne으로 매핑한다. 유니크 제약조건으로 일대일을 보장하므로 스키마는 @OneToOne과 같다.
+    // 외래키 값으로 프록시를 만들 수 있어서 지연 로딩된다. 반대편은 Locker 참고
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "locker_id", unique = true, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     private Locker locker;
 }
@@ -28,10 +28,17 @@ import javax.persistence.*;
  * 자식 테이블을 통합해서 쿼리하기 어려움...
  *
  * JPA의 기본 전략은 단일 테이블 전략이다.
+ *
+ * 여기서는 단일 테이블 전략이 기본이고 jpa.item_inheritance로 조인, 구현 클래스마다 테이블 전략을 고를 수 있다. (ItemInheritance)
+ * 자식 타입만 조회할 때는 구분자 컬럼(type)으로 거르고 id로 정렬하므로 (type, id) 인덱스를 둔다. 조회 방법은 ItemQueries, 전략별 비교는 ItemInheritanceBenchmark
  */
 @Entity
-@Table(name = "item_map")
+@Table(name = "item_map", indexes = @Index(name = "idx_item_map_type", columnList = "type, id"))
 @Inheritance(strategy = InheritanceType.SINGLE_TABLE)
+@NamedQueries({
+        @NamedQuery(name = "Item.findByTypes", query = "select i from jpa.Item i where type(i) in :types order by type(i), i.id"),
+        @NamedQuery(name = "Item.findByAuthor", query = "select i from jpa.Item i where treat(i as Book).author = :author order by type(i), i.id")
+})
 @DiscriminatorColumn(name = "type", length = 20) // 상속관계 매핑을 할 때 구분자 컬럼을 지정해주는 어노테이션
 @Getter
 @Setter
@@ -0,0 +1,42 @@
+package jpa;
+
+/**
+ * Item(Album, Book, Movie) 상속관계 매핑 전략
+ *
+ * 어노테이션(Item)은 SINGLE_TABLE이고 나머지는 orm.xml(META-INF/item-*.xml)로 전략만 덮어쓴다.
+ * 빌드할 때 고르거나(mvn -Djpa.item_inheritance=joined package) 실행할 때 속성으로 바꾼다. (-Djpa.item_inheritance=joined, FastBoot)
+ *
+ * 테이블 이름은 전략과 상관없이 item_map, album_map, book_map, movie_map이다.
+ * SINGLE_TABLE이면 item_map 하나만 사용하고 자식 엔티티의 @Table은 무시된다.
+ */
+public enum ItemInheritance {
+    SINGLE_TABLE(null),
+    JOINED("META-INF/item-joined.xml"),
+    TABLE_PER_CLASS("META-INF/item-table-per-class.xml");
+
+    public static final String PROPERTY = "jpa.item_inheritance";
+
+    private final String mappingFile;
+
+    ItemInheritance(String mappingFile) {
+        this.mappingFile = mappingFile;
+    }
+
+    /**
+     * 어노테이션을 덮어쓰는 orm.xml, SINGLE_TABLE이면 null
+     */
+    public String getMappingFile() {
+        return mappingFile;
+    }
+
+    public static ItemInheritance from(Object value) {
+        if (value == null || value.toString().trim().isEmpty()) {
+            return SINGLE_TABLE;
+        }
+        try {
+            return valueOf(value.toString().trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(PROPERTY + "는 single_table, joined, table_per_class 중 하나여야 합니다: " + value, e);
+        }
+    }
+}
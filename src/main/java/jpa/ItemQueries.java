@@ -0,0 +1,51 @@
+package jpa;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+/**
+ * Item 조회 전용 쿼리
+ *
+ * TYPE(i): 구분자(type)로 자식 타입만 거른다. 조인 전략이면 item_map의 type 컬럼, 구현 클래스마다 테이블 전략이면 UNION 안의 clazz_ 값으로 거른다.
+ * TREAT(i as Book): 부모 타입으로 조회하면서 자식 타입의 필드(author)로 거른다.
+ * 자식 타입을 알고 있으면 from Book b처럼 자식 엔티티로 바로 조회하는 것이 가장 단순하다. (findBooks)
+ *
+ * Item으로 조회할 때는 type(i), i.id로 정렬한다. 타입 하나만 조회하면 결과는 id 순서와 같지만
+ * H2는 order by가 구분자 인덱스(type, id)의 앞 컬럼부터 시작해야 인덱스 순서로 읽고, 아니면 해당 타입 전체를 정렬한다.
+ * (단일 테이블 100만 건에서 findByTypes 330ms -> 5ms, findByAuthor 316ms -> 17ms, ItemInheritanceBenchmark)
+ * 조인 전략에서는 findByAuthor가 item_map의 다른 타입까지 인덱스 순서로 읽어서 오히려 느려진다. (57ms -> 222ms)
+ * from Book b에서는 type(b)를 쓰지 않는다. 조인 전략이면 하이버네이트 5.3이 구분자를 book_map에서 찾아서 실패한다.
+ * 그래서 단일 테이블 전략에서 findBooks는 Book 전체를 정렬하므로 느리다. (340ms, 조인 전략 3ms)
+ */
+public class ItemQueries {
+    // JPQL은 Item, Book의 @NamedQuery
+    static final String FIND_BY_TYPES = "Item.findByTypes";
+    static final String FIND_BY_AUTHOR = "Item.findByAuthor";
+    static final String FIND_BOOKS = "Book.findAll";
+
+    private final EntityManager entityManager;
+
+    public ItemQueries(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    public List<Item> findByTypes(List<Class<? extends Item>> types, int limit) {
+        return entityManager.createNamedQuery(FIND_BY_TYPES, Item.class)
+                .setParameter("types", types)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    public List<Item> findByAuthor(String author, int limit) {
+        return entityManager.createNamedQuery(FIND_BY_AUTHOR, Item.class)
+                .setParameter("author", author)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    public List<Book> findBooks(int limit) {
+        return entityManager.createNamedQuery(FIND_BOOKS, Book.class)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+}
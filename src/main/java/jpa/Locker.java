@@ -1,9 +1,13 @@
 package jpa;
 
+import jpa.support.SequenceAllocation;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 
 import javax.persistence.*;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * 일대일
@@ -30,20 +34,36 @@ import javax.persistence.*;
  *
  * 참고: 주 테이블과 대상 테이블을 나누는 기준은 비즈니스 관점에서 조회를 더 많이 하느냐 안하느냐의 차이다.
  * 보통 게시판, 첨부파일이라고 한다면 게시판이 주 테이블이 될 가능성이 높다.
+ *
+ * 반대편(mappedBy)의 @OneToOne도 같은 이유로 프록시를 만들 수 없다. 사물함을 조회하면 사물함마다 개발자를 조회했다. (N+1)
+ * 바이트코드 향상의 지연 로딩(@LazyToOne(NO_PROXY))은 하이버네이트 5.3에서 다른 @ManyToOne(LAZY)까지 즉시 로딩하므로 쓰지 않는다. (pom.xml)
+ * @MapsId로 기본키를 공유해도 반대편은 여전히 대상이 있는지 확인해야 해서 사물함이 없는 개발자를 지연 로딩할 수 없다.
+ * 그래서 반대편은 컬렉션(@OneToMany)으로 매핑하고 getDeveloper()로 한 건을 꺼낸다.
+ * @OneToMany의 주인은 @ManyToOne이어야 하므로 Developer.locker는 @ManyToOne + 유니크 외래키로 매핑한다. (@OneToOne과 같은 스키마)
+ * 컬렉션은 항상 지연 로딩되고, 여러 사물함의 개발자를 꺼내면 배치 조회(default_batch_fetch_size)로 100개씩 한 번에 가져온다.
+ * 한 건인 것은 developer.locker_id의 유니크 제약조건이 보장한다.
  */
 @Entity
 @Table(name = "locker")
+@SequenceGenerator(name = "locker_seq_generator", sequenceName = "locker_seq", allocationSize = SequenceAllocation.DEFAULT)
 @Getter
 @Setter
 public class Locker {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "locker_seq_generator")
     private Long id;
 
     private String name;
 
-    @OneToOne(mappedBy = "locker")
-    private Developer developer;
+    // 읽기 전용(연관관계의 주인은 Developer.locker)
+    @OneToMany(mappedBy = "locker")
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private List<Developer> developers = new ArrayList<>();
+
+    public Developer getDeveloper() {
+        return developers.isEmpty() ? null : developers.get(0);
+    }
 }
 /**
  * 다대다
@@ -0,0 +1,38 @@
+package jpa;
+
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.io.Serializable;
+
+/**
+ * 회원 이름 n-gram (MemberNameIndex)
+ *
+ * 이름(소문자)의 위치마다 그 위치에서 시작하는 3글자(끝에서는 남은 글자)를 저장한다. ("kimin" -> kim, imi, min, in, n)
+ * 기본 키(gram, member_id)가 검색용 인덱스이고, member_id 인덱스는 이름이 바뀌거나 회원을 지울 때 사용한다.
+ * 연관관계를 두지 않는다. 회원 INSERT가 JDBC 배치로 늦게 나가도 순서와 상관없이 저장할 수 있다.
+ */
+@Entity
+@Table(name = "member_old_name_gram", indexes = @Index(name = "idx_member_old_name_gram_member_id", columnList = "member_id"))
+@IdClass(MemberNameGram.Key.class)
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Getter
+public class MemberNameGram {
+    @Id
+    @Column(name = "gram", length = MemberNameIndex.GRAM_LENGTH)
+    private String gram;
+
+    @Id
+    @Column(name = "member_id")
+    private Long memberId;
+
+    @NoArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+        private String gram;
+        private Long memberId;
+    }
+}
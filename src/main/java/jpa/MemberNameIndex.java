@@ -0,0 +1,343 @@
+package jpa;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.jdbc.batch.internal.BasicBatchKey;
+import org.hibernate.engine.jdbc.batch.spi.Batch;
+import org.hibernate.engine.jdbc.batch.spi.BatchKey;
+import org.hibernate.engine.jdbc.spi.JdbcCoordinator;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.AutoFlushEvent;
+import org.hibernate.event.spi.AutoFlushEventListener;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.FlushEvent;
+import org.hibernate.event.spi.FlushEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.jdbc.Expectations;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+import javax.persistence.EntityManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * 회원 이름 부분 문자열 검색 (n-gram 색인)
+ *
+ * where m.name like '%kim%'는 앞이 %라서 인덱스를 쓸 수 없고 member_old 전체를 읽는다.
+ * 이름을 3글자씩 잘라서 member_old_name_gram(gram, member_id)에 저장해두고(MemberNameGram)
+ * 검색어의 gram 중 가장 드문 gram을 가진 회원만 후보로 읽은 뒤 실제로 포함하는지 다시 확인한다.
+ * 검색어가 3글자보다 짧으면 그 글자로 시작하는 gram의 회원이 후보다. (gram like 'ki%', 인덱스 범위 검색)
+ * 대소문자는 구분하지 않는다.
+ *
+ * 순위: 1. 이름이 검색어와 같음 2. 검색어가 앞에 있을수록 3. 이름이 짧을수록 4. 식별자
+ * 순위를 매기려면 검색어가 들어간 회원을 모두 읽어야 한다. 후보는 식별자로 하나씩 읽으므로 전체 읽기보다 행마다 몇 배 비싸다.
+ * 그래서 gram마다 후보 수를 maxCandidates + 1개까지만 세어보고, 가장 드문 gram도 maxCandidates를 넘으면
+ * (ex. 성씨처럼 흔한 검색어) 색인 대신 member_old 전체를 읽는다. (MemberNameSearchBenchmark)
+ *
+ * 색인 유지
+ * 하이버네이트 이벤트 리스너(Integrator, META-INF/services)로 회원을 저장, 이름 변경, 삭제할 때 같은 트랜잭션에서 gram도 바꾼다.
+ * gram은 flush마다 모아서 JDBC 배치로 보낸다. flush가 끝나면 같은 트랜잭션의 검색에 보인다.
+ * JPQL/네이티브 벌크 연산, SQL로 직접 넣은 데이터는 리스너를 거치지 않으므로 rebuild로 다시 만든다.
+ */
+public class MemberNameIndex implements Integrator {
+    public static final int GRAM_LENGTH = 3;
+    // 후보가 이보다 많으면 전체를 읽는다. (회원 100만 명에서 전체 읽기와 비용이 비슷해지는 후보 수의 절반 정도)
+    public static final int DEFAULT_MAX_CANDIDATES = 20_000;
+
+    private static final String INSERT = "insert into member_old_name_gram (gram, member_id) values (?, ?)";
+    private static final String DELETE = "delete from member_old_name_gram where member_id = ?";
+    // 이름은 최대 255자
+    private static final String REBUILD =
+            "insert into member_old_name_gram (gram, member_id)"
+                    + " select distinct substring(lower(m.name), p.x, " + GRAM_LENGTH + "), m.id"
+                    + " from member_old m join system_range(1, 255) p on p.x <= length(m.name)"
+                    + " where m.id between :fromId and :toId";
+    private static final String RANKED =
+            " locate(:fragment, lower(m.name)) > 0"
+                    + " order by case when lower(m.name) = :fragment then 0 else 1 end,"
+                    + " locate(:fragment, lower(m.name)), length(m.name), m.id";
+    private static final String SEARCH =
+            "select m.* from member_old m"
+                    + " where m.id in (select g.member_id from member_old_name_gram g where %s) and" + RANKED;
+    static final String GRAM = "g.gram = :gram";
+    static final String PREFIX = "g.gram like :prefix escape '\\'";
+    static final String RAREST_GRAM = String.format(SEARCH, GRAM);
+    static final String GRAM_PREFIX = String.format(SEARCH, PREFIX);
+    static final String SCAN = "select m.* from member_old m where" + RANKED;
+    // gram의 회원 수 (최대 :cap, 인덱스를 cap개까지만 읽는다.)
+    private static final String POSTINGS = "select count(*) from (select 1 from member_old_name_gram g where %s limit :cap)";
+    static final String GRAM_POSTINGS = String.format(POSTINGS, GRAM);
+    static final String PREFIX_POSTINGS = String.format(POSTINGS, PREFIX);
+
+    /**
+     * 이름에 fragment가 들어있는 회원 (순위 순서로 최대 limit명)
+     */
+    public static List<MemberOld> search(EntityManager entityManager, String fragment, int limit) {
+        return search(entityManager, fragment, limit, DEFAULT_MAX_CANDIDATES);
+    }
+
+    @SuppressWarnings("unchecked")
+    static List<MemberOld> search(EntityManager entityManager, String fragment, int limit, int maxCandidates) {
+        String normalized = normalize(fragment);
+        if (normalized.isEmpty()) {
+            throw new IllegalArgumentException("검색어가 비어 있습니다.");
+        }
+        javax.persistence.Query query;
+        if (normalized.length() < GRAM_LENGTH) {
+            String prefix = escapeLike(normalized) + "%";
+            query = postings(entityManager, PREFIX_POSTINGS, "prefix", prefix, maxCandidates) > maxCandidates
+                    ? entityManager.createNativeQuery(SCAN, MemberOld.class)
+                    : entityManager.createNativeQuery(GRAM_PREFIX, MemberOld.class).setParameter("prefix", prefix);
+        } else {
+            // 끝의 짧은 gram은 이름 끝에만 있으므로 검색어에서는 GRAM_LENGTH 글자 gram만 쓴다.
+            // 후보는 가장 드문 gram 하나로 고르고 나머지 gram은 locate로 확인한다.
+            String rarest = null;
+            long rarestPostings = Long.MAX_VALUE;
+            for (int i = 0; i + GRAM_LENGTH <= normalized.length() && rarestPostings > 0; i++) {
+                String gram = normalized.substring(i, i + GRAM_LENGTH);
+                long postings = postings(entityManager, GRAM_POSTINGS, "gram", gram, maxCandidates);
+                if (postings < rarestPostings) {
+                    rarest = gram;
+                    rarestPostings = postings;
+                }
+            }
+            query = rarestPostings > maxCandidates
+                    ? entityManager.createNativeQuery(SCAN, MemberOld.class)
+                    : entityManager.createNativeQuery(RAREST_GRAM, MemberOld.class).setParameter("gram", rarest);
+        }
+        return query.setParameter("fragment", normalized)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    // 조건에 맞는 gram 행 수, maxCandidates를 넘으면 maxCandidates + 1
+    private static long postings(EntityManager entityManager, String sql, String name, String value, int maxCandidates) {
+        return ((Number) entityManager.createNativeQuery(sql)
+                .setParameter(name, value)
+                .setParameter("cap", maxCandidates + 1)
+                .getSingleResult()).longValue();
+    }
+
+    // gram을 모두 지우고 member_old에서 다시 만든다. 이미 시작한 트랜잭션 안에서 호출한다. 만든 gram 수를 반환한다.
+    public static int rebuild(EntityManager entityManager) {
+        return rebuild(entityManager, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    // 식별자가 fromId ~ toId인 회원의 gram만 다시 만든다. 회원이 많으면 범위를 나눠서 트랜잭션마다 호출한다.
+    public static int rebuild(EntityManager entityManager, long fromId, long toId) {
+        entityManager.createNativeQuery("delete from member_old_name_gram where member_id between :fromId and :toId")
+                .setParameter("fromId", fromId)
+                .setParameter("toId", toId)
+                .executeUpdate();
+        return entityManager.createNativeQuery(REBUILD)
+                .setParameter("fromId", fromId)
+                .setParameter("toId", toId)
+                .executeUpdate();
+    }
+
+    // 위치마다 그 위치에서 시작하는 GRAM_LENGTH 글자 (끝에서는 남은 글자)
+    static Set<String> grams(String name) {
+        String normalized = normalize(name);
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i < normalized.length(); i++) {
+            grams.add(normalized.substring(i, Math.min(i + GRAM_LENGTH, normalized.length())));
+        }
+        return grams;
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT);
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    @Override
+    public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        Maintenance maintenance = new Maintenance();
+        EventListenerRegistry registry = serviceRegistry.getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, maintenance);
+        registry.appendListeners(EventType.POST_UPDATE, maintenance);
+        registry.appendListeners(EventType.POST_DELETE, maintenance);
+        registry.prependListeners(EventType.FLUSH, new FlushStart(maintenance));
+        registry.appendListeners(EventType.FLUSH, maintenance);
+        registry.prependListeners(EventType.AUTO_FLUSH, new AutoFlushStart(maintenance));
+        registry.appendListeners(EventType.AUTO_FLUSH, maintenance);
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+
+    // 회원 INSERT, UPDATE, DELETE 직후(flush 중)에는 바꿀 gram을 세션마다 모아두기만 하고
+    // flush가 끝날 때 DELETE, INSERT를 한번씩 JDBC 배치로 보낸다. (hibernate.jdbc.batch_size 단위)
+    // 회원마다 보내면 회원 저장은 배치로 묶여도 gram 때문에 회원 수만큼 왕복이 생긴다.
+    private static class Maintenance implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener,
+            FlushEventListener, AutoFlushEventListener {
+        private static final BatchKey DELETE_BATCH = new BasicBatchKey(MemberNameIndex.class.getName() + "#delete", Expectations.NONE);
+        private static final BatchKey INSERT_BATCH = new BasicBatchKey(MemberNameIndex.class.getName() + "#insert", Expectations.NONE);
+
+        // 닫은 세션은 약한 참조라서 남지 않는다.
+        private final Map<SessionImplementor, Changes> changes = new WeakHashMap<>();
+
+        @Override
+        public boolean requiresPostCommitHandling(EntityPersister persister) {
+            return false;
+        }
+
+        // 하이버네이트 5.3에서는 아직 추상 메서드라서 구현해야 한다.
+        @Override
+        @Deprecated
+        public boolean requiresPostCommitHanding(EntityPersister persister) {
+            return requiresPostCommitHandling(persister);
+        }
+
+        @Override
+        public void onPostInsert(PostInsertEvent event) {
+            if (event.getEntity() instanceof MemberOld) {
+                MemberOld member = (MemberOld) event.getEntity();
+                changes(event.getSession()).insert(member.getId(), member.getName());
+            }
+        }
+
+        @Override
+        public void onPostUpdate(PostUpdateEvent event) {
+            if (event.getEntity() instanceof MemberOld && nameChanged(event)) {
+                MemberOld member = (MemberOld) event.getEntity();
+                Changes changes = changes(event.getSession());
+                changes.delete(member.getId());
+                changes.insert(member.getId(), member.getName());
+            }
+        }
+
+        @Override
+        public void onPostDelete(PostDeleteEvent event) {
+            if (event.getEntity() instanceof MemberOld) {
+                changes(event.getSession()).delete((Long) event.getId());
+            }
+        }
+
+        @Override
+        public void onFlush(FlushEvent event) {
+            write(event.getSession());
+        }
+
+        @Override
+        public void onAutoFlush(AutoFlushEvent event) {
+            write(event.getSession());
+        }
+
+        private static boolean nameChanged(PostUpdateEvent event) {
+            int[] dirty = event.getDirtyProperties();
+            if (dirty == null) {
+                return true;
+            }
+            int name = event.getPersister().getEntityMetamodel().getPropertyIndex("name");
+            for (int property : dirty) {
+                if (property == name) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private synchronized Changes changes(SessionImplementor session) {
+            return changes.computeIfAbsent(session, key -> new Changes());
+        }
+
+        private synchronized Changes remove(SessionImplementor session) {
+            return changes.remove(session);
+        }
+
+        private void write(SessionImplementor session) {
+            Changes removed = remove(session);
+            if (removed == null) {
+                return;
+            }
+            JdbcCoordinator jdbc = session.getJdbcCoordinator();
+            try {
+                if (!removed.deletes.isEmpty()) {
+                    Batch batch = jdbc.getBatch(DELETE_BATCH);
+                    for (Long memberId : removed.deletes) {
+                        batch.getBatchStatement(DELETE, false).setLong(1, memberId);
+                        batch.addToBatch();
+                    }
+                }
+                if (!removed.inserts.isEmpty()) {
+                    Batch batch = jdbc.getBatch(INSERT_BATCH);
+                    for (Map.Entry<Long, Set<String>> entry : removed.inserts.entrySet()) {
+                        for (String gram : entry.getValue()) {
+                            PreparedStatement statement = batch.getBatchStatement(INSERT, false);
+                            statement.setString(1, gram);
+                            statement.setLong(2, entry.getKey());
+                            batch.addToBatch();
+                        }
+                    }
+                }
+                jdbc.executeBatch();
+            } catch (SQLException e) {
+                jdbc.abortBatch();
+                throw session.getJdbcServices().getSqlExceptionHelper().convert(e, "회원 이름 색인을 바꿀 수 없습니다.");
+            }
+        }
+    }
+
+    // flush가 실패하면 모아둔 gram은 데이터베이스에 없는 회원의 것이므로 다음 flush 전에 버린다.
+    private static class FlushStart implements FlushEventListener {
+        private final Maintenance maintenance;
+
+        FlushStart(Maintenance maintenance) {
+            this.maintenance = maintenance;
+        }
+
+        @Override
+        public void onFlush(FlushEvent event) {
+            maintenance.remove(event.getSession());
+        }
+    }
+
+    private static class AutoFlushStart implements AutoFlushEventListener {
+        private final Maintenance maintenance;
+
+        AutoFlushStart(Maintenance maintenance) {
+            this.maintenance = maintenance;
+        }
+
+        @Override
+        public void onAutoFlush(AutoFlushEvent event) {
+            maintenance.remove(event.getSession());
+        }
+    }
+
+    // flush 한번 동안 바뀐 회원의 gram (DELETE 먼저, 그 다음 INSERT)
+    // 같은 flush에서 저장한 회원의 이름을 바꾸면 마지막 이름의 gram만 넣는다.
+    private static class Changes {
+        private final Set<Long> deletes = new LinkedHashSet<>();
+        private final Map<Long, Set<String>> inserts = new LinkedHashMap<>();
+
+        void insert(Long memberId, String name) {
+            inserts.put(memberId, grams(name));
+        }
+
+        void delete(Long memberId) {
+            deletes.add(memberId);
+            inserts.remove(memberId);
+        }
+    }
+}
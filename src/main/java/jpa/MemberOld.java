@@ -1,5 +1,6 @@
 package jpa;
 
+import jpa.support.SequenceAllocation;
 import lombok.*;
 
 import javax.persistence.*;
@@ -67,6 +68,8 @@ import java.util.Set;
  * 매핑하는 필드타입이 문자면 CLOB, 나머지는 BLOB 매핑
  * CLOB: String, char[], java.sql.CLOB
  * BLOB: byte[], java.sql.BLOB
+ * 참고: @Basic(fetch = FetchType.LAZY)는 바이트코드 향상의 지연 로딩(enableLazyInitialization)이 있어야 동작한다.
+ * 하이버네이트 5.3에서는 이 옵션이 다른 지연 로딩 연관관계를 즉시 조회하게 만들어서 사용하지 않는다. (pom.xml 참고)
  *
  * @Id
  * PK인지 알려주는 어노테이션
@@ -86,6 +89,8 @@ import java.util.Set;
  * IDENTITY와 다르게 시퀀스만 질의해서 생성한 후 트랜잭션 커밋 시점에서 SQL을 사용한다.
  * SEQUENCE 전략을 사용하는 엔티티도 생성시점에서 바로 식별자를 사용할 수 있음.
  * 성능상 한번에 SQL을 질의하기 때문에 성능이 더 좋을 수 있다.
+ * 참고: IDENTITY 전략은 INSERT를 미룰 수 없어서 하이버네이트가 JDBC 배치 INSERT를 사용하지 않는다.
+ * 그래서 이 프로젝트의 모든 엔티티는 SEQUENCE + allocationSize(SequenceAllocation)를 사용한다.
  *
  * TABLE: 키 생성용 테이블 사용, 모든 DB에서 사용 (@TableGenerator 필요)
  * AUTO: DB에 따라 자동 지정, 기본값
@@ -110,23 +115,30 @@ import java.util.Set;
  */
 @Entity
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
-@Table(name = "member_old", uniqueConstraints = @UniqueConstraint(name = "name", columnNames = "name"))
-//@SequenceGenerator(
-//        name = "MEMBER_SEQ_GENERATOR", // 식별자 생성기 이름
-//        sequenceName = "MEMBER_SEQ", // 매핑할 데이터베이스 시퀀스 이름
-//        initialValue = 1, // DDL 생성시에만 사용됨
-//        allocationSize = 1
-//        // 시퀀스 한번 호출에 증가하는 수, 성능을 향상시킬때 사용한다고 함. 한번에 50까지 불러올 수 있는 옵션이라고 함. 동시성 이슈도 없다고 함...
-//        // 단, 데이터베이스 시퀀스 값이 하나씩 증가하도록 설정되어 있으면 이 값은 반드시 1로 설정해야한다.
-//)
+@Table(name = "member_old", uniqueConstraints = @UniqueConstraint(name = "name", columnNames = "name"),
+        indexes = @Index(name = "idx_member_old_age", columnList = "age")) // 나이 조건 조회 (where m.age > 18)
+@SequenceGenerator(
+        name = "member_old_seq_generator", // 식별자 생성기 이름
+        sequenceName = "member_old_seq", // 매핑할 데이터베이스 시퀀스 이름
+        initialValue = 1, // DDL 생성시에만 사용됨
+        allocationSize = SequenceAllocation.DEFAULT
+        // 시퀀스 한번 호출에 증가하는 수, 한번에 50개를 메모리에 당겨와서(pooled 옵티마이저) 시퀀스 조회 횟수를 줄인다.
+        // 단, 데이터베이스 시퀀스 값이 하나씩 증가하도록 설정되어 있으면 이 값은 반드시 1로 설정해야한다.
+)
+@NamedQueries({
+        @NamedQuery(name = "MemberOld.findAll", query = "select m from MemberOld m order by m.id"),
+        @NamedQuery(name = "MemberOld.findOlderThan", query = "select m from MemberOld m where m.age > :age"),
+        @NamedQuery(name = "MemberOld.findSummaries", query = "select new jpa.MemberSummary(m.id, m.name, m.age, m.roleType, m.address.city)"
+                + " from MemberOld m order by m.name")
+})
 @Getter
 @Setter
 public class MemberOld {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY) // 시퀀스를 사용할 경우 추가, generator = "MEMBER_SEQ_GENERATOR")
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "member_old_seq_generator")
     private Long id;
 
-    @Column(name = "name")
+    @Column(name = "name", nullable = false) // 키셋 페이징의 정렬키
     private String name;
 
     @Column(name = "age")
@@ -183,15 +195,24 @@ public class MemberOld {
      * 실무에서는 상황에 따라 값 타입 컬렉션 대신에 일대다 관계를 고려
      * 일대다 관계를 위한 엔티티를 만들고, 여기에서 값 타입을 사용
      * 영속성 전이(Cascade) + 고아 객체 제거를 사용해서 값 타입 컬 렉션 처럼 사용
+     *
+     * 참고: 2번은 List(bag)일 때 이야기다.
+     * Set은 모든 컬럼이 기본 키라서 행을 구분할 수 있기 때문에 추가, 삭제된 값만 INSERT, DELETE 한다.
      */
     @ElementCollection
     @CollectionTable(name = "favorite_food", joinColumns = @JoinColumn(name = "member_id"))
     @Column(name = "food_name") // 이 컬럼은 내가 직접 커스텀하기 때문에 컬럼명을 정해줘야 한다.
     private Set<String> favoriteFood = new HashSet<>();
 
-    @ElementCollection
-    @CollectionTable(name = "address_history", joinColumns = @JoinColumn(name = "member_id"))
-    private List<Address> addressHistory = new ArrayList<>();
+    /**
+     * 주소 이력은 List 값 타입 컬렉션이라 주소 하나를 추가해도 전체 삭제 후 전체 INSERT(O(n))였다.
+     * 일대다 엔티티(AddressHistory)로 바꿔서 추가는 INSERT 한 번, 삭제는 DELETE 한 번이다.
+     * 순서는 @OrderColumn 대신 식별자 순서(@OrderBy)를 사용한다. @OrderColumn은 중간 요소를 지우면 뒤의 순번을 모두 UPDATE 한다.
+     * mappedBy(주인이 아닌 쪽) List는 초기화하지 않고 추가할 수 있어서 이력이 많아도 조회하지 않는다.
+     */
+    @OneToMany(mappedBy = "member", cascade = CascadeType.ALL, orphanRemoval = true)
+    @OrderBy("id")
+    private List<AddressHistory> addressHistory = new ArrayList<>();
 
     @Builder
     public MemberOld(Long id, String name, Integer age, RoleType roleType, LocalDateTime createdDate, LocalDateTime lastModifiedDate, String description, String temp, Period period, Address address, Set<String> favoriteFood, List<Address> addressHistory) {
@@ -205,7 +226,22 @@ public class MemberOld {
         this.temp = temp;
         this.period = period;
         this.address = address;
-        this.favoriteFood = favoriteFood;
-        this.addressHistory = addressHistory;
+        if (favoriteFood != null) {
+            this.favoriteFood = favoriteFood;
+        }
+        if (addressHistory != null) {
+            addressHistory.forEach(this::addAddressHistory);
+        }
+    }
+
+    // 연관관계 편의 메서드
+    public AddressHistory addAddressHistory(Address address) {
+        AddressHistory history = new AddressHistory(this, address);
+        addressHistory.add(history);
+        return history;
+    }
+
+    public void removeAddressHistory(AddressHistory history) {
+        addressHistory.remove(history);
     }
 }
@@ -0,0 +1,42 @@
+package jpa;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+/**
+ * 회원 조회 전용 쿼리
+ *
+ * 목록 화면은 엔티티 대신 MemberSummary(DTO)로 조회한다.
+ */
+public class MemberOldQueries {
+    // JPQL은 MemberOld의 @NamedQuery
+    static final String FIND_SUMMARIES = "MemberOld.findSummaries";
+    static final String FIND_OLDER_THAN = "MemberOld.findOlderThan";
+
+    private final EntityManager entityManager;
+
+    public MemberOldQueries(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    /**
+     * 이름에 fragment가 들어있는 회원 (대소문자 구분 없음, 순위 순서)
+     *
+     * like '%kim%'는 member_old 전체를 읽으므로 n-gram 색인으로 찾는다. (MemberNameIndex)
+     */
+    public List<MemberOld> searchMembersByName(String fragment, int limit) {
+        return MemberNameIndex.search(entityManager, fragment, limit);
+    }
+
+    public List<MemberOld> findOlderThan(int age) {
+        return entityManager.createNamedQuery(FIND_OLDER_THAN, MemberOld.class)
+                .setParameter("age", age)
+                .getResultList();
+    }
+
+    public List<MemberSummary> findSummaries(int limit) {
+        return entityManager.createNamedQuery(FIND_SUMMARIES, MemberSummary.class)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+}
@@ -0,0 +1,30 @@
+package jpa;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 회원 목록 화면용 DTO
+ *
+ * select new jpa.MemberSummary(...)로 필요한 컬럼만 조회한다.
+ * 엔티티가 아니라서 영속성 컨텍스트에 올라가지 않고 스냅샷도 만들지 않는다.
+ * description(@Lob), favoriteFood, addressHistory(컬렉션)는 읽지 않는다.
+ */
+@Getter
+@ToString
+public class MemberSummary {
+    private final Long id;
+    private final String name;
+    private final Integer age;
+    private final RoleType roleType;
+    private final String city;
+
+    // JPQL 생성자 표현식은 파라미터 순서와 타입이 정확히 같아야 한다.
+    public MemberSummary(Long id, String name, Integer age, RoleType roleType, String city) {
+        this.id = id;
+        this.name = name;
+        this.age = age;
+        this.roleType = roleType;
+        this.city = city;
+    }
+}
@@ -6,7 +6,6 @@ import lombok.Setter;
 import javax.persistence.*;
 
 @Entity
-@Table(name = "movie_map")
 @DiscriminatorValue("movie")
 @Getter
 @Setter
@@ -1,17 +1,20 @@
 package jpa;
 
+import jpa.support.SequenceAllocation;
 import lombok.Getter;
 import lombok.Setter;
 
 import javax.persistence.*;
+import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@SequenceGenerator(name = "parent_seq_generator", sequenceName = "parent_seq", allocationSize = SequenceAllocation.DEFAULT)
 @Getter
 @Setter
 public class Parent {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "parent_seq_generator")
     private Long id;
 
     private String name;
@@ -21,7 +24,7 @@ public class Parent {
     // 두 옵션을 모두 활성화 하면 부모 엔티티를 통해서 자식의 생명주기를 관리할 수 있음.
     // 도메인 주도 설계의 Aggregate Root 개념을 구현할 때 유용함.
     @OneToMany(mappedBy = "parent", fetch = FetchType.LAZY, cascade = CascadeType.ALL, orphanRemoval = true)
-    private List<Child> childList;
+    private List<Child> childList = new ArrayList<>();
 
     public void addChild(Child child) {
         childList.add(child);
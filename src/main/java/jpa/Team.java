@@ -1,18 +1,24 @@
 package jpa;
 
+import jpa.support.SequenceAllocation;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import java.util.List;
 
 @Entity
 @Table(name = "team")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "team")
+@SequenceGenerator(name = "team_seq_generator", sequenceName = "team_seq", allocationSize = SequenceAllocation.DEFAULT)
 @Getter
 @Setter
 public class Team {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "team_seq_generator")
     private Long id;
 
     @Column(name = "name")
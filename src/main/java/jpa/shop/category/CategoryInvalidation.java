@@ -0,0 +1,121 @@
+package jpa.shop.category;
+
+import jpa.shop.domain.Category;
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * 카테고리 변경 커밋 알림 (Integrator, META-INF/services)
+ *
+ * EntityManagerFactory마다 post-commit 리스너를 하나만 등록하고, CategoryTreeService들이 여기에 구독한다.
+ * 하이버네이트는 같은 클래스의 리스너를 두 번 등록하면 실패하므로 서비스가 직접 등록하면 팩토리마다 서비스를 하나밖에 만들 수 없다.
+ * 구독은 약한 참조라서 버린 서비스는 팩토리가 붙잡지 않는다.
+ */
+public class CategoryInvalidation implements Integrator {
+    @Override
+    public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        Listener listener = new Listener();
+        EventListenerRegistry registry = serviceRegistry.getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, listener);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, listener);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, listener);
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+
+    // 카테고리 변경이 커밋되면 service.invalidate()를 호출한다.
+    static void subscribe(EntityManagerFactory entityManagerFactory, CategoryTreeService service) {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        for (Object listener : registry.getEventListenerGroup(EventType.POST_COMMIT_UPDATE).listeners()) {
+            if (listener instanceof Listener) {
+                ((Listener) listener).subscribe(service);
+                return;
+            }
+        }
+        throw new IllegalStateException("CategoryInvalidation이 등록되지 않았습니다. (META-INF/services/org.hibernate.integrator.spi.Integrator)");
+    }
+
+    // 카테고리 변경이 커밋된 다음에 캐시를 비운다. 커밋 전에 비우면 다른 스레드가 커밋 전 값을 다시 캐시할 수 있다.
+    // 다른 엔티티의 커밋에도 불리므로 엔티티 타입을 확인한다.
+    private static class Listener implements PostCommitInsertEventListener, PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+        private final Set<CategoryTreeService> services = Collections.newSetFromMap(new WeakHashMap<>());
+
+        synchronized void subscribe(CategoryTreeService service) {
+            services.add(service);
+        }
+
+        private void invalidate(Object entity) {
+            if (!(entity instanceof Category)) {
+                return;
+            }
+            List<CategoryTreeService> subscribed;
+            synchronized (this) {
+                subscribed = new ArrayList<>(services);
+            }
+            for (CategoryTreeService service : subscribed) {
+                service.invalidate();
+            }
+        }
+
+        @Override
+        public boolean requiresPostCommitHandling(EntityPersister persister) {
+            return Category.class.equals(persister.getMappedClass());
+        }
+
+        // 하이버네이트 5.3에서는 아직 추상 메서드라서 구현해야 한다.
+        @Override
+        @Deprecated
+        public boolean requiresPostCommitHanding(EntityPersister persister) {
+            return requiresPostCommitHandling(persister);
+        }
+
+        @Override
+        public void onPostInsert(PostInsertEvent event) {
+            invalidate(event.getEntity());
+        }
+
+        @Override
+        public void onPostUpdate(PostUpdateEvent event) {
+            invalidate(event.getEntity());
+        }
+
+        @Override
+        public void onPostDelete(PostDeleteEvent event) {
+            invalidate(event.getEntity());
+        }
+
+        @Override
+        public void onPostInsertCommitFailed(PostInsertEvent event) {
+        }
+
+        @Override
+        public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+        }
+
+        @Override
+        public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package jpa.shop.category;
+
+import lombok.Getter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * 카테고리 트리의 노드 (CategoryTreeService)
+ *
+ * 엔티티가 아니라서 지연 로딩이 없고, 만든 다음에는 바뀌지 않으므로 여러 스레드가 캐시된 트리를 같이 읽어도 된다.
+ * depth는 조회를 시작한 노드에서 0이다.
+ */
+@Getter
+public class CategoryNode {
+    private final Long id;
+    private final String name;
+    private final Long parentId;
+    private final int depth;
+    private final List<CategoryNode> children = new ArrayList<>();
+
+    CategoryNode(Long id, String name, Long parentId, int depth) {
+        this.id = id;
+        this.name = name;
+        this.parentId = parentId;
+        this.depth = depth;
+    }
+
+    public List<CategoryNode> getChildren() {
+        return Collections.unmodifiableList(children);
+    }
+
+    // 트리를 만드는 동안에만 호출한다.
+    void addChild(CategoryNode child) {
+        children.add(child);
+    }
+
+    // 자신을 포함한 하위 카테고리 식별자 (ex. 하위 카테고리까지 포함한 상품 조회: where c.id in :ids)
+    public List<Long> getSubtreeIds() {
+        List<Long> ids = new ArrayList<>();
+        Deque<CategoryNode> stack = new ArrayDeque<>();
+        stack.push(this);
+        while (!stack.isEmpty()) {
+            CategoryNode node = stack.pop();
+            ids.add(node.id);
+            for (CategoryNode child : node.children) {
+                stack.push(child);
+            }
+        }
+        return ids;
+    }
+
+    // 자신을 포함한 노드 수
+    public int size() {
+        return getSubtreeIds().size();
+    }
+
+    // 하위 트리에서 식별자로 찾는다. 없으면 null
+    public CategoryNode find(Long categoryId) {
+        Deque<CategoryNode> stack = new ArrayDeque<>();
+        stack.push(this);
+        while (!stack.isEmpty()) {
+            CategoryNode node = stack.pop();
+            if (node.id.equals(categoryId)) {
+                return node;
+            }
+            for (CategoryNode child : node.children) {
+                stack.push(child);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "CategoryNode(id=" + id + ", name=" + name + ", depth=" + depth + ", children=" + children.size() + ")";
+    }
+}
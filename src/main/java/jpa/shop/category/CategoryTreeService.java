@@ -0,0 +1,194 @@
+package jpa.shop.category;
+
+import jpa.shop.domain.Category;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 카테고리 트리
+ *
+ * Category는 parent_id로 부모를 가리키는 인접 목록(adjacency list)이라서 getChild()로 트리를 내려가면
+ * 노드마다(배치 조회를 써도 단계마다) SELECT가 나간다.
+ * 재귀 CTE(with recursive) 한 번으로 하위 트리 전체의 (id, name, parent_id, depth)를 읽고 메모리에서 트리를 만든다. (O(n))
+ *
+ * 만든 트리는 시작 노드별로 캐시한다. 카테고리를 저장, 수정, 삭제한 트랜잭션이 커밋되면 캐시를 모두 비운다. (CategoryInvalidation)
+ * 벌크 연산(JPQL update/delete, 네이티브 SQL)은 리스너를 거치지 않으므로 직접 invalidate()를 호출해야 한다.
+ */
+public class CategoryTreeService {
+    // 부모를 잘못 연결해서 순환이 생겨도 끝나도록 깊이를 제한한다.
+    // 한 단계 더(MAX_DEPTH + 1) 읽어서 그 깊이의 행이 있으면 잘린 트리를 돌려주거나 캐시하지 않고 실패한다.
+    static final int MAX_DEPTH = 64;
+    private static final String SUBTREE =
+            "with recursive tree(id, name, parent_id, depth) as ("
+                    + " select id, name, parent_id, 0 from category where %s"
+                    + " union all"
+                    + " select c.id, c.name, c.parent_id, t.depth + 1 from category c join tree t on c.parent_id = t.id"
+                    + " where t.depth <= " + MAX_DEPTH
+                    + ") select id, name, parent_id, depth from tree order by depth, id";
+    private static final String FROM_ID = String.format(SUBTREE, "id = :categoryId");
+    private static final String FROM_ROOTS = String.format(SUBTREE, "parent_id is null");
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final Map<Long, CategoryNode> subtrees = new ConcurrentHashMap<>();
+    private volatile List<CategoryNode> roots;
+    // 조회하는 동안 무효화되면 조회한(오래된) 트리를 캐시에 넣지 않는다.
+    private final AtomicLong generation = new AtomicLong();
+    private final LongAdder loads = new LongAdder();
+
+    public CategoryTreeService(EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+        CategoryInvalidation.subscribe(entityManagerFactory, this);
+    }
+
+    // categoryId부터 시작하는 하위 트리 (캐시), 없으면 null
+    public CategoryNode getSubtree(Long categoryId) {
+        CategoryNode cached = subtrees.get(categoryId);
+        if (cached != null) {
+            return cached;
+        }
+        long loadedAt = generation.get();
+        CategoryNode subtree = inEntityManager(entityManager -> loadSubtree(entityManager, categoryId));
+        if (subtree != null) {
+            subtrees.put(categoryId, subtree);
+            if (generation.get() != loadedAt) {
+                subtrees.remove(categoryId, subtree);
+            }
+        }
+        return subtree;
+    }
+
+    // 최상위 카테고리부터 시작하는 전체 트리 (캐시)
+    public List<CategoryNode> getRoots() {
+        List<CategoryNode> cached = roots;
+        if (cached != null) {
+            return cached;
+        }
+        long loadedAt = generation.get();
+        List<CategoryNode> loaded = inEntityManager(this::loadRoots);
+        roots = loaded;
+        if (generation.get() != loadedAt) {
+            roots = null;
+        }
+        return loaded;
+    }
+
+    // 캐시 없이 쿼리 한 번으로 하위 트리를 읽는다.
+    public CategoryNode loadSubtree(EntityManager entityManager, Long categoryId) {
+        List<CategoryNode> trees = load(entityManager.createNativeQuery(FROM_ID)
+                .setParameter("categoryId", categoryId)
+                .getResultList());
+        return trees.isEmpty() ? null : trees.get(0);
+    }
+
+    public List<CategoryNode> loadRoots(EntityManager entityManager) {
+        return load(entityManager.createNativeQuery(FROM_ROOTS).getResultList());
+    }
+
+    // parentId가 null이면 최상위 카테고리
+    public Long create(String name, Long parentId) {
+        return inTransaction(entityManager -> {
+            Category category = new Category();
+            category.setName(name);
+            if (parentId != null) {
+                category.setParent(entityManager.getReference(Category.class, parentId));
+            }
+            entityManager.persist(category);
+            return category.getId();
+        });
+    }
+
+    // 자기 자신이나 자신의 하위 카테고리 밑으로는 옮길 수 없다. (순환)
+    public void move(Long categoryId, Long newParentId) {
+        inTransaction(entityManager -> {
+            Category category = entityManager.find(Category.class, categoryId);
+            if (category == null) {
+                throw new IllegalArgumentException("카테고리가 없습니다: " + categoryId);
+            }
+            Category parent = null;
+            if (newParentId != null) {
+                CategoryNode subtree = loadSubtree(entityManager, categoryId);
+                if (subtree.find(newParentId) != null) {
+                    throw new IllegalArgumentException("하위 카테고리 밑으로 옮길 수 없습니다: " + categoryId + " -> " + newParentId);
+                }
+                parent = entityManager.getReference(Category.class, newParentId);
+            }
+            category.setParent(parent);
+            return null;
+        });
+    }
+
+    public void invalidate() {
+        generation.incrementAndGet();
+        subtrees.clear();
+        roots = null;
+    }
+
+    // 캐시에 없어서 DB에서 읽은 횟수
+    public long getLoads() {
+        return loads.sum();
+    }
+
+    /**
+     * (id, name, parent_id, depth) 행으로 트리를 만든다.
+     * depth 순으로 정렬되어 있으므로 부모는 항상 자식보다 먼저 나온다. 식별자 -> 노드 맵 한 번으로 연결한다.
+     */
+    private List<CategoryNode> load(List<?> rows) {
+        loads.increment();
+        Map<Long, CategoryNode> nodes = new HashMap<>(rows.size() * 4 / 3 + 1);
+        List<CategoryNode> tops = new ArrayList<>();
+        for (Object row : rows) {
+            Object[] columns = (Object[]) row;
+            Long id = toLong(columns[0]);
+            Long parentId = toLong(columns[2]);
+            int depth = ((Number) columns[3]).intValue();
+            if (depth > MAX_DEPTH) {
+                throw new IllegalStateException("카테고리 트리가 " + MAX_DEPTH + "단계보다 깊습니다. 부모 연결에 순환이 있는지 확인하세요: " + id);
+            }
+            CategoryNode node = new CategoryNode(id, (String) columns[1], parentId, depth);
+            nodes.put(id, node);
+            if (depth == 0) {
+                tops.add(node);
+            } else {
+                nodes.get(parentId).addChild(node);
+            }
+        }
+        return tops;
+    }
+
+    private static Long toLong(Object value) {
+        return value == null ? null : ((Number) value).longValue();
+    }
+
+    private <R> R inEntityManager(Function<EntityManager, R> work) {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            return work.apply(entityManager);
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    private <R> R inTransaction(Function<EntityManager, R> work) {
+        return inEntityManager(entityManager -> {
+            try {
+                entityManager.getTransaction().begin();
+                R result = work.apply(entityManager);
+                entityManager.getTransaction().commit();
+                return result;
+            } finally {
+                if (entityManager.getTransaction().isActive()) {
+                    entityManager.getTransaction().rollback();
+                }
+            }
+        });
+    }
+}
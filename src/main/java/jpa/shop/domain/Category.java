@@ -1,18 +1,26 @@
 package jpa.shop.domain;
 
+import jpa.support.SequenceAllocation;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import java.util.List;
 
 @Entity
-@Table(name = "category")
+@Table(name = "category", indexes = @Index(name = "idx_category_parent_id", columnList = "parent_id"))
+@Cacheable
+// 카테고리는 거의 바뀌지 않고 잠깐 오래된 값을 읽어도 문제가 없어서 NONSTRICT_READ_WRITE를 사용한다.
+@Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE, region = "category")
+@SequenceGenerator(name = "category_seq_generator", sequenceName = "category_seq", allocationSize = SequenceAllocation.DEFAULT)
 @Getter
 @Setter
 public class Category {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "category_seq_generator")
     private Long id;
 
     private String name;
@@ -21,7 +29,10 @@ public class Category {
     @JoinColumn(name = "parent_id")
     private Category parent;
 
+    // 컬렉션 캐시는 자식의 식별자 목록만 저장하고 자식 엔티티는 Category 영역에서 찾는다.
     @OneToMany(mappedBy = "parent", fetch = FetchType.LAZY)
+    @BatchSize(size = 100)
+    @Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE, region = "category_child")
     private List<Category> child;
 
     // @JoinTable이 있는 쪽이 주인에 해당함.
@@ -29,7 +40,12 @@ public class Category {
     @JoinTable(
             name = "category_item",
             joinColumns = @JoinColumn(name = "category_id"), // 현 엔티티 입장에서 조인시키는 것
-            inverseJoinColumns = @JoinColumn(name = "item_id") // 반대편 엔티티 입장에서 조인시키는 것
+            inverseJoinColumns = @JoinColumn(name = "item_id"), // 반대편 엔티티 입장에서 조인시키는 것
+            // 카테고리 -> 상품, 상품 -> 카테고리 양쪽으로 찾는다.
+            indexes = {
+                    @Index(name = "idx_category_item_category_id", columnList = "category_id, item_id"),
+                    @Index(name = "idx_category_item_item_id", columnList = "item_id")
+            }
     )
     private List<Item> items;
 }
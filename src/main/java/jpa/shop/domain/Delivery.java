@@ -1,5 +1,6 @@
 package jpa.shop.domain;
 
+import jpa.support.SequenceAllocation;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -8,11 +9,12 @@ import java.util.List;
 
 @Entity
 @Table(name = "delivery")
+@SequenceGenerator(name = "delivery_seq_generator", sequenceName = "delivery_seq", allocationSize = SequenceAllocation.DEFAULT)
 @Getter
 @Setter
 public class Delivery {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "delivery_seq_generator")
     private Long id;
 
     private String name;
@@ -1,26 +1,47 @@
 package jpa.shop.domain;
 
+import jpa.support.SequenceAllocation;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import java.util.List;
 
 @Entity
-@Table(name = "item")
+// 상품명 순 키셋 페이징(ItemQueries.findPageByName), 재고 현황(ItemQueries.findStockBelow)용 인덱스
+@Table(name = "item", indexes = {
+        @Index(name = "idx_item_name_id", columnList = "name, id"),
+        @Index(name = "idx_item_stock_quantity_id", columnList = "stockQuantity, id")
+})
+// 엔티티 이름 Item이 jpa.Item과 겹치므로 쿼리 이름과 JPQL에 패키지명을 적는다.
+@NamedQuery(name = "jpa.shop.domain.Item.findStockBelow",
+        query = "select i.id as id, i.name as name, i.price as price, i.stockQuantity as stockQuantity"
+                + " from jpa.shop.domain.Item i where i.stockQuantity < :threshold order by i.stockQuantity, i.id")
+@Cacheable
+// 재고 수량이 바뀌므로 캐시와 DB가 어긋나지 않도록 READ_WRITE(soft lock)를 사용한다.
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "item")
+@SequenceGenerator(name = "item_seq_generator", sequenceName = "item_seq", allocationSize = SequenceAllocation.DEFAULT)
 @Getter
 @Setter
 public class Item {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "item_seq_generator")
     private Long id;
 
+    // 키셋 페이징(ItemQueries)의 정렬키라서 null이면 안된다.
+    @Column(nullable = false)
     private String name;
 
     private Integer price;
 
     private Integer stockQuantity;
 
+    // 동시에 재고를 바꾸면 늦게 커밋한 쪽이 OptimisticLockException으로 실패한다. (UPDATE ... where version = ?)
+    @Version
+    private Long version;
+
     @OneToMany(mappedBy = "item")
     private List<OrderItem> orderItem;
 
@@ -1,7 +1,9 @@
 package jpa.shop.domain;
 
+import jpa.support.SequenceAllocation;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.BatchSize;
 
 import javax.persistence.*;
 import java.util.List;
@@ -11,11 +13,12 @@ import java.util.List;
  */
 @Entity
 @Table(name = "member")
+@SequenceGenerator(name = "member_seq_generator", sequenceName = "member_seq", allocationSize = SequenceAllocation.DEFAULT)
 @Getter
 @Setter // 실무에서는 엔티티가 어디서든 바뀔 수 있어서 잘 사용하지 않는다. (생성자로 하는거 추천)
 public class Member {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "member_seq_generator")
     private Long id;
 
     private String name;
@@ -27,5 +30,6 @@ public class Member {
     private String zipcode;
 
     @OneToMany(mappedBy = "member", fetch = FetchType.LAZY)
+    @BatchSize(size = 100)
     private List<Order> orders;
 }
@@ -1,19 +1,68 @@
 package jpa.shop.domain;
 
+import jpa.support.SequenceAllocation;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.BatchSize;
 
 import javax.persistence.*;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * 엔티티 그래프
+ *
+ * 연관관계가 모두 지연 로딩이라서 주문 목록을 조회하고 주문상품을 사용하면 1 + N + N*M 번 조회한다. (N+1 문제)
+ * 조회 시점에 함께 가져올 연관관계를 이름으로 정의해두고 javax.persistence.fetchgraph 힌트로 사용한다.
+ * order-with-lines: 주문 + 주문상품 + 상품
+ * order-full: 주문 + 회원 + 배송 + 주문상품 + 상품
+ */
 @Entity
-@Table(name = "orders")
+// 주문일 순 키셋 페이징(OrderQueries.findPageByOrderDate)이 정렬 없이 인덱스 범위 스캔만 하도록 (orderDate, id) 순서로 건다.
+// 최근 주문 목록(findRecent)은 역순으로 읽는다. H2는 인덱스를 거꾸로 읽지 못해서 내림차순 인덱스를 따로 둔다.
+// 외래 키는 H2, MySQL은 자동으로 인덱스를 만들지만 PostgreSQL, Oracle은 만들지 않으므로 직접 건다. (QueryPlanTest)
+@Table(name = "orders", indexes = {
+        @Index(name = "idx_orders_order_date_id", columnList = "orderDate, id"),
+        @Index(name = "idx_orders_order_date_id_desc", columnList = "orderDate desc, id desc"),
+        @Index(name = "idx_orders_member_id", columnList = "member_id"),
+        @Index(name = "idx_orders_delivery_id", columnList = "delivery_id")
+})
+@NamedEntityGraphs({
+        @NamedEntityGraph(
+                name = "order-with-lines",
+                attributeNodes = @NamedAttributeNode(value = "orderItem", subgraph = "order-item"),
+                subgraphs = @NamedSubgraph(name = "order-item", attributeNodes = @NamedAttributeNode("item"))
+        ),
+        @NamedEntityGraph(
+                name = "order-full",
+                attributeNodes = {
+                        @NamedAttributeNode("member"),
+                        @NamedAttributeNode("delivery"),
+                        @NamedAttributeNode(value = "orderItem", subgraph = "order-item")
+                },
+                subgraphs = @NamedSubgraph(name = "order-item", attributeNodes = @NamedAttributeNode("item"))
+        )
+})
+@NamedQueries({
+        @NamedQuery(name = "Order.findAll", query = "select distinct o from Order o order by o.id"),
+        @NamedQuery(name = "Order.findById", query = "select distinct o from Order o where o.id = :id"),
+        // 회원(member_id)은 null일 수 있으므로 외부 조인으로 가져와야 회원 없는 주문이 빠지지 않는다.
+        @NamedQuery(name = "Order.findPageWithMemberAndDelivery",
+                query = "select o from Order o left join fetch o.member m left join fetch o.delivery d order by o.orderDate desc, o.id desc"),
+        @NamedQuery(name = "Order.findLinesByMember",
+                query = "select new jpa.shop.dto.OrderLine(o.id, o.orderDate, o.orderStatus, m.name, i.name, oi.orderPrice, oi.count)"
+                        + " from OrderItem oi join oi.order o join o.member m join oi.item i"
+                        + " where m.id = :memberId order by o.id, oi.id"),
+        @NamedQuery(name = "Order.findByMemberWithLines",
+                query = "select distinct o from Order o join fetch o.orderItem oi join fetch oi.item i where o.member.id = :memberId order by o.id")
+})
+@SequenceGenerator(name = "orders_seq_generator", sequenceName = "orders_seq", allocationSize = SequenceAllocation.DEFAULT)
 @Getter
 @Setter
 public class Order {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "orders_seq_generator")
     private Long id;
 
     // private Long memberId;
@@ -21,15 +70,25 @@ public class Order {
     @JoinColumn(name = "member_id")
     private Member member;
 
+    // 키셋 페이징(findPageByOrderDate)과 최근 주문 목록의 정렬키라서 null이면 안된다.
+    @Column(nullable = false)
     private LocalDateTime orderDate;
 
     @Enumerated(EnumType.STRING)
     private OrderStatus orderStatus;
 
+    // 페치 조인 없이 접근하면 주문 100개의 주문상품을 IN 절 하나로 가져온다.
     @OneToMany(mappedBy = "order", fetch = FetchType.LAZY, cascade = CascadeType.ALL)
-    private List<OrderItem> orderItem;
+    @BatchSize(size = 100)
+    private List<OrderItem> orderItem = new ArrayList<>();
 
     @ManyToOne(fetch = FetchType.LAZY, cascade = CascadeType.ALL)
     @JoinColumn(name = "delivery_id")
     private Delivery delivery;
+
+    // 연관관계 편의 메서드
+    public void addOrderItem(OrderItem orderItem) {
+        this.orderItem.add(orderItem);
+        orderItem.setOrder(this);
+    }
 }
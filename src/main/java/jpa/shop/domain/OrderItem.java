@@ -1,17 +1,22 @@
 package jpa.shop.domain;
 
+import jpa.support.SequenceAllocation;
 import lombok.Getter;
 import lombok.Setter;
 
 import javax.persistence.*;
 
 @Entity
-@Table(name = "order_item")
+@Table(name = "order_item", indexes = {
+        @Index(name = "idx_order_item_order_id", columnList = "order_id"),
+        @Index(name = "idx_order_item_item_id", columnList = "item_id")
+})
+@SequenceGenerator(name = "order_item_seq_generator", sequenceName = "order_item_seq", allocationSize = SequenceAllocation.LARGE)
 @Getter
 @Setter
 public class OrderItem {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_item_seq_generator")
     private Long id;
 
     // private Long orderId;
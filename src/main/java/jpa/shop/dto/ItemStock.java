@@ -0,0 +1,23 @@
+package jpa.shop.dto;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 재고 현황 화면용 DTO
+ */
+@Getter
+@ToString
+public class ItemStock {
+    private final Long itemId;
+    private final String name;
+    private final Integer price;
+    private final Integer stockQuantity;
+
+    public ItemStock(Long itemId, String name, Integer price, Integer stockQuantity) {
+        this.itemId = itemId;
+        this.name = name;
+        this.price = price;
+        this.stockQuantity = stockQuantity;
+    }
+}
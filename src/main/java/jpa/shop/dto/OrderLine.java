@@ -0,0 +1,39 @@
+package jpa.shop.dto;
+
+import jpa.shop.domain.OrderStatus;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+/**
+ * 주문 내역 화면용 DTO (주문상품 한 건이 한 줄)
+ *
+ * 주문, 회원, 주문상품, 상품을 조인해서 필요한 값만 한 번에 읽는다. 프록시나 지연 로딩이 없다.
+ */
+@Getter
+@ToString
+public class OrderLine {
+    private final Long orderId;
+    private final LocalDateTime orderDate;
+    private final OrderStatus orderStatus;
+    private final String memberName;
+    private final String itemName;
+    private final Integer orderPrice;
+    private final Integer count;
+
+    public OrderLine(Long orderId, LocalDateTime orderDate, OrderStatus orderStatus, String memberName,
+                     String itemName, Integer orderPrice, Integer count) {
+        this.orderId = orderId;
+        this.orderDate = orderDate;
+        this.orderStatus = orderStatus;
+        this.memberName = memberName;
+        this.itemName = itemName;
+        this.orderPrice = orderPrice;
+        this.count = count;
+    }
+
+    public int getTotalPrice() {
+        return orderPrice * count;
+    }
+}
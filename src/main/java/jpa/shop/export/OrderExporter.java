@@ -0,0 +1,108 @@
+package jpa.shop.export;
+
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+
+import javax.persistence.EntityManagerFactory;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 주문 CSV 내보내기 (스트리밍)
+ *
+ * getResultList()로 전체 주문을 조회하면 모든 주문과 프록시가 영속성 컨텍스트에 쌓여서 테이블 크기만큼 힙을 사용한다.
+ * 여기서는 힙 사용량이 주문 수와 상관없이 일정하도록 한 행씩 읽고 바로 쓴다.
+ * 1. StatelessSession: 영속성 컨텍스트(1차 캐시, 스냅샷)가 없어서 clear/detach 없이도 읽은 행이 쌓이지 않는다.
+ * 2. 스칼라 프로젝션: 엔티티나 프록시를 만들지 않고 필요한 컬럼만 읽는다.
+ * 3. ScrollMode.FORWARD_ONLY + fetch size: JDBC 드라이버가 fetch size 만큼씩 가져온다.
+ * 4. 쓰기는 NIO 채널 위의 버퍼(BufferedWriter)로 모아서 한다.
+ *
+ * 참고: H2는 LAZY_QUERY_EXECUTION=1이 아니면 결과 전체를 먼저 만든다. (MySQL은 fetch size를 Integer.MIN_VALUE로 줘야 스트리밍한다.)
+ * 정렬(order by)도 결과 전체를 만들어야 하므로 사용하지 않는다. 주문상품 한 건이 CSV 한 줄이다.
+ */
+public class OrderExporter {
+    static final String HEADER = "order_id,order_date,order_status,member_id,order_item_id,item_id,item_name,order_price,count";
+    static final String EXPORT_LINES =
+            "select o.id, o.orderDate, o.orderStatus, m.id, oi.id, i.id, i.name, oi.orderPrice, oi.count"
+                    + " from Order o left join o.member m left join o.orderItem oi left join oi.item i";
+
+    private static final int DEFAULT_FETCH_SIZE = 1_000;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final int fetchSize;
+
+    public OrderExporter(EntityManagerFactory entityManagerFactory) {
+        this(entityManagerFactory, DEFAULT_FETCH_SIZE);
+    }
+
+    public OrderExporter(EntityManagerFactory entityManagerFactory, int fetchSize) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.fetchSize = fetchSize;
+    }
+
+    // 내보낸 줄 수(헤더 제외)를 반환한다. 채널은 닫지 않는다.
+    public long exportCsv(WritableByteChannel channel) {
+        StatelessSession session = entityManagerFactory.unwrap(SessionFactory.class).openStatelessSession();
+        try {
+            session.getTransaction().begin();
+            ScrollableResults results = session.createQuery(EXPORT_LINES)
+                    .setFetchSize(fetchSize)
+                    .setReadOnly(true)
+                    .scroll(ScrollMode.FORWARD_ONLY);
+            try {
+                Writer writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), -1), WRITE_BUFFER_SIZE);
+                long lines = write(results, writer);
+                writer.flush();
+                return lines;
+            } finally {
+                results.close();
+                session.getTransaction().commit();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("주문을 내보낼 수 없습니다.", e);
+        } finally {
+            session.close();
+        }
+    }
+
+    private long write(ScrollableResults results, Writer writer) throws IOException {
+        writer.write(HEADER);
+        writer.write('\n');
+
+        long lines = 0;
+        while (results.next()) {
+            Object[] row = results.get();
+            for (int i = 0; i < row.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writeValue(writer, row[i]);
+            }
+            writer.write('\n');
+            lines++;
+        }
+        return lines;
+    }
+
+    private static void writeValue(Writer writer, Object value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        String text = value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0) {
+            writer.write(text);
+            return;
+        }
+        writer.write('"');
+        writer.write(text.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
@@ -0,0 +1,153 @@
+package jpa.shop.ingest;
+
+import jpa.shop.domain.Item;
+import jpa.shop.domain.Order;
+import jpa.shop.domain.OrderItem;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+
+/**
+ * 대량 적재 (상품 카탈로그, 주문 백필)
+ *
+ * EntityManager로 적재하면 다시 읽지도 않을 엔티티가 1차 캐시에 쌓이고 변경 감지용 스냅샷까지 만든다.
+ * StatelessSession은 영속성 컨텍스트가 없어서 insert()가 바로 INSERT가 되고(JDBC 배치로 묶인다) 메모리가 쌓이지 않는다.
+ * 1. chunkSize 건마다 커밋한다. 실패하면 해당 청크만 롤백되고 앞에서 커밋한 청크는 남는다.
+ * 2. 키 범위를 나눠서 세션(커넥션)마다 스레드 하나씩 병렬로 적재할 수 있다. 식별자는 시퀀스(pooled)라서 겹치지 않는다.
+ *
+ * 주의: StatelessSession은 영속성 전이, 2차 캐시, 이벤트 리스너를 사용하지 않는다.
+ * 그래서 주문은 배송, 주문, 주문상품을 직접 하나씩 insert 한다.
+ */
+public class BulkIngester {
+    private static final int DEFAULT_CHUNK_SIZE = 1_000;
+
+    private final SessionFactory sessionFactory;
+    private final int chunkSize;
+    private final Integer jdbcBatchSize;
+
+    public BulkIngester(EntityManagerFactory entityManagerFactory) {
+        this(entityManagerFactory, DEFAULT_CHUNK_SIZE, null);
+    }
+
+    // jdbcBatchSize가 null이면 hibernate.jdbc.batch_size를 사용한다.
+    public BulkIngester(EntityManagerFactory entityManagerFactory, int chunkSize, Integer jdbcBatchSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize는 1 이상이어야 합니다: " + chunkSize);
+        }
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        this.chunkSize = chunkSize;
+        this.jdbcBatchSize = jdbcBatchSize;
+    }
+
+    // 적재한 행 수를 반환한다.
+    public long ingestItems(Iterable<Item> items) {
+        return ingest(items, (session, item) -> {
+            session.insert(item);
+            return 1;
+        });
+    }
+
+    // 배송, 주문, 주문상품을 모두 적재하고 적재한 행 수를 반환한다. 주문상품의 상품은 이미 저장되어 있어야 한다.
+    public long ingestOrders(Iterable<Order> orders) {
+        return ingest(orders, (session, order) -> {
+            int rows = 1;
+            if (order.getDelivery() != null) {
+                session.insert(order.getDelivery());
+                rows++;
+            }
+            session.insert(order);
+            for (OrderItem orderItem : order.getOrderItem()) {
+                orderItem.setOrder(order);
+                session.insert(orderItem);
+                rows++;
+            }
+            return rows;
+        });
+    }
+
+    public long ingestItemsInParallel(long from, long to, int partitions, RowSource<Item> source) {
+        return inParallel(from, to, partitions, (start, end) -> ingestItems(source.rows(start, end)));
+    }
+
+    public long ingestOrdersInParallel(long from, long to, int partitions, RowSource<Order> source) {
+        return inParallel(from, to, partitions, (start, end) -> ingestOrders(source.rows(start, end)));
+    }
+
+    private <T> long ingest(Iterable<T> rows, BiFunction<StatelessSession, T, Integer> writer) {
+        StatelessSession session = sessionFactory.openStatelessSession();
+        session.setJdbcBatchSize(jdbcBatchSize);
+        long written = 0;
+        int inChunk = 0;
+        try {
+            session.getTransaction().begin();
+            for (T row : rows) {
+                written += writer.apply(session, row);
+                if (++inChunk == chunkSize) {
+                    // 커밋하면서 남은 JDBC 배치를 실행한다.
+                    session.getTransaction().commit();
+                    session.getTransaction().begin();
+                    inChunk = 0;
+                }
+            }
+            session.getTransaction().commit();
+            return written;
+        } catch (RuntimeException e) {
+            if (session.getTransaction().isActive()) {
+                session.getTransaction().rollback();
+            }
+            throw e;
+        } finally {
+            session.close();
+        }
+    }
+
+    // [from, to)를 partitions개의 연속된 키 범위로 나눠서 범위마다 세션 하나로 적재한다.
+    private long inParallel(long from, long to, int partitions, RangeIngestion ingestion) {
+        if (partitions < 1 || from > to) {
+            throw new IllegalArgumentException("잘못된 키 범위입니다: [" + from + ", " + to + ") / " + partitions);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(partitions);
+        try {
+            long size = to - from;
+            List<Future<Long>> futures = new ArrayList<>(partitions);
+            for (int i = 0; i < partitions; i++) {
+                long start = from + size * i / partitions;
+                long end = from + size * (i + 1) / partitions;
+                futures.add(executor.submit(() -> ingestion.ingest(start, end)));
+            }
+
+            long written = 0;
+            for (Future<Long> future : futures) {
+                written += future.get();
+            }
+            return written;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("병렬 적재에 실패했습니다.", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("병렬 적재가 중단되었습니다.", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 키 범위 [from, to)에 해당하는 행 (피드의 행 번호, 원본 시스템의 키 등)
+     */
+    public interface RowSource<T> {
+        Iterable<T> rows(long from, long to);
+    }
+
+    private interface RangeIngestion {
+        long ingest(long from, long to);
+    }
+}
@@ -0,0 +1,197 @@
+package jpa.shop.repository;
+
+import jpa.shop.domain.Delivery;
+import jpa.shop.domain.Item;
+import jpa.shop.domain.Order;
+import jpa.shop.domain.OrderItem;
+import jpa.shop.domain.OrderStatus;
+import org.hibernate.engine.spi.SessionImplementor;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 벌크 연산 (상품 재고, 주문 상태 일괄 변경)
+ *
+ * 엔티티를 모두 조회해서 변경 감지로 수정하면 건수만큼 SELECT 결과를 만들고 UPDATE를 보낸다.
+ * 벌크 연산은 UPDATE/DELETE 한 번으로 여러 행을 바꾼다.
+ *
+ * 벌크 연산은 영속성 컨텍스트를 무시하고 DB에 직접 쿼리한다.
+ * 1. 영속성 컨텍스트: 이미 조회한 엔티티는 옛날 값을 그대로 가지고 있으므로 대상 엔티티 타입을 모두 준영속 상태로 만든다.
+ * 다시 조회하면 DB의 값을 읽는다. 실행 전에 JPQL 실행 규칙대로 flush가 먼저 일어나므로 변경 내용은 잃지 않는다.
+ * 2. 2차 캐시: 하이버네이트가 JPQL 벌크 연산 대상 엔티티의 캐시 영역(item)과 쿼리 캐시를 트랜잭션 완료 시 비운다.
+ *
+ * 청크 처리
+ * 한 번에 수십만 행을 바꾸면 그 행들의 락을 트랜잭션이 끝날 때까지 잡고 있다.
+ * chunkSize를 주면 대상 식별자를 순서대로 chunkSize개씩 읽어서(키셋, id > 이전 청크의 마지막 식별자)
+ * 그 범위마다 트랜잭션을 커밋한다. (이미 트랜잭션이 시작되어 있으면 안된다.)
+ * 식별자 범위를 chunkSize씩 건너뛰면 시퀀스 공백이나 샤드 식별자(OrderShards)처럼 듬성듬성한 식별자에서 빈 청크만 반복한다.
+ * 중간에 실패하면 앞에서 커밋한 범위는 반영된 상태로 남는다. 같은 조건으로 다시 실행하면 나머지만 바뀐다.
+ */
+public class BulkMutations {
+    static final String CANCEL_ORDERS_BY_MEMBER =
+            "update Order o set o.orderStatus = :cancel where o.member.id = :memberId and o.orderStatus = :order";
+    static final String ORDER_IDS_BY_MEMBER =
+            "select o.id from Order o where o.member.id = :memberId and o.orderStatus = :order and o.id > :lastId order by o.id";
+    // 엔티티 이름 Item이 jpa.Item과 겹치므로 패키지명을 적는다.
+    // versioned: 벌크 연산은 @Version을 올리지 않으므로 직접 올려서 이미 상품을 읽은 트랜잭션이 덮어쓰지 못하게 한다.
+    static final String RESTOCK_CATEGORY =
+            "update versioned jpa.shop.domain.Item i set i.stockQuantity = i.stockQuantity + :quantity"
+                    + " where i.id in (select ci.id from Category c join c.items ci where c.id = :categoryId)";
+    static final String ITEM_IDS_BY_CATEGORY =
+            "select ci.id from Category c join c.items ci where c.id = :categoryId and ci.id > :lastId order by ci.id";
+    static final String DELETE_CANCELED_ORDER_ITEMS =
+            "delete from OrderItem oi where oi.order.id in"
+                    + " (select o.id from Order o where o.orderStatus = :cancel and o.orderDate < :before)";
+    static final String DELETE_CANCELED_ORDERS =
+            "delete from Order o where o.orderStatus = :cancel and o.orderDate < :before";
+    static final String CANCELED_ORDER_DELIVERY_IDS =
+            "select distinct o.delivery.id from Order o where o.orderStatus = :cancel and o.orderDate < :before";
+    // 배송은 주문의 @ManyToOne이라 다른 주문이 함께 참조할 수 있으므로 남은 주문이 없는 배송만 지운다.
+    static final String DELETE_ORPHAN_DELIVERIES =
+            "delete from Delivery d where d.id in :ids and not exists (select o.id from Order o where o.delivery = d)";
+    // IN 절 파라미터 수 (Oracle은 1000개까지)
+    static final int IN_CLAUSE_LIMIT = 1_000;
+
+    private final EntityManager entityManager;
+
+    public BulkMutations(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    // 회원의 주문을 모두 취소한다. 바뀐 주문 수를 반환한다.
+    public int cancelOrdersByMember(Long memberId) {
+        int updated = cancelOrdersByMember(memberId, "").executeUpdate();
+        detachManaged(Order.class);
+        return updated;
+    }
+
+    public int cancelOrdersByMember(Long memberId, int chunkSize) {
+        return inChunks(chunkSize, Order.class,
+                lastId -> entityManager.createQuery(ORDER_IDS_BY_MEMBER, Long.class)
+                        .setParameter("memberId", memberId)
+                        .setParameter("order", OrderStatus.ORDER)
+                        .setParameter("lastId", lastId),
+                ids -> cancelOrdersByMember(memberId, " and o.id between :fromId and :toId")
+                        .setParameter("fromId", ids[0])
+                        .setParameter("toId", ids[1]));
+    }
+
+    // 카테고리에 속한 상품의 재고를 quantity만큼 늘린다. 바뀐 상품 수를 반환한다.
+    public int restockCategory(Long categoryId, int quantity) {
+        int updated = restockCategory(categoryId, quantity, "").executeUpdate();
+        detachManaged(Item.class);
+        return updated;
+    }
+
+    public int restockCategory(Long categoryId, int quantity, int chunkSize) {
+        return inChunks(chunkSize, Item.class,
+                lastId -> entityManager.createQuery(ITEM_IDS_BY_CATEGORY, Long.class)
+                        .setParameter("categoryId", categoryId)
+                        .setParameter("lastId", lastId),
+                ids -> restockCategory(categoryId, quantity, " and i.id between :fromId and :toId")
+                        .setParameter("fromId", ids[0])
+                        .setParameter("toId", ids[1]));
+    }
+
+    // before 이전에 취소된 주문과 주문상품, 배송을 삭제한다. 삭제한 주문 수를 반환한다.
+    public int deleteCanceledOrdersBefore(LocalDateTime before) {
+        // 배송은 주문이 외래 키로 참조하므로 주문을 지운 뒤에 지운다. 지울 주문의 배송을 먼저 읽어둔다.
+        List<Long> deliveryIds = entityManager.createQuery(CANCELED_ORDER_DELIVERY_IDS, Long.class)
+                .setParameter("cancel", OrderStatus.CANCEL)
+                .setParameter("before", before)
+                .getResultList();
+        // 외래 키 때문에 주문상품을 먼저 지운다. (벌크 연산에는 영속성 전이가 없다.)
+        entityManager.createQuery(DELETE_CANCELED_ORDER_ITEMS)
+                .setParameter("cancel", OrderStatus.CANCEL)
+                .setParameter("before", before)
+                .executeUpdate();
+        int deleted = entityManager.createQuery(DELETE_CANCELED_ORDERS)
+                .setParameter("cancel", OrderStatus.CANCEL)
+                .setParameter("before", before)
+                .executeUpdate();
+        for (int from = 0; from < deliveryIds.size(); from += IN_CLAUSE_LIMIT) {
+            entityManager.createQuery(DELETE_ORPHAN_DELIVERIES)
+                    .setParameter("ids", deliveryIds.subList(from, Math.min(from + IN_CLAUSE_LIMIT, deliveryIds.size())))
+                    .executeUpdate();
+        }
+        detachManaged(OrderItem.class);
+        detachManaged(Order.class);
+        detachManaged(Delivery.class);
+        return deleted;
+    }
+
+    private Query cancelOrdersByMember(Long memberId, String idRange) {
+        return entityManager.createQuery(CANCEL_ORDERS_BY_MEMBER + idRange)
+                .setParameter("cancel", OrderStatus.CANCEL)
+                .setParameter("order", OrderStatus.ORDER)
+                .setParameter("memberId", memberId);
+    }
+
+    private Query restockCategory(Long categoryId, int quantity, String idRange) {
+        return entityManager.createQuery(RESTOCK_CATEGORY + idRange)
+                .setParameter("quantity", quantity)
+                .setParameter("categoryId", categoryId);
+    }
+
+    // 대상 식별자를 chunkSize개씩 읽어서 [첫 식별자, 마지막 식별자] 범위마다 트랜잭션을 커밋한다.
+    private int inChunks(int chunkSize, Class<?> entityClass, IdQuery idQuery, ChunkQuery chunkQuery) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize는 1 이상이어야 합니다: " + chunkSize);
+        }
+        EntityTransaction transaction = entityManager.getTransaction();
+        if (transaction.isActive()) {
+            throw new IllegalStateException("청크마다 커밋하므로 트랜잭션 밖에서 호출해야 합니다.");
+        }
+
+        int updated = 0;
+        long lastId = Long.MIN_VALUE;
+        while (true) {
+            transaction.begin();
+            try {
+                List<Long> ids = idQuery.create(lastId).setMaxResults(chunkSize).getResultList();
+                if (ids.isEmpty()) {
+                    transaction.commit();
+                    break;
+                }
+                lastId = ids.get(ids.size() - 1);
+                updated += chunkQuery.create(new Long[]{ids.get(0), lastId}).executeUpdate();
+                transaction.commit();
+            } catch (RuntimeException e) {
+                if (transaction.isActive()) {
+                    transaction.rollback();
+                }
+                throw e;
+            }
+        }
+        detachManaged(entityClass);
+        return updated;
+    }
+
+    // 영속성 컨텍스트에 있는 entityClass 타입 엔티티를 모두 준영속 상태로 만든다.
+    private void detachManaged(Class<?> entityClass) {
+        Map<?, ?> entitiesByKey = entityManager.unwrap(SessionImplementor.class)
+                .getPersistenceContext()
+                .getEntitiesByKey();
+        List<Object> managed = new ArrayList<>(entitiesByKey.values());
+        for (Object entity : managed) {
+            if (entityClass.isInstance(entity) && entityManager.contains(entity)) {
+                entityManager.detach(entity);
+            }
+        }
+    }
+
+    private interface IdQuery {
+        TypedQuery<Long> create(long lastId);
+    }
+
+    private interface ChunkQuery {
+        Query create(Long[] idRange);
+    }
+}
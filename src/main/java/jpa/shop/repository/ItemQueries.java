@@ -0,0 +1,51 @@
+package jpa.shop.repository;
+
+import jpa.shop.domain.Item;
+import jpa.shop.dto.ItemStock;
+import jpa.support.KeysetPage;
+import jpa.support.KeysetPaginator;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Tuple;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 상품 조회 전용 쿼리
+ */
+public class ItemQueries {
+    // JPQL은 Item의 @NamedQuery
+    static final String FIND_STOCK_BELOW = "jpa.shop.domain.Item.findStockBelow";
+
+    private final EntityManager entityManager;
+
+    public ItemQueries(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    // 상품명 순 상품 목록 (키셋 페이징, 첫 페이지는 token이 null)
+    public KeysetPage<Item> findPageByName(String token, int size) {
+        return new KeysetPaginator<>(entityManager, Item.class, "name").next(token, size);
+    }
+
+    /**
+     * 재고 현황 (재고가 threshold 미만인 상품)
+     *
+     * Tuple로 조회해서 별칭으로 값을 꺼낸다. 생성자 표현식과 달리 DTO 패키지명을 JPQL에 적지 않아도 된다.
+     */
+    public List<ItemStock> findStockBelow(int threshold) {
+        List<Tuple> tuples = entityManager.createNamedQuery(FIND_STOCK_BELOW, Tuple.class)
+                .setParameter("threshold", threshold)
+                .getResultList();
+
+        List<ItemStock> stocks = new ArrayList<>(tuples.size());
+        for (Tuple tuple : tuples) {
+            stocks.add(new ItemStock(
+                    tuple.get("id", Long.class),
+                    tuple.get("name", String.class),
+                    tuple.get("price", Integer.class),
+                    tuple.get("stockQuantity", Integer.class)));
+        }
+        return stocks;
+    }
+}
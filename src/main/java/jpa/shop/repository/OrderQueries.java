@@ -0,0 +1,103 @@
+package jpa.shop.repository;
+
+import jpa.shop.domain.Order;
+import jpa.shop.dto.OrderLine;
+import jpa.support.KeysetPage;
+import jpa.support.KeysetPaginator;
+import org.hibernate.jpa.QueryHints;
+
+import javax.persistence.EntityGraph;
+import javax.persistence.EntityManager;
+import java.util.List;
+
+/**
+ * 주문 조회 전용 쿼리
+ *
+ * 주문 애그리거트(회원, 배송, 주문상품, 상품)를 조회할 때 N+1 문제가 생기지 않도록 한다.
+ * 1. 엔티티 그래프(order-with-lines, order-full): 필요한 연관관계를 한 번의 SQL로 가져온다.
+ * 2. 페치 조인 + 배치 조회: ToOne은 페치 조인으로 가져오고, 컬렉션은 @BatchSize로 IN 절 한번에 가져온다.
+ * 컬렉션을 페치 조인하면 페이징을 DB에서 할 수 없으므로(메모리에서 페이징) 페이징이 필요하면 2번을 사용한다.
+ */
+public class OrderQueries {
+    // JPQL은 Order의 @NamedQuery
+    static final String FIND_ALL = "Order.findAll";
+    static final String FIND_BY_ID = "Order.findById";
+    static final String FIND_PAGE_WITH_MEMBER_AND_DELIVERY = "Order.findPageWithMemberAndDelivery";
+    static final String FIND_LINES_BY_MEMBER = "Order.findLinesByMember";
+    static final String FIND_BY_MEMBER_WITH_LINES = "Order.findByMemberWithLines";
+
+    private final EntityManager entityManager;
+
+    public OrderQueries(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    // em.find에 fetchgraph 힌트를 주면 하이버네이트 5.3이 그래프를 무시하고 지연 로딩하므로 JPQL로 조회한다.
+    public Order findFull(Long orderId) {
+        List<Order> orders = entityManager.createNamedQuery(FIND_BY_ID, Order.class)
+                .setParameter("id", orderId)
+                .setHint(QueryHints.HINT_FETCHGRAPH, graph("order-full"))
+                .setHint(QueryHints.HINT_PASS_DISTINCT_THROUGH, false)
+                .getResultList();
+        return orders.isEmpty() ? null : orders.get(0);
+    }
+
+    // 주문 + 주문상품 + 상품을 SQL 한번으로 조회한다.
+    public List<Order> findAllWithLines() {
+        return findAll("order-with-lines");
+    }
+
+    // 주문 + 회원 + 배송 + 주문상품 + 상품을 SQL 한번으로 조회한다.
+    public List<Order> findAllFull() {
+        return findAll("order-full");
+    }
+
+    /**
+     * 최근 주문 목록 (페이징)
+     *
+     * 회원, 배송은 페치 조인하고 주문상품은 접근하는 시점에 @BatchSize로 한번에 가져온다.
+     * 페이지 크기가 배치 크기(100) 이하면 주문상품과 상품을 포함해서 항상 SQL 3번이다.
+     */
+    public List<Order> findRecent(int offset, int limit) {
+        return entityManager.createNamedQuery(FIND_PAGE_WITH_MEMBER_AND_DELIVERY, Order.class)
+                .setFirstResult(offset)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    /**
+     * 주문일 순 주문 목록 (키셋 페이징)
+     *
+     * findRecent는 offset 만큼 읽고 버리기 때문에 뒤 페이지일수록 느리다.
+     * 이전 페이지의 nextToken을 넘기면 (orderDate, id) 인덱스에서 바로 다음 위치부터 읽는다. 첫 페이지는 token이 null이다.
+     */
+    public KeysetPage<Order> findPageByOrderDate(String token, int size) {
+        return new KeysetPaginator<>(entityManager, Order.class, "orderDate").next(token, size);
+    }
+
+    public List<Order> findByMemberWithLines(Long memberId) {
+        return entityManager.createNamedQuery(FIND_BY_MEMBER_WITH_LINES, Order.class)
+                .setParameter("memberId", memberId)
+                .setHint(QueryHints.HINT_PASS_DISTINCT_THROUGH, false)
+                .getResultList();
+    }
+
+    // 주문 내역 화면: 엔티티를 만들지 않고 주문상품 한 건당 OrderLine 하나로 조회한다.
+    public List<OrderLine> findLinesByMember(Long memberId) {
+        return entityManager.createNamedQuery(FIND_LINES_BY_MEMBER, OrderLine.class)
+                .setParameter("memberId", memberId)
+                .getResultList();
+    }
+
+    private List<Order> findAll(String graphName) {
+        return entityManager.createNamedQuery(FIND_ALL, Order.class)
+                .setHint(QueryHints.HINT_FETCHGRAPH, graph(graphName))
+                // distinct는 엔티티 중복 제거에만 사용하고 SQL에는 넘기지 않는다.
+                .setHint(QueryHints.HINT_PASS_DISTINCT_THROUGH, false)
+                .getResultList();
+    }
+
+    private EntityGraph<?> graph(String name) {
+        return entityManager.getEntityGraph(name);
+    }
+}
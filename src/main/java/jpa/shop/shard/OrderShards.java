@@ -0,0 +1,267 @@
+package jpa.shop.shard;
+
+import jpa.shop.domain.Item;
+import jpa.shop.domain.Member;
+import jpa.shop.domain.Order;
+import jpa.shop.domain.OrderItem;
+import jpa.shop.repository.OrderQueries;
+import jpa.support.UnitOfWorkExecutor;
+import org.hibernate.ReplicationMode;
+import org.hibernate.Session;
+import org.hibernate.cfg.AvailableSettings;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * 회원 기준 주문 샤딩
+ *
+ * 주문(Order), 주문상품(OrderItem), 배송(Delivery)을 회원 식별자의 해시로 고른 샤드(DB) 하나에 저장한다.
+ * 한 회원의 주문은 모두 같은 샤드에 있으므로 회원별 조회, 주문 저장은 샤드 하나에서 트랜잭션 하나로 끝난다.
+ * 샤드마다 "hello" 영속성 유닛으로 EntityManagerFactory를 따로 만들고 작업 단위는 샤드의 UnitOfWorkExecutor로 실행한다.
+ *
+ * 참조 데이터
+ * 주문이 외래 키로 참조하는 회원은 회원의 샤드에, 상품은 모든 샤드에 식별자 그대로 복사해둔다. (Session.replicate)
+ * 원본은 샤딩하지 않는 DB에 두고 바뀔 때마다 다시 복사한다. 샤드의 상품 재고는 사용하지 않는다.
+ *
+ * 식별자
+ * 샤드마다 시퀀스가 따로 있으므로 시퀀스 값에 샤드 번호를 붙인다. (ShardSequenceGenerator)
+ * 주문 식별자만으로 샤드를 찾을 수 있다. (findOrder)
+ *
+ * 여러 샤드 조회 (scatter-gather)
+ * 최근 주문처럼 모든 회원에 걸친 조회는 샤드마다 병렬로 상위 limit건을 읽고 정렬 순서대로 합친다. (findRecent)
+ * 샤드 하나가 실패하면 전체가 실패한다. 조회한 주문은 준영속 상태이고 회원, 배송만 함께 읽는다.
+ *
+ * 2차 캐시는 끈다. 같은 JVM의 샤드들이 같은 캐시 영역 이름을 쓰므로 다른 샤드의 엔티티가 섞인다.
+ * 샤드 수를 바꾸면 회원의 샤드가 바뀌므로 데이터를 옮겨야 한다. (재샤딩은 다루지 않는다.)
+ */
+public class OrderShards implements AutoCloseable {
+    public static final String SHARD_INDEX = "jpa.shard.index";
+    public static final String SHARD_COUNT = "jpa.shard.count";
+    // 식별자 = 시퀀스 값 * MAX_SHARDS + 샤드 번호
+    public static final int MAX_SHARDS = 1024;
+
+    // 주문일, 식별자 내림차순 (OrderQueries.findRecent와 같은 순서)
+    // 주문일은 not null이지만 H2 desc처럼 null을 맨 뒤에 둔다. (뒤집기 전이라 nullsFirst)
+    static final Comparator<Order> RECENT_FIRST =
+            Comparator.comparing(Order::getOrderDate, Comparator.nullsFirst(Comparator.<LocalDateTime>naturalOrder()))
+                    .thenComparing(Order::getId).reversed();
+
+    private final List<EntityManagerFactory> shards;
+    private final List<UnitOfWorkExecutor> executors = new ArrayList<>();
+
+    // shards의 i번째는 SHARD_INDEX가 i인 shardProperties로 만든 EntityManagerFactory여야 한다.
+    public OrderShards(List<EntityManagerFactory> shards) {
+        if (shards.isEmpty() || shards.size() > MAX_SHARDS) {
+            throw new IllegalArgumentException("샤드 수는 1 ~ " + MAX_SHARDS + "이어야 합니다: " + shards.size());
+        }
+        for (int i = 0; i < shards.size(); i++) {
+            Map<String, Object> properties = shards.get(i).getProperties();
+            if (!String.valueOf(i).equals(String.valueOf(properties.get(SHARD_INDEX)))
+                    || !String.valueOf(shards.size()).equals(String.valueOf(properties.get(SHARD_COUNT)))) {
+                throw new IllegalArgumentException(i + "번 샤드의 " + SHARD_INDEX + ", " + SHARD_COUNT + "가 맞지 않습니다: "
+                        + properties.get(SHARD_INDEX) + "/" + properties.get(SHARD_COUNT));
+            }
+        }
+        this.shards = new ArrayList<>(shards);
+        for (EntityManagerFactory shard : shards) {
+            executors.add(UnitOfWorkExecutor.virtualThreads(shard));
+        }
+    }
+
+    // index번 샤드의 EntityManagerFactory 설정 (DB 접속 정보는 호출하는 쪽에서 더한다.)
+    public static Map<String, Object> shardProperties(int index, int count) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(SHARD_INDEX, String.valueOf(index));
+        properties.put(SHARD_COUNT, String.valueOf(count));
+        properties.put(AvailableSettings.IDENTIFIER_GENERATOR_STRATEGY_PROVIDER, ShardSequenceGenerator.Provider.class.getName());
+        properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, "false");
+        properties.put(AvailableSettings.USE_QUERY_CACHE, "false");
+        return properties;
+    }
+
+    // 로컬 실행, 테스트용: H2 인메모리 DB count개 (name_0, name_1, ...)
+    public static OrderShards inMemory(String name, int count) {
+        return inMemory(name, count, new HashMap<>());
+    }
+
+    public static OrderShards inMemory(String name, int count, Map<String, Object> overrides) {
+        List<EntityManagerFactory> shards = new ArrayList<>();
+        try {
+            for (int i = 0; i < count; i++) {
+                String database = name + "_" + i;
+                Map<String, Object> properties = shardProperties(i, count);
+                properties.put("javax.persistence.jdbc.url", "jdbc:h2:mem:" + database);
+                // 풀 MBean 이름이 겹치지 않도록 DB 이름을 사용한다.
+                properties.put("hibernate.hikari.poolName", database);
+                properties.putAll(overrides);
+                shards.add(Persistence.createEntityManagerFactory("hello", properties));
+            }
+            return new OrderShards(shards);
+        } catch (RuntimeException e) {
+            shards.forEach(EntityManagerFactory::close);
+            throw e;
+        }
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    public EntityManagerFactory getShard(int index) {
+        return shards.get(index);
+    }
+
+    // 회원의 샤드. 연속된 회원 식별자도 고르게 나뉘도록 비트를 섞은 뒤 나머지를 구한다.
+    public int shardOf(Long memberId) {
+        long hash = memberId;
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        hash = hash ^ (hash >>> 33);
+        return (int) Math.floorMod(hash, (long) shards.size());
+    }
+
+    // 샤드에서 만든 식별자(ShardSequenceGenerator)의 샤드
+    public static int shardOfId(Long id) {
+        return (int) Math.floorMod(id, (long) MAX_SHARDS);
+    }
+
+    // 회원의 샤드에서 작업 단위 하나를 실행한다.
+    public <R> R inMemberShard(Long memberId, Function<EntityManager, R> work) {
+        return executors.get(shardOf(memberId)).inTransaction(work);
+    }
+
+    // 회원을 회원의 샤드에 복사한다. 이미 있으면 덮어쓴다.
+    public void replicate(Member member) {
+        inMemberShard(member.getId(), entityManager -> {
+            entityManager.unwrap(Session.class).replicate(member, ReplicationMode.OVERWRITE);
+            return null;
+        });
+    }
+
+    // 상품을 모든 샤드에 복사한다. 이미 있으면 덮어쓴다.
+    public void replicate(Collection<Item> items) {
+        for (UnitOfWorkExecutor executor : executors) {
+            executor.inTransaction(entityManager -> {
+                Session session = entityManager.unwrap(Session.class);
+                for (Item item : items) {
+                    session.replicate(item, ReplicationMode.OVERWRITE);
+                }
+                return null;
+            });
+        }
+    }
+
+    /**
+     * 주문을 회원의 샤드에 저장하고 식별자를 반환한다. (주문상품, 배송은 영속성 전이)
+     *
+     * 회원, 상품은 식별자만 보고 샤드에 복사해둔 엔티티의 프록시로 바꿔서 연결한다. 먼저 replicate 해야 한다.
+     */
+    public Long save(Order order) {
+        Long memberId = order.getMember().getId();
+        return inMemberShard(memberId, entityManager -> {
+            order.setMember(entityManager.getReference(Member.class, memberId));
+            for (OrderItem orderItem : order.getOrderItem()) {
+                orderItem.setItem(entityManager.getReference(Item.class, orderItem.getItem().getId()));
+            }
+            entityManager.persist(order);
+            return order.getId();
+        });
+    }
+
+    // 주문 + 회원 + 배송 + 주문상품 + 상품 (식별자로 샤드를 찾는다.)
+    public Order findOrder(Long orderId) {
+        return executors.get(shardOfId(orderId)).inReadOnlyTransaction(entityManager -> new OrderQueries(entityManager).findFull(orderId));
+    }
+
+    // 회원의 주문 + 주문상품 + 상품 (회원의 샤드 하나만 조회한다.)
+    public List<Order> findByMember(Long memberId) {
+        return executors.get(shardOf(memberId)).inReadOnlyTransaction(entityManager -> new OrderQueries(entityManager).findByMemberWithLines(memberId));
+    }
+
+    /**
+     * 모든 회원의 최근 주문 limit건 (주문일, 식별자 내림차순)
+     *
+     * 샤드마다 상위 limit건을 병렬로 읽고(각 샤드는 내림차순 인덱스를 읽는다.) 이미 정렬된 목록들을 합쳐서 앞에서 limit건을 자른다.
+     */
+    public List<Order> findRecent(int limit) {
+        return mergeSorted(scatter(entityManager -> new OrderQueries(entityManager).findRecent(0, limit)), RECENT_FIRST, limit);
+    }
+
+    // 모든 샤드에서 읽기 전용 작업 단위를 병렬로 실행하고 샤드 순서대로 결과를 모은다.
+    public <R> List<R> scatter(Function<EntityManager, R> work) {
+        List<Future<R>> futures = new ArrayList<>();
+        for (UnitOfWorkExecutor executor : executors) {
+            futures.add(executor.submitReadOnly(work));
+        }
+        List<R> results = new ArrayList<>();
+        try {
+            for (Future<R> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("샤드 조회를 기다리는 중 중단되었습니다.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("샤드 조회에 실패했습니다.", e.getCause());
+        } finally {
+            for (Future<R> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    // 각각 comparator 순서로 정렬된 목록들을 합쳐서 앞에서 limit개 (k-way merge)
+    static <T> List<T> mergeSorted(List<List<T>> sortedLists, Comparator<? super T> comparator, int limit) {
+        PriorityQueue<Head<T>> heads = new PriorityQueue<>((a, b) -> comparator.compare(a.value, b.value));
+        for (List<T> list : sortedLists) {
+            Iterator<T> iterator = list.iterator();
+            if (iterator.hasNext()) {
+                heads.add(new Head<>(iterator.next(), iterator));
+            }
+        }
+        List<T> merged = new ArrayList<>(limit);
+        while (merged.size() < limit && !heads.isEmpty()) {
+            Head<T> head = heads.poll();
+            merged.add(head.value);
+            if (head.rest.hasNext()) {
+                heads.add(new Head<>(head.rest.next(), head.rest));
+            }
+        }
+        return merged;
+    }
+
+    // 이미 받은 작업이 끝나면 샤드를 모두 닫는다.
+    @Override
+    public void close() {
+        executors.forEach(UnitOfWorkExecutor::close);
+        shards.forEach(EntityManagerFactory::close);
+    }
+
+    private static class Head<T> {
+        private final T value;
+        private final Iterator<T> rest;
+
+        private Head(T value, Iterator<T> rest) {
+            this.value = value;
+            this.rest = rest;
+        }
+    }
+}
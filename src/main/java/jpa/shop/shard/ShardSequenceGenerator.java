@@ -0,0 +1,51 @@
+package jpa.shop.shard;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.jpa.spi.IdentifierGeneratorStrategyProvider;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * 샤드를 담은 식별자 (시퀀스 값 * OrderShards.MAX_SHARDS + 샤드 번호)
+ *
+ * 샤드마다 시퀀스가 따로 있어서 그대로 쓰면 샤드끼리 식별자가 겹친다.
+ * 시퀀스 값에 샤드 번호를 붙이면 모든 샤드에서 유일하고, 식별자만 보고 샤드를 찾을 수 있다. (OrderShards.shardOfId)
+ * 시퀀스 할당(pooled 옵티마이저)은 그대로 쓰므로 INSERT마다 시퀀스를 조회하지 않는다.
+ *
+ * OrderShards가 샤드 EntityManagerFactory를 만들 때 hibernate.identifier_generator_strategy_provider에 Provider를 지정해서
+ * @SequenceGenerator를 쓰는 엔티티(Order, OrderItem, Delivery)의 생성기를 이것으로 바꾼다.
+ */
+public class ShardSequenceGenerator extends SequenceStyleGenerator {
+    private int shardIndex;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        super.configure(type, params, serviceRegistry);
+        Object index = serviceRegistry.getService(ConfigurationService.class).getSettings().get(OrderShards.SHARD_INDEX);
+        if (index == null) {
+            throw new MappingException(OrderShards.SHARD_INDEX + "가 설정되지 않았습니다.");
+        }
+        this.shardIndex = Integer.parseInt(index.toString().trim());
+    }
+
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) {
+        long value = ((Number) super.generate(session, object)).longValue();
+        return value * OrderShards.MAX_SHARDS + shardIndex;
+    }
+
+    public static class Provider implements IdentifierGeneratorStrategyProvider {
+        @Override
+        public Map<String, Class<?>> getStrategies() {
+            return Collections.singletonMap(SequenceStyleGenerator.class.getName(), ShardSequenceGenerator.class);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package jpa.shop.stock;
+
+import jpa.shop.domain.Item;
+import org.hibernate.StaleStateException;
+import org.hibernate.query.NativeQuery;
+
+import javax.persistence.CacheRetrieveMode;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.PersistenceException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 재고 차감 (동시 주문)
+ *
+ * 재고를 읽고 빼고 저장하는 사이에 다른 주문이 끼어들면 한쪽의 차감이 사라진다. (lost update)
+ * 비관적 락(select ... for update)은 인기 상품 한 행에 모든 주문이 줄을 서게 된다.
+ *
+ * 1. reserveOptimistic: @Version으로 충돌을 감지하고, 충돌하면 잠깐 기다렸다가(지수 백오프 + 랜덤) 다시 시도한다.
+ * maxAttempts 번 모두 충돌하면 ABORTED를 반환한다. 충돌이 적을 때 유리하고, 재고 확인 외의 로직을 넣을 수 있다.
+ * 2. reserveConditional: UPDATE item set stock = stock - ? where id = ? and stock >= ? 한 번으로 끝낸다.
+ * DB가 행 락을 잡는 짧은 순간만 줄을 서고 재시도가 없다. 인기 상품처럼 충돌이 많을 때 유리하다.
+ *
+ * 두 방식 모두 재고는 음수가 되지 않는다. 없는 상품이거나 수량이 1보다 작으면 IllegalArgumentException
+ */
+public class StockReservation {
+    // 행 락을 잡은 상태에서 재고를 확인하고 빼므로 동시에 실행해도 음수가 되지 않는다. 버전도 올려서 낙관적 락과 같이 쓸 수 있다.
+    static final String DECREMENT_IF_AVAILABLE =
+            "update item set stockQuantity = stockQuantity - :quantity, version = version + 1"
+                    + " where id = :itemId and stockQuantity >= :quantity";
+    // 재고는 2차 캐시가 아니라 DB에서 읽어야 충돌이 덜 난다.
+    private static final Map<String, Object> BYPASS_CACHE =
+            Collections.singletonMap("javax.persistence.cache.retrieveMode", CacheRetrieveMode.BYPASS);
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final int maxAttempts;
+    private final long backoffMillis;
+    private final LongAdder conflicts = new LongAdder();
+
+    public StockReservation(EntityManagerFactory entityManagerFactory, int maxAttempts, long backoffMillis) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts는 1 이상이어야 합니다: " + maxAttempts);
+        }
+        this.entityManagerFactory = entityManagerFactory;
+        this.maxAttempts = maxAttempts;
+        this.backoffMillis = backoffMillis;
+    }
+
+    public Result reserveOptimistic(Long itemId, int quantity) {
+        checkQuantity(quantity);
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            EntityManager entityManager = entityManagerFactory.createEntityManager();
+            try {
+                entityManager.getTransaction().begin();
+                Item item = entityManager.find(Item.class, itemId, BYPASS_CACHE);
+                if (item == null) {
+                    throw notFound(itemId);
+                }
+                if (item.getStockQuantity() < quantity) {
+                    entityManager.getTransaction().rollback();
+                    return Result.OUT_OF_STOCK;
+                }
+                item.setStockQuantity(item.getStockQuantity() - quantity);
+                entityManager.getTransaction().commit();
+                return Result.RESERVED;
+            } catch (PersistenceException e) {
+                if (!isConflict(e)) {
+                    throw e;
+                }
+                conflicts.increment();
+            } finally {
+                if (entityManager.getTransaction().isActive()) {
+                    entityManager.getTransaction().rollback();
+                }
+                entityManager.close();
+            }
+            backoff(attempt);
+        }
+        return Result.ABORTED;
+    }
+
+    public Result reserveConditional(Long itemId, int quantity) {
+        checkQuantity(quantity);
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            entityManager.getTransaction().begin();
+            int updated = entityManager.createNativeQuery(DECREMENT_IF_AVAILABLE)
+                    .unwrap(NativeQuery.class)
+                    // 바뀐 테이블을 알려주지 않으면 하이버네이트가 2차 캐시 전체를 비운다.
+                    // 상품을 지정하면 커밋할 때 상품 캐시 영역과 item 테이블을 읽은 쿼리 캐시만 무효화한다.
+                    .addSynchronizedEntityClass(Item.class)
+                    .setParameter("quantity", quantity)
+                    .setParameter("itemId", itemId)
+                    .executeUpdate();
+            // 바뀐 행이 없을 때만 재고 부족인지 없는 상품인지 확인한다.
+            if (updated == 0 && entityManager.find(Item.class, itemId, BYPASS_CACHE) == null) {
+                throw notFound(itemId);
+            }
+            entityManager.getTransaction().commit();
+            return updated == 0 ? Result.OUT_OF_STOCK : Result.RESERVED;
+        } finally {
+            if (entityManager.getTransaction().isActive()) {
+                entityManager.getTransaction().rollback();
+            }
+            entityManager.close();
+        }
+    }
+
+    // 낙관적 락 충돌로 다시 시도한 횟수
+    public long getConflicts() {
+        return conflicts.sum();
+    }
+
+    // 커밋 시점의 버전 충돌(OptimisticLockException)
+    private static boolean isConflict(PersistenceException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OptimisticLockException || cause instanceof StaleStateException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 0이나 음수를 빼면 재고가 그대로이거나 늘어난다.
+    private static void checkQuantity(int quantity) {
+        if (quantity < 1) {
+            throw new IllegalArgumentException("수량은 1 이상이어야 합니다: " + quantity);
+        }
+    }
+
+    private static IllegalArgumentException notFound(Long itemId) {
+        return new IllegalArgumentException("상품이 없습니다: " + itemId);
+    }
+
+    // 재시도마다 대기 시간을 두 배로 늘리고, 같은 순간에 다시 몰리지 않도록 0 ~ 대기 시간 사이에서 랜덤으로 기다린다.
+    private void backoff(int attempt) {
+        long bound = backoffMillis << Math.min(attempt, 10);
+        if (bound <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(bound + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("재고 차감 대기 중 중단되었습니다.", e);
+        }
+    }
+
+    public enum Result {
+        RESERVED,
+        OUT_OF_STOCK,
+        // 재시도를 모두 충돌로 실패
+        ABORTED
+    }
+}
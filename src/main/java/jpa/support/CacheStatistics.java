@@ -0,0 +1,98 @@
+package jpa.support;
+
+import org.jboss.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 2차 캐시 영역별 통계
+ *
+ * JCache 구현체가 JMX(javax.cache:type=CacheStatistics)로 노출하는 통계를 읽는다.
+ * 적중(hit), 실패(miss), 축출(eviction) 수를 보고 application.conf의 영역 크기와 TTL을 조정한다.
+ * 축출이 많고 적중률이 낮으면 영역이 작은 것이고, 축출이 없고 적중률도 낮으면 캐시할 대상이 아닌 것이다.
+ * log()는 jpa.cache 로거에 INFO로 남긴다.
+ */
+public final class CacheStatistics {
+    private static final String STATISTICS_PATTERN = "javax.cache:type=CacheStatistics,*";
+    private static final Logger LOG = Logger.getLogger("jpa.cache");
+
+    private CacheStatistics() {
+    }
+
+    public static List<Region> regions() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        List<Region> regions = new ArrayList<>();
+        try {
+            for (ObjectName name : server.queryNames(new ObjectName(STATISTICS_PATTERN), null)) {
+                regions.add(new Region(
+                        name.getKeyProperty("Cache"),
+                        (Long) server.getAttribute(name, "CacheHits"),
+                        (Long) server.getAttribute(name, "CacheMisses"),
+                        (Long) server.getAttribute(name, "CachePuts"),
+                        (Long) server.getAttribute(name, "CacheEvictions")));
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("2차 캐시 통계를 읽을 수 없습니다.", e);
+        }
+        regions.sort((a, b) -> a.getName().compareTo(b.getName()));
+        return regions;
+    }
+
+    public static void log() {
+        for (Region region : regions()) {
+            LOG.info(region);
+        }
+    }
+
+    public static class Region {
+        private final String name;
+        private final long hits;
+        private final long misses;
+        private final long puts;
+        private final long evictions;
+
+        Region(String name, long hits, long misses, long puts, long evictions) {
+            this.name = name;
+            this.hits = hits;
+            this.misses = misses;
+            this.puts = puts;
+            this.evictions = evictions;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getPuts() {
+            return puts;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public double getHitRatio() {
+            long requests = hits + misses;
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s hits=%d misses=%d puts=%d evictions=%d hitRatio=%.2f",
+                    name, hits, misses, puts, evictions, getHitRatio());
+        }
+    }
+}
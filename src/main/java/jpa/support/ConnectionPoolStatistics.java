@@ -0,0 +1,93 @@
+package jpa.support;
+
+import org.jboss.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 커넥션 풀 상태
+ *
+ * HikariCP가 JMX(com.zaxxer.hikari:type=Pool (풀 이름))로 노출하는 값을 읽는다. (hibernate.hikari.registerMbeans=true)
+ * active: 사용 중인 커넥션, idle: 놀고 있는 커넥션, pending: 커넥션을 기다리는 스레드
+ * pending이 계속 0보다 크면 풀이 작거나 커넥션을 오래 잡고 있는 것이다.
+ * log()는 jpa.connection_pool 로거에 INFO로 남긴다.
+ */
+public final class ConnectionPoolStatistics {
+    private static final String POOL_PATTERN = "com.zaxxer.hikari:type=Pool (*";
+    private static final Logger LOG = Logger.getLogger("jpa.connection_pool");
+
+    private ConnectionPoolStatistics() {
+    }
+
+    public static List<Pool> pools() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        List<Pool> pools = new ArrayList<>();
+        try {
+            for (ObjectName name : server.queryNames(new ObjectName(POOL_PATTERN), null)) {
+                String type = name.getKeyProperty("type");
+                pools.add(new Pool(
+                        type.substring("Pool (".length(), type.length() - 1),
+                        (Integer) server.getAttribute(name, "ActiveConnections"),
+                        (Integer) server.getAttribute(name, "IdleConnections"),
+                        (Integer) server.getAttribute(name, "TotalConnections"),
+                        (Integer) server.getAttribute(name, "ThreadsAwaitingConnection")));
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("커넥션 풀 통계를 읽을 수 없습니다.", e);
+        }
+        pools.sort((a, b) -> a.getName().compareTo(b.getName()));
+        return pools;
+    }
+
+    public static void log() {
+        for (Pool pool : pools()) {
+            LOG.info(pool);
+        }
+    }
+
+    public static class Pool {
+        private final String name;
+        private final int active;
+        private final int idle;
+        private final int total;
+        private final int pending;
+
+        Pool(String name, int active, int idle, int total, int pending) {
+            this.name = name;
+            this.active = active;
+            this.idle = idle;
+            this.total = total;
+            this.pending = pending;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getActive() {
+            return active;
+        }
+
+        public int getIdle() {
+            return idle;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        public int getPending() {
+            return pending;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s active=%d idle=%d total=%d pending=%d", name, active, idle, total, pending);
+        }
+    }
+}
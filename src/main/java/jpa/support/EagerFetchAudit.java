@@ -0,0 +1,137 @@
+package jpa.support;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.PersistentAttributeInterceptable;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.mapping.Collection;
+import org.hibernate.mapping.Component;
+import org.hibernate.mapping.ManyToOne;
+import org.hibernate.mapping.OneToOne;
+import org.hibernate.mapping.PersistentClass;
+import org.hibernate.mapping.Property;
+import org.hibernate.mapping.ToOne;
+import org.hibernate.mapping.Value;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.jboss.logging.Logger;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 즉시 로딩 점검 (META-INF/services로 등록)
+ *
+ * EntityManagerFactory를 만들 때 매핑 정보(Metadata)에서 조회할 때마다 같이 읽히는 연관관계를 찾는다.
+ * 1. EAGER: @ManyToOne, @OneToOne의 기본값, fetch = EAGER인 컬렉션
+ * 2. 반대편 일대일(mappedBy): LAZY로 설정해도 대상이 있는지 확인해야 해서 즉시 로딩된다. (Locker 참고)
+ * 3. @NotFound(IGNORE): 대상이 없을 수 있어서 프록시를 만들지 않는다.
+ *
+ * jpa.eager_fetch_audit
+ * warn: jpa.eager_fetch 로거에 남긴다.
+ * fail: 기동에 실패한다.
+ * 그 외(설정하지 않음): 점검하지 않는다.
+ */
+public class EagerFetchAudit implements Integrator {
+    public static final String MODE = "jpa.eager_fetch_audit";
+    private static final Logger LOG = Logger.getLogger("jpa.eager_fetch");
+    private static final Map<SessionFactoryImplementor, List<Finding>> FINDINGS = new ConcurrentHashMap<>();
+
+    @Override
+    public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        Object mode = sessionFactory.getProperties().get(MODE);
+        if (!"warn".equals(mode) && !"fail".equals(mode)) {
+            return;
+        }
+        List<Finding> findings = audit(metadata);
+        if ("fail".equals(mode) && !findings.isEmpty()) {
+            throw new IllegalStateException("즉시 로딩되는 연관관계가 있습니다: " + findings);
+        }
+        for (Finding finding : findings) {
+            LOG.warn(finding);
+        }
+        FINDINGS.put(sessionFactory, findings);
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        FINDINGS.remove(sessionFactory);
+    }
+
+    // 기동할 때 찾은 연관관계 (점검하지 않았으면 빈 목록)
+    public static List<Finding> getFindings(EntityManagerFactory entityManagerFactory) {
+        return FINDINGS.getOrDefault(entityManagerFactory.unwrap(SessionFactoryImplementor.class), Collections.emptyList());
+    }
+
+    public static List<Finding> audit(Metadata metadata) {
+        List<Finding> findings = new ArrayList<>();
+        for (PersistentClass entity : metadata.getEntityBindings()) {
+            audit(entity, entity.getEntityName(), entity.getPropertyIterator(), findings);
+        }
+        return findings;
+    }
+
+    // 임베디드 타입 안의 연관관계도 확인한다. (path: 엔티티.임베디드.속성)
+    private static void audit(PersistentClass entity, String path, Iterator<?> properties, List<Finding> findings) {
+        while (properties.hasNext()) {
+            Property property = (Property) properties.next();
+            String name = path + "." + property.getName();
+            Value value = property.getValue();
+            if (value instanceof Component) {
+                audit(entity, name, ((Component) value).getPropertyIterator(), findings);
+            } else if (value instanceof Collection && !((Collection) value).isLazy()) {
+                findings.add(new Finding(name, "EAGER 컬렉션"));
+            } else if (value instanceof ToOne) {
+                String reason = reason(entity, (ToOne) value);
+                if (reason != null) {
+                    findings.add(new Finding(name, reason));
+                }
+            }
+        }
+    }
+
+    private static String reason(PersistentClass entity, ToOne toOne) {
+        if (!toOne.isLazy()) {
+            return "EAGER";
+        }
+        if (toOne instanceof ManyToOne && ((ManyToOne) toOne).isIgnoreNotFound()) {
+            return "@NotFound(IGNORE)는 프록시를 만들 수 없다";
+        }
+        if (toOne instanceof OneToOne && !((OneToOne) toOne).isConstrained() && !isNoProxyLazy(entity, toOne)) {
+            return "반대편 일대일은 대상이 있는지 확인해야 해서 즉시 로딩된다";
+        }
+        return null;
+    }
+
+    // 바이트코드 향상(지연 로딩)이 된 엔티티의 @LazyToOne(NO_PROXY)는 필드에 처음 접근할 때 조회한다.
+    private static boolean isNoProxyLazy(PersistentClass entity, ToOne toOne) {
+        return toOne.isUnwrapProxy() && PersistentAttributeInterceptable.class.isAssignableFrom(entity.getMappedClass());
+    }
+
+    public static class Finding {
+        private final String property;
+        private final String reason;
+
+        Finding(String property, String reason) {
+            this.property = property;
+            this.reason = reason;
+        }
+
+        public String getProperty() {
+            return property;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        @Override
+        public String toString() {
+            return property + ": " + reason;
+        }
+    }
+}
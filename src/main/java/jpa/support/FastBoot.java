@@ -0,0 +1,78 @@
+package jpa.support;
+
+import jpa.AddressHistory;
+import jpa.Album;
+import jpa.Book;
+import jpa.Child;
+import jpa.Developer;
+import jpa.Locker;
+import jpa.MemberNameGram;
+import jpa.MemberOld;
+import jpa.Movie;
+import jpa.Parent;
+import jpa.Team;
+import jpa.shop.domain.Category;
+import jpa.shop.domain.Delivery;
+import jpa.shop.domain.Member;
+import jpa.shop.domain.Order;
+import jpa.shop.domain.OrderItem;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * EntityManagerFactory 기동 (App, jpa.shop.Main)
+ *
+ * Persistence.createEntityManagerFactory("hello")는 기동할 때마다 클래스패스에서 @Entity를 찾고(스캔) 매핑 정보를 만들고
+ * 엔티티마다 프록시 클래스를 만들고 스키마를 지우고 다시 만든다. (create) 짧게 실행되는 배치에서는 이 시간이 대부분이다.
+ *
+ * -Djpa.fast_boot=true (빠른 기동)
+ * 1. 스캔하지 않고 MANAGED_CLASSES만 등록한다. 엔티티를 추가하면 여기에도 추가해야 한다. (FastBootTest가 확인한다.)
+ * 2. 스키마는 만들지 않고 검증만 한다. (validate) 스키마가 이미 있는 DB(파일, 서버)를 사용해야 한다.
+ * 3. 클래스 로딩과 검증은 AppCDS 아카이브로 줄인다. (JVM 옵션, StartupHarness 참고)
+ *
+ * -Djavax.persistence.*, -Dhibernate.*, -Djpa.* 시스템 속성은 persistence.xml보다 우선한다. (ex. -Djavax.persistence.jdbc.url=jdbc:h2:./data/jpabasic)
+ *
+ * 하이버네이트 5.3은 빌드 시점에 프록시를 만들 수 없고(바이트코드 향상 프록시는 5.4부터)
+ * 매핑 정보(Metadata)는 서비스 레지스트리에 묶여 있어서 직렬화해 두었다가 다시 쓸 수 없다.
+ */
+public final class FastBoot {
+    public static final String ENABLED = "jpa.fast_boot";
+    public static final List<Class<?>> MANAGED_CLASSES = Collections.unmodifiableList(Arrays.asList(
+            AddressHistory.class, Album.class, Book.class, Child.class, Developer.class, jpa.Item.class, Locker.class,
+            MemberNameGram.class, MemberOld.class, Movie.class, Parent.class, Team.class,
+            Category.class, Delivery.class, jpa.shop.domain.Item.class, Member.class, Order.class, OrderItem.class));
+
+    private FastBoot() {
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(ENABLED);
+    }
+
+    public static EntityManagerFactory createEntityManagerFactory(String persistenceUnitName) {
+        Map<String, Object> properties = new HashMap<>();
+        if (isEnabled()) {
+            properties.putAll(fastBootProperties());
+        }
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith("javax.persistence.") || name.startsWith("hibernate.") || (name.startsWith("jpa.") && !name.equals(ENABLED))) {
+                properties.put(name, System.getProperty(name));
+            }
+        }
+        return Persistence.createEntityManagerFactory(persistenceUnitName, properties);
+    }
+
+    public static Map<String, Object> fastBootProperties() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("hibernate.archive.autodetection", "none");
+        properties.put("hibernate.ejb.loaded.classes", MANAGED_CLASSES);
+        properties.put("hibernate.hbm2ddl.auto", "validate");
+        return properties;
+    }
+}
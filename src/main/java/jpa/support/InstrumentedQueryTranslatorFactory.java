@@ -0,0 +1,93 @@
+package jpa.support;
+
+import org.hibernate.HibernateException;
+import org.hibernate.engine.query.spi.EntityGraphQueryHint;
+import org.hibernate.engine.spi.QueryParameters;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.hql.internal.ast.ASTQueryTranslatorFactory;
+import org.hibernate.hql.internal.ast.QueryTranslatorImpl;
+import org.hibernate.hql.spi.FilterTranslator;
+import org.hibernate.hql.spi.QueryTranslator;
+import org.hibernate.query.spi.ScrollableResultsImplementor;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * JPQL 번역 횟수 (쿼리 계획 캐시 미스)
+ *
+ * 하이버네이트는 JPQL을 SQL로 번역한 결과(HQLQueryPlan)를 쿼리 계획 캐시에 두고 같은 문자열이면 다시 쓴다.
+ * 캐시에 없을 때만 번역기를 만드므로 번역기를 만든 횟수가 번역 횟수다. 하이버네이트 5.3 통계에는 계획 캐시 적중 수가 없어서 여기서 센다.
+ * hibernate.query.factory_class에 지정하면 InstrumentedStatistics에 기록한다. (PersistenceMetrics.getQueryPlanCacheHitRatio)
+ *
+ * 적중률은 JPQL 실행만 대상으로 한다. 번역기가 실행될 때마다 JPQL 실행으로 세고, 기동 후에 번역한 번역기의 첫 실행은 미스로 센다.
+ * 기동할 때 번역한 Named 쿼리는 처음부터 적중이고, 실행하지 않은 번역(QueryPlanChecker 등)은 세지 않는다.
+ */
+public class InstrumentedQueryTranslatorFactory extends ASTQueryTranslatorFactory {
+    @Override
+    @SuppressWarnings("rawtypes")
+    public QueryTranslator createQueryTranslator(String queryIdentifier, String queryString, Map filters,
+                                                 SessionFactoryImplementor factory, EntityGraphQueryHint entityGraphQueryHint) {
+        return new InstrumentedQueryTranslator(queryIdentifier, queryString, filters, factory, entityGraphQueryHint);
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public FilterTranslator createFilterTranslator(String queryIdentifier, String queryString, Map filters,
+                                                   SessionFactoryImplementor factory) {
+        return new InstrumentedQueryTranslator(queryIdentifier, queryString, filters, factory, null);
+    }
+
+    private static class InstrumentedQueryTranslator extends QueryTranslatorImpl {
+        private final InstrumentedStatistics statistics;
+        // 한 번이라도 실행했거나 기동할 때 번역했으면 true
+        private final AtomicBoolean reused;
+
+        @SuppressWarnings("rawtypes")
+        InstrumentedQueryTranslator(String queryIdentifier, String queryString, Map filters,
+                                    SessionFactoryImplementor factory, EntityGraphQueryHint entityGraphQueryHint) {
+            super(queryIdentifier, queryString, filters, factory, entityGraphQueryHint);
+            this.statistics = factory.getStatistics() instanceof InstrumentedStatistics
+                    ? (InstrumentedStatistics) factory.getStatistics()
+                    : null;
+            this.reused = new AtomicBoolean(statistics != null && statistics.queryPlanCompiled());
+        }
+
+        @Override
+        @SuppressWarnings("rawtypes")
+        public List list(SharedSessionContractImplementor session, QueryParameters queryParameters) throws HibernateException {
+            executed();
+            return super.list(session, queryParameters);
+        }
+
+        @Override
+        @SuppressWarnings("rawtypes")
+        public Iterator iterate(QueryParameters queryParameters, EventSource session) throws HibernateException {
+            executed();
+            return super.iterate(queryParameters, session);
+        }
+
+        @Override
+        public ScrollableResultsImplementor scroll(QueryParameters queryParameters, SharedSessionContractImplementor session)
+                throws HibernateException {
+            executed();
+            return super.scroll(queryParameters, session);
+        }
+
+        @Override
+        public int executeUpdate(QueryParameters queryParameters, SharedSessionContractImplementor session) throws HibernateException {
+            executed();
+            return super.executeUpdate(queryParameters, session);
+        }
+
+        private void executed() {
+            if (statistics != null) {
+                statistics.jpqlExecuted(!reused.getAndSet(true));
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package jpa.support;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.internal.StatisticsImpl;
+import org.hibernate.stat.spi.StatisticsFactory;
+import org.hibernate.stat.spi.StatisticsImplementor;
+import org.jboss.logging.Logger;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 하이버네이트 통계 + flush, 변경 감지 시간 + 느린 쿼리 로그
+ *
+ * hibernate.stats.factory에 InstrumentedStatistics.Factory를 지정하면 하이버네이트가 기본 통계 대신 사용한다.
+ * hibernate.generate_statistics가 false면 아무것도 기록하지 않는다.
+ *
+ * 느린 쿼리 로그: JPQL, 네이티브 쿼리 실행 시간이 jpa.slow_query_threshold_ms 이상이면 jpa.slow_query 로거에 WARN으로 남긴다.
+ * 음수면 남기지 않는다. show_sql은 모든 SQL을 표준 출력으로 동기 출력하므로 운영에서는 끄고 이것만 켠다.
+ * 시간은 하이버네이트가 쿼리 통계로 재는 값(ms)을 그대로 쓰므로 추가 비용이 없다. (em.find 같은 식별자 조회는 포함되지 않는다.)
+ *
+ * JPQL 번역 횟수(쿼리 계획 캐시 미스)는 InstrumentedQueryTranslatorFactory가 알려준다.
+ */
+public class InstrumentedStatistics extends StatisticsImpl {
+    public static final String SLOW_QUERY_THRESHOLD = "jpa.slow_query_threshold_ms";
+    private static final Logger SLOW_QUERY_LOG = Logger.getLogger("jpa.slow_query");
+
+    private final long slowQueryThresholdMillis;
+    private final LongAdder slowQueries = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushNanos = new LongAdder();
+    private final LongAccumulator flushMaxNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder dirtyChecks = new LongAdder();
+    private final LongAdder dirtyCheckNanos = new LongAdder();
+    private final LongAccumulator dirtyCheckMaxNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder queryPlanCompiles = new LongAdder();
+    private final LongAdder jpqlExecutions = new LongAdder();
+    private final LongAdder queryPlanMisses = new LongAdder();
+    // 세션을 한 번이라도 열었으면 기동이 끝난 것이다. (Named 쿼리는 그 전에 번역한다.)
+    private volatile boolean started;
+
+    public InstrumentedStatistics(SessionFactoryImplementor sessionFactory) {
+        super(sessionFactory);
+        Object threshold = sessionFactory.getProperties().get(SLOW_QUERY_THRESHOLD);
+        this.slowQueryThresholdMillis = threshold == null ? -1 : Long.parseLong(threshold.toString().trim());
+    }
+
+    @Override
+    public void openSession() {
+        started = true;
+        super.openSession();
+    }
+
+    @Override
+    public void queryExecuted(String hql, int rows, long time) {
+        super.queryExecuted(hql, rows, time);
+        if (slowQueryThresholdMillis >= 0 && time >= slowQueryThresholdMillis) {
+            slowQueries.increment();
+            SLOW_QUERY_LOG.warnf("slow query: %dms, rows=%d, %s", time, rows, hql);
+        }
+    }
+
+    // flush 한 번 (명시적 flush, 커밋, 쿼리 실행 전 자동 flush)
+    void flushed(long nanos) {
+        if (isStatisticsEnabled()) {
+            flushes.increment();
+            flushNanos.add(nanos);
+            flushMaxNanos.accumulate(nanos);
+        }
+    }
+
+    // flush 중 엔티티 하나의 변경 감지 (스냅샷 비교 또는 바이트코드 향상의 변경 추적)
+    void dirtyChecked(long nanos) {
+        if (isStatisticsEnabled()) {
+            dirtyChecks.increment();
+            dirtyCheckNanos.add(nanos);
+            dirtyCheckMaxNanos.accumulate(nanos);
+        }
+    }
+
+    // 쿼리 계획 캐시에 없는 JPQL을 SQL로 번역했다. (EntityManagerFactory를 만들 때 Named 쿼리 번역 포함)
+    // 기동 중에 번역했으면 true
+    boolean queryPlanCompiled() {
+        if (isStatisticsEnabled()) {
+            queryPlanCompiles.increment();
+        }
+        return !started;
+    }
+
+    // JPQL 실행 (네이티브 쿼리 제외), 실행하려고 새로 번역했으면 miss
+    void jpqlExecuted(boolean miss) {
+        if (isStatisticsEnabled()) {
+            jpqlExecutions.increment();
+            if (miss) {
+                queryPlanMisses.increment();
+            }
+        }
+    }
+
+    public long getSlowQueryThresholdMillis() {
+        return slowQueryThresholdMillis;
+    }
+
+    public long getSlowQueryCount() {
+        return slowQueries.sum();
+    }
+
+    public long getTimedFlushCount() {
+        return flushes.sum();
+    }
+
+    public long getFlushNanos() {
+        return flushNanos.sum();
+    }
+
+    public long getFlushMaxNanos() {
+        return flushMaxNanos.get();
+    }
+
+    public long getDirtyCheckCount() {
+        return dirtyChecks.sum();
+    }
+
+    public long getDirtyCheckNanos() {
+        return dirtyCheckNanos.sum();
+    }
+
+    public long getDirtyCheckMaxNanos() {
+        return dirtyCheckMaxNanos.get();
+    }
+
+    public long getQueryPlanCompileCount() {
+        return queryPlanCompiles.sum();
+    }
+
+    public long getJpqlExecutionCount() {
+        return jpqlExecutions.sum();
+    }
+
+    public long getQueryPlanMissCount() {
+        return queryPlanMisses.sum();
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        // StatisticsImpl 생성자에서도 호출되는데, 그때는 아직 필드가 없다.
+        if (slowQueries == null) {
+            return;
+        }
+        slowQueries.reset();
+        flushes.reset();
+        flushNanos.reset();
+        flushMaxNanos.reset();
+        dirtyChecks.reset();
+        dirtyCheckNanos.reset();
+        dirtyCheckMaxNanos.reset();
+        queryPlanCompiles.reset();
+        jpqlExecutions.reset();
+        queryPlanMisses.reset();
+    }
+
+    public static class Factory implements StatisticsFactory {
+        @Override
+        public StatisticsImplementor buildStatistics(SessionFactoryImplementor sessionFactory) {
+            return new InstrumentedStatistics(sessionFactory);
+        }
+    }
+}
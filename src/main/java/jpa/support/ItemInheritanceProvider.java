@@ -0,0 +1,89 @@
+package jpa.support;
+
+import jpa.ItemInheritance;
+import org.hibernate.boot.registry.classloading.spi.ClassLoaderService;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.jpa.HibernatePersistenceProvider;
+import org.hibernate.jpa.boot.internal.ParsedPersistenceXmlDescriptor;
+import org.hibernate.jpa.boot.internal.PersistenceXmlParser;
+import org.hibernate.jpa.boot.spi.EntityManagerFactoryBuilder;
+import org.hibernate.jpa.boot.spi.PersistenceUnitDescriptor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * jpa.item_inheritance 값에 맞는 orm.xml(META-INF/item-*.xml)을 추가하는 하이버네이트 PersistenceProvider (ItemInheritance)
+ *
+ * persistence.xml의 mapping-file은 실행할 때 바꿀 수 없고, 같은 엔티티를 두 orm.xml에 적으면 기동에 실패한다.
+ * 그래서 persistence.xml의 속성과 createEntityManagerFactory에 넘긴 속성을 보고 하나만 hibernate.ejb.xml_files로 추가한다.
+ * (하이버네이트의 MetadataSourcesContributor는 JPA로 기동하면 설정 값을 볼 수 없다.)
+ *
+ * persistence.xml의 provider로 지정하고 META-INF/services/javax.persistence.spi.PersistenceProvider로 등록한다.
+ * provider로 이 클래스를 적은 영속성 유닛만 처리한다. 다른 provider를 적은 유닛은 가져가지 않는다.
+ */
+public class ItemInheritanceProvider extends HibernatePersistenceProvider {
+    private static final String PROVIDER = "javax.persistence.provider";
+
+    @Override
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    protected EntityManagerFactoryBuilder getEntityManagerFactoryBuilderOrNull(String persistenceUnitName, Map properties) {
+        // 하이버네이트는 provider가 HibernatePersistenceProvider인 영속성 유닛만 처리하므로 이름을 바꿔서 넘긴다.
+        // 속성으로 넘긴 provider가 persistence.xml보다 우선하므로 이 클래스를 적은 유닛일 때만 바꾼다.
+        Map integration = properties == null ? new HashMap() : new HashMap(properties);
+        Object requested = integration.get(PROVIDER);
+        if (isThisProvider(requested) || requested == null && declaresThisProvider(persistenceUnitName, integration)) {
+            integration.put(PROVIDER, HibernatePersistenceProvider.class.getName());
+        }
+        return super.getEntityManagerFactoryBuilderOrNull(persistenceUnitName, integration);
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static boolean declaresThisProvider(String persistenceUnitName, Map integration) {
+        for (ParsedPersistenceXmlDescriptor persistenceUnit : PersistenceXmlParser.locatePersistenceUnits(integration)) {
+            if (persistenceUnitName == null || persistenceUnit.getName().equals(persistenceUnitName)) {
+                return isThisProvider(persistenceUnit.getProviderClassName());
+            }
+        }
+        return false;
+    }
+
+    private static boolean isThisProvider(Object providerClassName) {
+        return providerClassName != null && ItemInheritanceProvider.class.getName().equals(providerClassName.toString().trim());
+    }
+
+    @Override
+    protected EntityManagerFactoryBuilder getEntityManagerFactoryBuilder(PersistenceUnitDescriptor persistenceUnitDescriptor,
+                                                                         Map integration, ClassLoader providedClassLoader) {
+        return super.getEntityManagerFactoryBuilder(persistenceUnitDescriptor,
+                withMappingFile(persistenceUnitDescriptor, integration), providedClassLoader);
+    }
+
+    @Override
+    protected EntityManagerFactoryBuilder getEntityManagerFactoryBuilder(PersistenceUnitDescriptor persistenceUnitDescriptor,
+                                                                         Map integration, ClassLoaderService providedClassLoaderService) {
+        return super.getEntityManagerFactoryBuilder(persistenceUnitDescriptor,
+                withMappingFile(persistenceUnitDescriptor, integration), providedClassLoaderService);
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static Map withMappingFile(PersistenceUnitDescriptor persistenceUnitDescriptor, Map integration) {
+        Object value = integration != null && integration.containsKey(ItemInheritance.PROPERTY)
+                ? integration.get(ItemInheritance.PROPERTY)
+                : persistenceUnitDescriptor.getProperties().get(ItemInheritance.PROPERTY);
+        String mappingFile = ItemInheritance.from(value).getMappingFile();
+        if (mappingFile == null) {
+            return integration;
+        }
+        Map result = integration == null ? new HashMap() : new HashMap(integration);
+        List<String> mappingFiles = new ArrayList<>();
+        if (result.get(AvailableSettings.XML_FILE_NAMES) != null) {
+            mappingFiles.addAll((List<String>) result.get(AvailableSettings.XML_FILE_NAMES));
+        }
+        mappingFiles.add(mappingFile);
+        result.put(AvailableSettings.XML_FILE_NAMES, mappingFiles);
+        return result;
+    }
+}
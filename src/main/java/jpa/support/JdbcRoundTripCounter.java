@@ -0,0 +1,64 @@
+package jpa.support;
+
+import org.hibernate.BaseSessionEventListener;
+import org.hibernate.Session;
+
+import javax.persistence.EntityManager;
+
+/**
+ * 엔티티 매니저(세션) 하나가 데이터베이스로 보낸 JDBC 호출 수를 센다.
+ *
+ * statement: executeQuery/executeUpdate 한번 (시퀀스 조회, 배치가 아닌 INSERT, SELECT)
+ * batch: executeBatch 한번 (쓰기 지연 SQL 저장소에 모인 INSERT/UPDATE를 한번에 전송)
+ * 두 값을 더한 것이 실제 데이터베이스 왕복(round trip) 횟수이다.
+ *
+ * 세션 이벤트 리스너라서 clear()를 해도 계속 집계되고, 세션이 닫히면 더 이상 집계되지 않는다.
+ */
+public class JdbcRoundTripCounter extends BaseSessionEventListener {
+    private long preparedStatements;
+    private long statements;
+    private long batches;
+
+    public static JdbcRoundTripCounter attach(EntityManager entityManager) {
+        JdbcRoundTripCounter counter = new JdbcRoundTripCounter();
+        entityManager.unwrap(Session.class).addEventListeners(counter);
+        return counter;
+    }
+
+    @Override
+    public void jdbcPrepareStatementStart() {
+        preparedStatements++;
+    }
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        statements++;
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        batches++;
+    }
+
+    public long getPreparedStatements() {
+        return preparedStatements;
+    }
+
+    public long getStatements() {
+        return statements;
+    }
+
+    public long getBatches() {
+        return batches;
+    }
+
+    public long getRoundTrips() {
+        return statements + batches;
+    }
+
+    public void reset() {
+        preparedStatements = 0;
+        statements = 0;
+        batches = 0;
+    }
+}
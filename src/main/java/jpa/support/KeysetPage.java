@@ -0,0 +1,30 @@
+package jpa.support;
+
+import java.util.List;
+
+/**
+ * 키셋 페이징 결과
+ *
+ * nextToken이 null이면 마지막 페이지다.
+ */
+public class KeysetPage<T> {
+    private final List<T> content;
+    private final String nextToken;
+
+    public KeysetPage(List<T> content, String nextToken) {
+        this.content = content;
+        this.nextToken = nextToken;
+    }
+
+    public List<T> getContent() {
+        return content;
+    }
+
+    public String getNextToken() {
+        return nextToken;
+    }
+
+    public boolean hasNext() {
+        return nextToken != null;
+    }
+}
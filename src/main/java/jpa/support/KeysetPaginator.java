@@ -0,0 +1,172 @@
+package jpa.support;
+
+import org.hibernate.Hibernate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceUnitUtil;
+import javax.persistence.TypedQuery;
+import javax.persistence.metamodel.EntityType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * 키셋(seek) 페이징
+ *
+ * setFirstResult(offset)는 offset 만큼 읽고 버리기 때문에 뒤 페이지로 갈수록 느려진다. (O(offset))
+ * 키셋 페이징은 마지막으로 읽은 (정렬키, 식별자) 다음부터 인덱스를 타고 읽기 때문에 몇 번째 페이지든 비용이 같다.
+ *
+ * 정렬은 항상 (정렬키, 식별자) 오름차순이고 정렬키가 같으면 식별자로 순서를 보장한다.
+ * 다음 페이지 위치는 불투명한 토큰으로 돌려준다. 클라이언트는 토큰을 그대로 다시 넘기기만 한다.
+ *
+ * 주의
+ * 1. 정렬키는 null이면 안된다. null인 행은 비교 조건에서 빠지므로 nullable = false가 아닌 정렬키는 생성자에서 거부한다.
+ * 2. (정렬키, 식별자) 순서의 인덱스가 있어야 효과가 있다.
+ * 3. 임의의 페이지로 바로 이동할 수는 없다. (다음 페이지만 가능)
+ */
+public class KeysetPaginator<T> {
+    private final EntityManager entityManager;
+    private final Class<T> entityClass;
+    private final String sortAttribute;
+    private final String idAttribute;
+    private final String firstPageQuery;
+    private final String nextPageQuery;
+
+    public KeysetPaginator(EntityManager entityManager, Class<T> entityClass, String sortAttribute) {
+        this(entityManager, entityClass, sortAttribute, null);
+    }
+
+    // condition: 별칭 e를 사용하는 고정 조건 (ex. "e.name like '%kim%'")
+    public KeysetPaginator(EntityManager entityManager, Class<T> entityClass, String sortAttribute, String condition) {
+        this.entityManager = entityManager;
+        this.entityClass = entityClass;
+        this.sortAttribute = sortAttribute;
+
+        EntityType<T> entityType = entityManager.getMetamodel().entity(entityClass);
+        this.idAttribute = entityType.getId(entityType.getIdType().getJavaType()).getName();
+        if (!sortAttribute.equals(idAttribute) && entityType.getSingularAttribute(sortAttribute).isOptional()) {
+            throw new IllegalArgumentException("키셋 페이징의 정렬키는 null이면 안됩니다. (nullable = false): "
+                    + entityClass.getSimpleName() + "." + sortAttribute);
+        }
+
+        // 같은 엔티티 이름이 여러 패키지에 있을 수 있어서(jpa.Item, jpa.shop.domain.Item) 클래스 이름으로 조회한다.
+        String from = "select e from " + entityClass.getName() + " e";
+        String where = condition == null ? " where " : " where (" + condition + ") and ";
+        String orderBy = sortAttribute.equals(idAttribute)
+                ? " order by e." + idAttribute
+                : " order by e." + sortAttribute + ", e." + idAttribute;
+        this.firstPageQuery = condition == null
+                ? from + orderBy
+                : from + " where " + condition + orderBy;
+        // (k > :k) or (k = :k and id > :id)를 인덱스 범위 조건(k >= :k)이 앞에 오도록 바꿔 쓴 것
+        this.nextPageQuery = sortAttribute.equals(idAttribute)
+                ? from + where + "e." + idAttribute + " > :id" + orderBy
+                : from + where + "e." + sortAttribute + " >= :sortKey"
+                + " and (e." + sortAttribute + " > :sortKey or e." + idAttribute + " > :id)" + orderBy;
+    }
+
+    public KeysetPage<T> first(int size) {
+        return fetch(entityManager.createQuery(firstPageQuery, entityClass), size);
+    }
+
+    public KeysetPage<T> next(String token, int size) {
+        if (token == null) {
+            return first(size);
+        }
+
+        Object[] cursor = decode(token);
+        TypedQuery<T> query = entityManager.createQuery(nextPageQuery, entityClass)
+                .setParameter("id", cursor[1]);
+        if (!sortAttribute.equals(idAttribute)) {
+            query.setParameter("sortKey", cursor[0]);
+        }
+        return fetch(query, size);
+    }
+
+    // 주어진 엔티티 바로 다음부터 읽는 토큰
+    public String tokenAfter(T entity) {
+        PersistenceUnitUtil util = entityManager.getEntityManagerFactory().getPersistenceUnitUtil();
+        Object id = util.getIdentifier(entity);
+        Object sortKey = sortAttribute.equals(idAttribute) ? id : readSortKey(entity);
+        return encode(sortKey, id);
+    }
+
+    private KeysetPage<T> fetch(TypedQuery<T> query, int size) {
+        // 한 건을 더 읽어서 다음 페이지가 있는지 확인한다.
+        List<T> rows = query.setMaxResults(size + 1).getResultList();
+        if (rows.size() <= size) {
+            return new KeysetPage<>(rows, null);
+        }
+
+        List<T> content = rows.subList(0, size);
+        return new KeysetPage<>(content, tokenAfter(content.get(size - 1)));
+    }
+
+    private Object readSortKey(T entity) {
+        Member member = entityManager.getMetamodel().entity(entityClass).getAttribute(sortAttribute).getJavaMember();
+        try {
+            Field field = (Field) member;
+            field.setAccessible(true);
+            // 영속성 컨텍스트에 프록시로 있던 엔티티는 필드가 비어있으므로 원본에서 읽는다.
+            return field.get(Hibernate.unproxy(entity));
+        } catch (ClassCastException | IllegalAccessException e) {
+            throw new IllegalStateException("정렬키를 읽을 수 없습니다: " + entityClass.getSimpleName() + "." + sortAttribute, e);
+        }
+    }
+
+    private static String encode(Object sortKey, Object id) {
+        String value = typeOf(sortKey) + ":" + sortKey + "|" + typeOf(id) + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Object[] decode(String token) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = value.lastIndexOf('|');
+            return new Object[]{parse(value.substring(0, separator)), parse(value.substring(separator + 1))};
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("잘못된 페이지 토큰입니다: " + token, e);
+        }
+    }
+
+    private static char typeOf(Object value) {
+        if (value instanceof Long) {
+            return 'L';
+        }
+        if (value instanceof Integer) {
+            return 'I';
+        }
+        if (value instanceof String) {
+            return 'S';
+        }
+        if (value instanceof LocalDateTime) {
+            return 'T';
+        }
+        if (value instanceof LocalDate) {
+            return 'D';
+        }
+        throw new IllegalArgumentException("키셋 페이징을 지원하지 않는 정렬키 타입입니다: " + value);
+    }
+
+    private static Object parse(String typed) {
+        String value = typed.substring(2);
+        switch (typed.charAt(0)) {
+            case 'L':
+                return Long.valueOf(value);
+            case 'I':
+                return Integer.valueOf(value);
+            case 'S':
+                return value;
+            case 'T':
+                return LocalDateTime.parse(value);
+            case 'D':
+                return LocalDate.parse(value);
+            default:
+                throw new IllegalArgumentException(typed);
+        }
+    }
+}
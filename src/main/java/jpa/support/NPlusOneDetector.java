@@ -0,0 +1,175 @@
+package jpa.support;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * N+1 감지
+ *
+ * 페치 조인을 빠뜨리면 목록 하나를 그리는 동안 지연 로딩이 연관관계마다 SELECT를 보낸다.
+ * (Order.member, OrderItem.item, Category.parent/child, Developer.team)
+ * 식별자 값만 다르고 모양이 같은 SELECT가 여러 번 나가면 N+1이다.
+ *
+ * hibernate.session_factory.statement_inspector로 등록하면 하이버네이트가 SQL을 준비할 때마다 inspect를 호출한다.
+ * start()를 호출한 스레드에서 close()할 때까지의 SQL만 기록한다. 기록 중이 아니면 ThreadLocal 조회 한 번만 한다.
+ *
+ * 모양(shape): 주석은 지우고, 문자열/숫자 리터럴은 ?, 배치 조회의 in (?, ?, ...)은 in (...)로 바꾼 SQL
+ * 배치 조회(@BatchSize, default_batch_fetch_size)로 N/100+1번이 된 것도 같은 모양으로 센다.
+ */
+public class NPlusOneDetector implements StatementInspector {
+    private static final ThreadLocal<Recording> CURRENT = new ThreadLocal<>();
+    private static final Pattern COMMENT = Pattern.compile("/\\*.*?\\*/", Pattern.DOTALL);
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern IN_LIST = Pattern.compile("\\bin\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    @Override
+    public String inspect(String sql) {
+        Recording recording = CURRENT.get();
+        if (recording != null) {
+            recording.statements.add(sql);
+        }
+        return sql;
+    }
+
+    // 현재 스레드에서 기록을 시작한다. 이미 기록 중이면 close() 할 때 이전 기록으로 돌아간다.
+    public static Recording start() {
+        Recording recording = new Recording(CURRENT.get());
+        CURRENT.set(recording);
+        return recording;
+    }
+
+    static String shapeOf(String sql) {
+        String shape = COMMENT.matcher(sql).replaceAll("");
+        shape = STRING_LITERAL.matcher(shape).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        shape = IN_LIST.matcher(shape).replaceAll("in (...)");
+        return WHITESPACE.matcher(shape).replaceAll(" ").trim();
+    }
+
+    // use_sql_comments가 켜져 있으면 SQL 앞에 /* 주석 */이 붙는다.
+    private static boolean isSelect(String sql) {
+        String statement = COMMENT.matcher(sql).replaceFirst("").trim();
+        return statement.regionMatches(true, 0, "select", 0, 6) || statement.regionMatches(true, 0, "with", 0, 4);
+    }
+
+    /**
+     * 작업 단위 하나에서 실행한 SQL
+     */
+    public static class Recording implements AutoCloseable {
+        private final Recording previous;
+        private final List<String> statements = new ArrayList<>();
+
+        private Recording(Recording previous) {
+            this.previous = previous;
+        }
+
+        public List<String> getStatements() {
+            return Collections.unmodifiableList(statements);
+        }
+
+        public int getSelectCount() {
+            int selects = 0;
+            for (String sql : statements) {
+                if (isSelect(sql)) {
+                    selects++;
+                }
+            }
+            return selects;
+        }
+
+        // 같은 모양으로 threshold 번 넘게 실행한 SELECT (많은 순서)
+        public List<Violation> getViolations(int threshold) {
+            Map<String, Integer> counts = new LinkedHashMap<>();
+            for (String sql : statements) {
+                if (isSelect(sql)) {
+                    counts.merge(shapeOf(sql), 1, Integer::sum);
+                }
+            }
+            List<Violation> violations = new ArrayList<>();
+            counts.forEach((shape, count) -> {
+                if (count > threshold) {
+                    violations.add(new Violation(shape, count));
+                }
+            });
+            violations.sort((a, b) -> Integer.compare(b.getCount(), a.getCount()));
+            return violations;
+        }
+
+        // 같은 모양의 SELECT가 threshold 번을 넘으면 NPlusOneException
+        public void checkNPlusOne(int threshold) {
+            List<Violation> violations = getViolations(threshold);
+            if (!violations.isEmpty()) {
+                throw new NPlusOneException(threshold, violations);
+            }
+        }
+
+        public void assertSelectCount(int expected) {
+            int actual = getSelectCount();
+            if (actual != expected) {
+                StringBuilder message = new StringBuilder()
+                        .append("SELECT 수가 다릅니다. expected:<").append(expected).append("> but was:<").append(actual).append(">");
+                for (Violation violation : getViolations(0)) {
+                    message.append(System.lineSeparator()).append("  ").append(violation);
+                }
+                throw new AssertionError(message.toString());
+            }
+        }
+
+        public void reset() {
+            statements.clear();
+        }
+
+        @Override
+        public void close() {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    public static class Violation {
+        private final String shape;
+        private final int count;
+
+        Violation(String shape, int count) {
+            this.shape = shape;
+            this.count = count;
+        }
+
+        public String getShape() {
+            return shape;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        @Override
+        public String toString() {
+            return count + "x " + shape;
+        }
+    }
+
+    public static class NPlusOneException extends RuntimeException {
+        private final List<Violation> violations;
+
+        NPlusOneException(int threshold, List<Violation> violations) {
+            super("같은 모양의 SELECT가 " + threshold + "번을 넘었습니다. (N+1) " + violations);
+            this.violations = violations;
+        }
+
+        public List<Violation> getViolations() {
+            return violations;
+        }
+    }
+}
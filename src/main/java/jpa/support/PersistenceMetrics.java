@@ -0,0 +1,310 @@
+package jpa.support;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.EntityStatistics;
+import org.hibernate.stat.QueryStatistics;
+import org.jboss.logging.Logger;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 영속성 통계 (하이버네이트 통계 + InstrumentedStatistics)
+ *
+ * 1. 엔티티별 조회(load, fetch), 저장, 수정, 삭제 수
+ * 2. JPQL별 실행 횟수, 평균/최대 실행 시간, 읽은 행 수 (총 실행 시간이 긴 순서)
+ * 3. flush, 엔티티별 변경 감지 시간
+ * 4. 2차 캐시 영역별 적중률, 쿼리 캐시 적중률
+ * 5. JPQL 번역 횟수, 쿼리 계획 캐시 적중률 (JPQL 실행 중 새로 번역하지 않은 비율, InstrumentedQueryTranslatorFactory)
+ *
+ * 사용하려면 persistence.xml에 hibernate.generate_statistics=true, hibernate.stats.factory=jpa.support.InstrumentedStatistics$Factory
+ * JMX로 보거나(PersistenceMetricsIntegrator) PersistenceMetrics.of(emf)로 직접 읽는다. log()는 jpa.metrics 로거에 INFO로 남긴다.
+ */
+public class PersistenceMetrics implements PersistenceMetricsMXBean {
+    private static final Logger LOG = Logger.getLogger("jpa.metrics");
+
+    private final SessionFactoryImplementor sessionFactory;
+
+    PersistenceMetrics(SessionFactoryImplementor sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    public static PersistenceMetrics of(EntityManagerFactory entityManagerFactory) {
+        SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        if (!(sessionFactory.getStatistics() instanceof InstrumentedStatistics)) {
+            throw new IllegalStateException("hibernate.stats.factory가 InstrumentedStatistics$Factory가 아닙니다.");
+        }
+        return new PersistenceMetrics(sessionFactory);
+    }
+
+    @Override
+    public List<EntityMetrics> getEntities() {
+        List<EntityMetrics> entities = new ArrayList<>();
+        for (String name : statistics().getEntityNames()) {
+            EntityStatistics entity = statistics().getEntityStatistics(name);
+            entities.add(new EntityMetrics(name, entity.getLoadCount(), entity.getFetchCount(),
+                    entity.getInsertCount(), entity.getUpdateCount(), entity.getDeleteCount()));
+        }
+        entities.sort(Comparator.comparing(EntityMetrics::getName));
+        return entities;
+    }
+
+    @Override
+    public List<QueryMetrics> getQueries() {
+        List<QueryMetrics> queries = new ArrayList<>();
+        for (String query : statistics().getQueries()) {
+            QueryStatistics statistics = statistics().getQueryStatistics(query);
+            queries.add(new QueryMetrics(query, statistics.getExecutionCount(), statistics.getExecutionAvgTime(),
+                    statistics.getExecutionMaxTime(), statistics.getExecutionRowCount()));
+        }
+        queries.sort(Comparator.comparingDouble(QueryMetrics::getTotalMillis).reversed());
+        return queries;
+    }
+
+    @Override
+    public long getFlushCount() {
+        return statistics().getTimedFlushCount();
+    }
+
+    @Override
+    public double getFlushMeanMicros() {
+        return mean(statistics().getFlushNanos(), statistics().getTimedFlushCount());
+    }
+
+    @Override
+    public double getFlushMaxMicros() {
+        return statistics().getFlushMaxNanos() / 1_000.0;
+    }
+
+    @Override
+    public long getDirtyCheckCount() {
+        return statistics().getDirtyCheckCount();
+    }
+
+    @Override
+    public double getDirtyCheckMeanMicros() {
+        return mean(statistics().getDirtyCheckNanos(), statistics().getDirtyCheckCount());
+    }
+
+    @Override
+    public double getDirtyCheckMaxMicros() {
+        return statistics().getDirtyCheckMaxNanos() / 1_000.0;
+    }
+
+    @Override
+    public List<CacheRegionMetrics> getCacheRegions() {
+        List<CacheRegionMetrics> regions = new ArrayList<>();
+        for (String name : statistics().getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics region = statistics().getDomainDataRegionStatistics(name);
+            regions.add(new CacheRegionMetrics(name, region.getHitCount(), region.getMissCount(), region.getPutCount()));
+        }
+        regions.sort(Comparator.comparing(CacheRegionMetrics::getName));
+        return regions;
+    }
+
+    @Override
+    public double getSecondLevelCacheHitRatio() {
+        return ratio(statistics().getSecondLevelCacheHitCount(), statistics().getSecondLevelCacheMissCount());
+    }
+
+    @Override
+    public double getQueryCacheHitRatio() {
+        return ratio(statistics().getQueryCacheHitCount(), statistics().getQueryCacheMissCount());
+    }
+
+    @Override
+    public long getQueryPlanCompileCount() {
+        return statistics().getQueryPlanCompileCount();
+    }
+
+    @Override
+    public long getJpqlExecutionCount() {
+        return statistics().getJpqlExecutionCount();
+    }
+
+    // 리터럴을 넣어 만든 JPQL이 많으면 낮아진다.
+    @Override
+    public double getQueryPlanCacheHitRatio() {
+        long misses = statistics().getQueryPlanMissCount();
+        return ratio(getJpqlExecutionCount() - misses, misses);
+    }
+
+    @Override
+    public long getSlowQueryCount() {
+        return statistics().getSlowQueryCount();
+    }
+
+    @Override
+    public void clear() {
+        statistics().clear();
+    }
+
+    public void log() {
+        for (EntityMetrics entity : getEntities()) {
+            LOG.info(entity);
+        }
+        for (QueryMetrics query : getQueries()) {
+            LOG.info(query);
+        }
+        LOG.infof("flush count=%d mean=%.1fus max=%.1fus, dirtyCheck count=%d mean=%.2fus max=%.1fus",
+                getFlushCount(), getFlushMeanMicros(), getFlushMaxMicros(),
+                getDirtyCheckCount(), getDirtyCheckMeanMicros(), getDirtyCheckMaxMicros());
+        for (CacheRegionMetrics region : getCacheRegions()) {
+            LOG.info(region);
+        }
+        LOG.infof("secondLevelCacheHitRatio=%.2f queryCacheHitRatio=%.2f queryPlanCacheHitRatio=%.2f (jpql=%d, compiles=%d) slowQueries=%d",
+                getSecondLevelCacheHitRatio(), getQueryCacheHitRatio(), getQueryPlanCacheHitRatio(), getJpqlExecutionCount(),
+                getQueryPlanCompileCount(), getSlowQueryCount());
+    }
+
+    // 팩토리를 만들 때 정해지므로 매번 꺼내도 같은 객체다.
+    private InstrumentedStatistics statistics() {
+        return (InstrumentedStatistics) sessionFactory.getStatistics();
+    }
+
+    private static double mean(long nanos, long count) {
+        return count == 0 ? 0 : nanos / 1_000.0 / count;
+    }
+
+    private static double ratio(long hits, long misses) {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    public static class EntityMetrics {
+        private final String name;
+        private final long loads;
+        private final long fetches;
+        private final long inserts;
+        private final long updates;
+        private final long deletes;
+
+        EntityMetrics(String name, long loads, long fetches, long inserts, long updates, long deletes) {
+            this.name = name;
+            this.loads = loads;
+            this.fetches = fetches;
+            this.inserts = inserts;
+            this.updates = updates;
+            this.deletes = deletes;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getLoads() {
+            return loads;
+        }
+
+        // 지연 로딩 등으로 따로 조회한 수 (N+1을 의심할 수 있다.)
+        public long getFetches() {
+            return fetches;
+        }
+
+        public long getInserts() {
+            return inserts;
+        }
+
+        public long getUpdates() {
+            return updates;
+        }
+
+        public long getDeletes() {
+            return deletes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s loads=%d fetches=%d inserts=%d updates=%d deletes=%d",
+                    name, loads, fetches, inserts, updates, deletes);
+        }
+    }
+
+    public static class QueryMetrics {
+        private final String query;
+        private final long executions;
+        private final long meanMillis;
+        private final long maxMillis;
+        private final long rows;
+
+        QueryMetrics(String query, long executions, long meanMillis, long maxMillis, long rows) {
+            this.query = query;
+            this.executions = executions;
+            this.meanMillis = meanMillis;
+            this.maxMillis = maxMillis;
+            this.rows = rows;
+        }
+
+        public String getQuery() {
+            return query;
+        }
+
+        public long getExecutions() {
+            return executions;
+        }
+
+        // 하이버네이트가 ms 단위로 재므로 1ms 미만인 쿼리는 0이다.
+        public long getMeanMillis() {
+            return meanMillis;
+        }
+
+        public long getMaxMillis() {
+            return maxMillis;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public double getTotalMillis() {
+            return (double) meanMillis * executions;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("executions=%d mean=%dms max=%dms rows=%d %s", executions, meanMillis, maxMillis, rows, query);
+        }
+    }
+
+    public static class CacheRegionMetrics {
+        private final String name;
+        private final long hits;
+        private final long misses;
+        private final long puts;
+
+        CacheRegionMetrics(String name, long hits, long misses, long puts) {
+            this.name = name;
+            this.hits = hits;
+            this.misses = misses;
+            this.puts = puts;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getPuts() {
+            return puts;
+        }
+
+        public double getHitRatio() {
+            return ratio(hits, misses);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s hits=%d misses=%d puts=%d hitRatio=%.2f", name, hits, misses, puts, getHitRatio());
+        }
+    }
+}
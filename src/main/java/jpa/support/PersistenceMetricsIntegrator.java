@@ -0,0 +1,147 @@
+package jpa.support;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.AutoFlushEvent;
+import org.hibernate.event.spi.AutoFlushEventListener;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.FlushEntityEvent;
+import org.hibernate.event.spi.FlushEntityEventListener;
+import org.hibernate.event.spi.FlushEvent;
+import org.hibernate.event.spi.FlushEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * InstrumentedStatistics를 사용하는 EntityManagerFactory에 다음을 붙인다. (META-INF/services로 등록)
+ * 1. flush, 엔티티별 변경 감지 시간: 하이버네이트 기본 리스너의 앞(시작)과 뒤(끝)에 리스너를 하나씩 둔다.
+ * 2. JMX: jpa:type=PersistenceMetrics,name=(풀 이름)으로 PersistenceMetrics를 등록하고 팩토리를 닫을 때 해제한다.
+ *
+ * 기본 리스너가 예외를 던지면 끝 리스너가 불리지 않으므로 실패한 flush는 기록되지 않는다.
+ */
+public class PersistenceMetricsIntegrator implements Integrator {
+    private static final ThreadLocal<long[]> STARTED = ThreadLocal.withInitial(() -> new long[2]);
+    private static final int FLUSH = 0;
+    private static final int FLUSH_ENTITY = 1;
+
+    // 닫힌 팩토리에서는 설정을 읽을 수 없으므로 등록한 이름을 기억해둔다.
+    private final Map<SessionFactoryImplementor, ObjectName> registered = new ConcurrentHashMap<>();
+
+    @Override
+    public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        if (!(sessionFactory.getStatistics() instanceof InstrumentedStatistics)) {
+            return;
+        }
+
+        EventListenerRegistry registry = serviceRegistry.getService(EventListenerRegistry.class);
+        registry.prependListeners(EventType.FLUSH, new FlushStart());
+        registry.appendListeners(EventType.FLUSH, new FlushEnd());
+        registry.prependListeners(EventType.AUTO_FLUSH, new AutoFlushStart());
+        registry.appendListeners(EventType.AUTO_FLUSH, new AutoFlushEnd());
+        registry.prependListeners(EventType.FLUSH_ENTITY, new FlushEntityStart());
+        registry.appendListeners(EventType.FLUSH_ENTITY, new FlushEntityEnd());
+
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = objectName(sessionFactory);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(new PersistenceMetrics(sessionFactory), name);
+            registered.put(sessionFactory, name);
+        } catch (JMException e) {
+            throw new IllegalStateException("영속성 통계 MBean을 등록할 수 없습니다.", e);
+        }
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        ObjectName name = registered.remove(sessionFactory);
+        if (name == null) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("영속성 통계 MBean을 해제할 수 없습니다.", e);
+        }
+    }
+
+    // 커넥션 풀(ConnectionPoolStatistics)과 같은 이름을 사용한다.
+    private static ObjectName objectName(SessionFactoryImplementor sessionFactory) throws JMException {
+        Object name = sessionFactory.getProperties().get("hibernate.hikari.poolName");
+        if (name == null) {
+            name = sessionFactory.getProperties().get("hibernate.ejb.persistenceUnitName");
+        }
+        return new ObjectName("jpa:type=PersistenceMetrics,name=" + ObjectName.quote(String.valueOf(name)));
+    }
+
+    private static void start(int index) {
+        STARTED.get()[index] = System.nanoTime();
+    }
+
+    private static long elapsed(int index) {
+        return System.nanoTime() - STARTED.get()[index];
+    }
+
+    private static InstrumentedStatistics statistics(FlushEvent event) {
+        return (InstrumentedStatistics) event.getSession().getFactory().getStatistics();
+    }
+
+    private static class FlushStart implements FlushEventListener {
+        @Override
+        public void onFlush(FlushEvent event) {
+            start(FLUSH);
+        }
+    }
+
+    private static class FlushEnd implements FlushEventListener {
+        @Override
+        public void onFlush(FlushEvent event) {
+            statistics(event).flushed(elapsed(FLUSH));
+        }
+    }
+
+    private static class AutoFlushStart implements AutoFlushEventListener {
+        @Override
+        public void onAutoFlush(AutoFlushEvent event) {
+            start(FLUSH);
+        }
+    }
+
+    // 쿼리 실행 전 자동 flush는 SQL을 보내지 않더라도 영속성 컨텍스트 전체를 변경 감지하므로 엔티티를 확인했으면 센다.
+    // (isFlushRequired는 SQL을 보낸 다음에 다시 계산해서 항상 false다.)
+    private static class AutoFlushEnd implements AutoFlushEventListener {
+        @Override
+        public void onAutoFlush(AutoFlushEvent event) {
+            if (event.getNumberOfEntitiesProcessed() > 0) {
+                statistics(event).flushed(elapsed(FLUSH));
+            }
+        }
+    }
+
+    private static class FlushEntityStart implements FlushEntityEventListener {
+        @Override
+        public void onFlushEntity(FlushEntityEvent event) {
+            start(FLUSH_ENTITY);
+        }
+    }
+
+    private static class FlushEntityEnd implements FlushEntityEventListener {
+        @Override
+        public void onFlushEntity(FlushEntityEvent event) {
+            ((InstrumentedStatistics) event.getSession().getFactory().getStatistics()).dirtyChecked(elapsed(FLUSH_ENTITY));
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package jpa.support;
+
+import java.util.List;
+
+/**
+ * JMX로 노출하는 영속성 통계 (jpa:type=PersistenceMetrics,name=풀 이름)
+ *
+ * 시간 단위는 이름에 붙인다. (Millis, Micros)
+ */
+public interface PersistenceMetricsMXBean {
+    List<PersistenceMetrics.EntityMetrics> getEntities();
+
+    List<PersistenceMetrics.QueryMetrics> getQueries();
+
+    long getFlushCount();
+
+    double getFlushMeanMicros();
+
+    double getFlushMaxMicros();
+
+    long getDirtyCheckCount();
+
+    double getDirtyCheckMeanMicros();
+
+    double getDirtyCheckMaxMicros();
+
+    List<PersistenceMetrics.CacheRegionMetrics> getCacheRegions();
+
+    double getSecondLevelCacheHitRatio();
+
+    double getQueryCacheHitRatio();
+
+    long getQueryPlanCompileCount();
+
+    long getJpqlExecutionCount();
+
+    double getQueryPlanCacheHitRatio();
+
+    long getSlowQueryCount();
+
+    void clear();
+}
@@ -0,0 +1,208 @@
+package jpa.support;
+
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.NamedQuery;
+import javax.persistence.metamodel.EntityType;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 실행 계획 점검 (H2)
+ *
+ * 등록한 JPQL을 하이버네이트로 SQL로 바꾸고 H2의 EXPLAIN으로 실행 계획을 본다. 네이티브 SQL(파라미터는 ?)도 등록할 수 있다.
+ * 행이 maxScannedRows보다 많은 테이블을 인덱스 없이 전부 읽으면(tableScan) 위반이다.
+ * 인덱스를 빠뜨렸거나 인덱스를 쓸 수 없는 조건(함수, 앞이 %인 like)을 찾는다.
+ *
+ * 파라미터는 null로 바인딩한다. 실행하지 않고 계획만 보므로 값과 상관없이 같은 계획이 나온다.
+ * 행 수가 적으면 H2가 인덱스 대신 전체를 읽는 계획을 고를 수 있으므로 실제와 비슷한 양의 데이터를 넣고 ANALYZE 한 뒤 점검한다.
+ * 주문 전체 내보내기(OrderExporter)처럼 원래 전체를 읽는 쿼리는 등록하지 않거나 ignore로 제외한다.
+ */
+public class QueryPlanChecker {
+    // /* PUBLIC.ORDERS.tableScan */
+    private static final Pattern TABLE_SCAN = Pattern.compile("/\\*\\s*(\\w+)\\.(\\w+)\\.tableScan\\s*\\*/");
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final long maxScannedRows;
+    private final Map<String, String> queries = new LinkedHashMap<>();
+    private final Map<String, String> nativeQueries = new LinkedHashMap<>();
+    private final Set<String> ignored = new HashSet<>();
+
+    public QueryPlanChecker(EntityManagerFactory entityManagerFactory, long maxScannedRows) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.maxScannedRows = maxScannedRows;
+    }
+
+    public QueryPlanChecker register(String name, String jpql) {
+        queries.put(name, jpql);
+        return this;
+    }
+
+    public QueryPlanChecker registerNative(String name, String sql) {
+        nativeQueries.put(name, sql);
+        return this;
+    }
+
+    // 엔티티에 붙은 @NamedQuery를 모두 등록한다.
+    public QueryPlanChecker registerNamedQueries() {
+        for (EntityType<?> entity : entityManagerFactory.getMetamodel().getEntities()) {
+            for (NamedQuery namedQuery : entity.getJavaType().getAnnotationsByType(NamedQuery.class)) {
+                register(namedQuery.name(), namedQuery.query());
+            }
+        }
+        return this;
+    }
+
+    // 원래 전체를 읽는 쿼리(ex. Order.findAll)는 이름으로 제외한다.
+    public QueryPlanChecker ignore(String name) {
+        ignored.add(name);
+        return this;
+    }
+
+    public Map<String, String> getQueries() {
+        return Collections.unmodifiableMap(queries);
+    }
+
+    public List<Violation> check() {
+        SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            return entityManager.unwrap(Session.class).doReturningWork(connection -> {
+                Map<String, List<String>> sqls = new LinkedHashMap<>();
+                for (Map.Entry<String, String> query : queries.entrySet()) {
+                    sqls.put(query.getKey(), translate(sessionFactory, query.getValue()));
+                }
+                for (Map.Entry<String, String> query : nativeQueries.entrySet()) {
+                    sqls.put(query.getKey(), Collections.singletonList(query.getValue()));
+                }
+
+                List<Violation> violations = new ArrayList<>();
+                Map<String, Long> rows = new HashMap<>();
+                for (Map.Entry<String, List<String>> query : sqls.entrySet()) {
+                    if (ignored.contains(query.getKey())) {
+                        continue;
+                    }
+                    for (String sql : query.getValue()) {
+                        String plan = explain(connection, sql);
+                        Matcher matcher = TABLE_SCAN.matcher(plan);
+                        while (matcher.find()) {
+                            String table = matcher.group(1) + "." + matcher.group(2);
+                            long count = rows.computeIfAbsent(table, key -> count(connection, key));
+                            if (count > maxScannedRows) {
+                                violations.add(new Violation(query.getKey(), table, count, plan));
+                            }
+                        }
+                    }
+                }
+                return violations;
+            });
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    public void assertNoFullScans() {
+        List<Violation> violations = check();
+        if (!violations.isEmpty()) {
+            StringBuilder message = new StringBuilder()
+                    .append(maxScannedRows).append("행이 넘는 테이블을 전부 읽는 쿼리가 있습니다.");
+            for (Violation violation : violations) {
+                message.append(System.lineSeparator()).append("  ").append(violation);
+            }
+            throw new AssertionError(message.toString());
+        }
+    }
+
+    /**
+     * JPQL을 실행할 때와 같은 SQL로 바꾼다. 하이버네이트 5.3에는 번역한 SQL을 돌려주는 공개 API가 없어서
+     * deprecated된 쿼리 계획 캐시를 사용한다. (6.0의 QueryEngine으로 대체된다.)
+     * Query.unwrap으로 얻는 QueryImpl은 SQL을 보여주지 않고, 번역기를 직접 만들면 캐시한 계획과 다른 설정으로 번역할 수 있다.
+     */
+    @SuppressWarnings("deprecation")
+    private static List<String> translate(SessionFactoryImplementor sessionFactory, String jpql) {
+        return Arrays.asList(sessionFactory.getQueryPlanCache()
+                .getHQLQueryPlan(jpql, false, Collections.emptyMap())
+                .getSqlStrings());
+    }
+
+    private static String explain(Connection connection, String sql) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("explain " + sql)) {
+            int parameters = statement.getParameterMetaData().getParameterCount();
+            for (int i = 1; i <= parameters; i++) {
+                statement.setNull(i, Types.NULL);
+            }
+            StringBuilder plan = new StringBuilder();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    plan.append(resultSet.getString(1));
+                }
+            }
+            return plan.toString();
+        }
+    }
+
+    private static long count(Connection connection, String table) {
+        try (PreparedStatement statement = connection.prepareStatement("select count(*) from " + table);
+             ResultSet resultSet = statement.executeQuery()) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        } catch (SQLException e) {
+            throw new IllegalStateException(table + " 행 수를 셀 수 없습니다.", e);
+        }
+    }
+
+    /**
+     * 큰 테이블을 전부 읽는 쿼리
+     */
+    public static class Violation {
+        private final String query;
+        private final String table;
+        private final long rows;
+        private final String plan;
+
+        private Violation(String query, String table, long rows, String plan) {
+            this.query = query;
+            this.table = table;
+            this.rows = rows;
+            this.plan = plan;
+        }
+
+        public String getQuery() {
+            return query;
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public String getPlan() {
+            return plan;
+        }
+
+        @Override
+        public String toString() {
+            return query + ": " + table + "(" + rows + "행) tableScan" + System.lineSeparator() + "    " + plan.replaceAll("\\s+", " ");
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package jpa.support;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * 읽기 전용 복제본(replica) 라우팅
+ *
+ * 상품 목록, 주문 내역처럼 읽기가 쓰기보다 훨씬 많으면 읽기를 복제본으로 보내서 원본(primary)의 부하를 줄인다.
+ * readOnly(...) 안에서 얻은 커넥션만 복제본으로 가고 나머지(쓰기, 스키마 생성, 시퀀스)는 모두 원본으로 간다.
+ * 하이버네이트는 트랜잭션이 시작된 다음 첫 SQL에서 커넥션을 얻으므로 작업 단위 전체를 readOnly(...)로 감싸야 한다. (UnitOfWorkExecutor.inReadOnlyTransaction)
+ *
+ * 1. 복제본이 여러 개면 돌아가면서(round robin) 사용한다.
+ * 2. 복제 지연: checkInterval마다 LagProbe로 지연을 확인해서 maxLag를 넘거나 확인에 실패한 복제본은 건너뛴다.
+ * 모든 복제본을 건너뛰면 원본에서 읽는다. (fallback) 방금 쓴 데이터를 바로 읽어야 하는 화면은 처음부터 원본에서 읽는다.
+ * 3. 복제본 커넥션은 SELECT(WITH)가 아닌 SQL을 준비하면 SQLException을 던진다. 실수로 쓴 내용이 복제본에 들어가지 않는다.
+ *
+ * hibernate.connection.datasource로 넘기고 provider_class는 DatasourceConnectionProviderImpl로 바꾼다. (커넥션 풀은 각 DataSource가 가진다.)
+ */
+public class ReplicaRoutingDataSource implements DataSource, Closeable {
+    private static final ThreadLocal<Boolean> READ_ONLY = new ThreadLocal<>();
+
+    private final DataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final LagProbe lagProbe;
+    private final long maxLagMillis;
+    private final long checkIntervalNanos;
+    private final AtomicInteger next = new AtomicInteger();
+    private final LongAdder replicaConnections = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+
+    public ReplicaRoutingDataSource(DataSource primary, List<? extends DataSource> replicas,
+                                    LagProbe lagProbe, Duration maxLag, Duration checkInterval) {
+        this.primary = primary;
+        for (DataSource replica : replicas) {
+            this.replicas.add(new Replica(replica));
+        }
+        this.lagProbe = lagProbe;
+        this.maxLagMillis = maxLag.toMillis();
+        this.checkIntervalNanos = checkInterval.toNanos();
+    }
+
+    // 원본과 복제본마다 HikariCP 풀을 만든다.
+    public static ReplicaRoutingDataSource hikari(String primaryUrl, List<String> replicaUrls, int poolSize,
+                                                  LagProbe lagProbe, Duration maxLag, Duration checkInterval) {
+        List<DataSource> replicas = new ArrayList<>();
+        for (int i = 0; i < replicaUrls.size(); i++) {
+            replicas.add(pool("replica-" + i, replicaUrls.get(i), poolSize));
+        }
+        return new ReplicaRoutingDataSource(pool("primary", primaryUrl, poolSize), replicas, lagProbe, maxLag, checkInterval);
+    }
+
+    // 현재 스레드에서 work가 얻는 커넥션은 복제본으로 간다.
+    public static <R> R readOnly(Supplier<R> work) {
+        Boolean previous = READ_ONLY.get();
+        READ_ONLY.set(Boolean.TRUE);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                READ_ONLY.remove();
+            } else {
+                READ_ONLY.set(previous);
+            }
+        }
+    }
+
+    public static boolean isReadOnly() {
+        return READ_ONLY.get() != null;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!isReadOnly() || replicas.isEmpty()) {
+            return primary.getConnection();
+        }
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (replica.isUsable()) {
+                replicaConnections.increment();
+                return readOnlyConnection(replica.dataSource.getConnection());
+            }
+        }
+        fallbacks.increment();
+        return primary.getConnection();
+    }
+
+    // 하이버네이트는 javax.persistence.jdbc.user가 있으면 이 메서드를 호출한다. 계정은 각 풀이 가지고 있으므로 무시한다.
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return getConnection();
+    }
+
+    // 복제본으로 보낸 커넥션 수
+    public long getReplicaConnections() {
+        return replicaConnections.sum();
+    }
+
+    // 읽기 전용인데 쓸 수 있는 복제본이 없어서 원본으로 보낸 커넥션 수
+    public long getFallbacks() {
+        return fallbacks.sum();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (primary instanceof Closeable) {
+            ((Closeable) primary).close();
+        }
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof Closeable) {
+                ((Closeable) replica.dataSource).close();
+            }
+        }
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return primary.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        primary.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        primary.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return primary.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return primary.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> type) throws SQLException {
+        if (type.isInstance(this)) {
+            return type.cast(this);
+        }
+        throw new SQLException("unwrap할 수 없습니다: " + type);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> type) {
+        return type.isInstance(this);
+    }
+
+    private static HikariDataSource pool(String name, String url, int poolSize) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(name);
+        config.setJdbcUrl(url);
+        config.setUsername("sa");
+        config.setPassword("");
+        config.setMaximumPoolSize(poolSize);
+        config.setAutoCommit(false);
+        return new HikariDataSource(config);
+    }
+
+    static boolean isReadOnlySql(String sql) {
+        String statement = sql.trim();
+        while (statement.startsWith("/*")) {
+            int end = statement.indexOf("*/");
+            statement = end < 0 ? "" : statement.substring(end + 2).trim();
+        }
+        return statement.regionMatches(true, 0, "select", 0, 6) || statement.regionMatches(true, 0, "with", 0, 4);
+    }
+
+    private static Connection readOnlyConnection(Connection connection) throws SQLException {
+        connection.setReadOnly(true);
+        return (Connection) Proxy.newProxyInstance(ReplicaRoutingDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ReadOnlyGuard(connection));
+    }
+
+    /**
+     * 복제본 지연 확인 (ex. PostgreSQL: now() - pg_last_xact_replay_timestamp())
+     */
+    public interface LagProbe {
+        Duration lag(DataSource replica) throws SQLException;
+
+        /**
+         * 하트비트 테이블: 원본에서 주기적으로 (id = 1, beat = 현재 시각)을 갱신하면(writeHeartbeat) 복제되어 넘어간다.
+         * 복제본의 beat가 지금보다 얼마나 뒤처졌는지가 지연이다.
+         */
+        static LagProbe heartbeat(String table) {
+            return replica -> {
+                try (Connection connection = replica.getConnection();
+                     Statement statement = connection.createStatement();
+                     ResultSet resultSet = statement.executeQuery("select beat from " + table + " where id = 1")) {
+                    if (!resultSet.next()) {
+                        throw new SQLException("하트비트가 없습니다: " + table);
+                    }
+                    Timestamp beat = resultSet.getTimestamp(1);
+                    return Duration.ofMillis(Math.max(0, System.currentTimeMillis() - beat.getTime()));
+                }
+            };
+        }
+
+        static void writeHeartbeat(DataSource primary, String table) throws SQLException {
+            try (Connection connection = primary.getConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.executeUpdate("merge into " + table + " (id, beat) key (id) values (1, current_timestamp)");
+                if (!connection.getAutoCommit()) {
+                    connection.commit();
+                }
+            }
+        }
+    }
+
+    private class Replica {
+        private final DataSource dataSource;
+        private volatile long checkedAt;
+        private volatile boolean usable;
+
+        Replica(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        // 마지막 확인 후 checkInterval이 지났으면 다시 확인한다. 동시에 여러 스레드가 확인할 수 있지만 결과는 같다.
+        boolean isUsable() {
+            long now = System.nanoTime();
+            if (checkedAt == 0 || now - checkedAt >= checkIntervalNanos) {
+                boolean result;
+                try {
+                    result = lagProbe.lag(dataSource).toMillis() <= maxLagMillis;
+                } catch (SQLException | RuntimeException e) {
+                    result = false;
+                }
+                usable = result;
+                checkedAt = now;
+            }
+            return usable;
+        }
+    }
+
+    // SELECT가 아닌 SQL을 복제본에 보내지 못하게 막는다.
+    private static class ReadOnlyGuard implements InvocationHandler {
+        private final Object target;
+
+        ReadOnlyGuard(Object target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (args != null && args.length > 0 && args[0] instanceof String
+                    && (name.startsWith("prepare") || name.startsWith("execute") || name.equals("addBatch"))
+                    && !isReadOnlySql((String) args[0])) {
+                throw new SQLException("복제본에는 쓸 수 없습니다: " + args[0]);
+            }
+            try {
+                Object result = method.invoke(target, args);
+                if (result instanceof Statement && name.equals("createStatement")) {
+                    return Proxy.newProxyInstance(ReplicaRoutingDataSource.class.getClassLoader(),
+                            new Class<?>[]{Statement.class}, new ReadOnlyGuard(result));
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
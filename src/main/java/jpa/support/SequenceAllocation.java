@@ -0,0 +1,23 @@
+package jpa.support;
+
+/**
+ * 시퀀스 식별자 할당 크기
+ *
+ * 모든 엔티티는 SEQUENCE 전략 + pooled 옵티마이저를 사용한다.
+ * allocationSize 만큼 시퀀스를 한번에 당겨오기 때문에 persist() 시점에 INSERT가 나가지 않고
+ * 쓰기 지연 SQL 저장소에 모였다가 JDBC 배치(hibernate.jdbc.batch_size)로 한번에 전송된다.
+ * IDENTITY 전략은 persist() 시점에 즉시 INSERT를 실행해야 해서 하이버네이트가 배치 INSERT를 꺼버린다.
+ *
+ * 엔티티마다 @SequenceGenerator의 allocationSize로 지정하고 여기 값을 기본으로 사용한다.
+ * 주의: 데이터베이스 시퀀스의 INCREMENT BY 값과 allocationSize는 반드시 같아야 한다.
+ */
+public final class SequenceAllocation {
+    // 기본 할당 크기, hibernate.jdbc.batch_size와 맞춘다.
+    public static final int DEFAULT = 50;
+
+    // 주문상품처럼 한 트랜잭션에 많이 생기는 엔티티용
+    public static final int LARGE = 100;
+
+    private SequenceAllocation() {
+    }
+}
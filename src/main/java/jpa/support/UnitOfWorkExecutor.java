@@ -0,0 +1,196 @@
+package jpa.support;
+
+import jpa.support.NPlusOneDetector.Recording;
+import jpa.support.NPlusOneDetector.Violation;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.cfg.AvailableSettings;
+import org.jboss.logging.Logger;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 작업 단위(unit of work) 실행기
+ *
+ * 요청 하나 = 스레드 하나 = EntityManager 하나 = 트랜잭션 하나
+ * EntityManager는 스레드에 안전하지 않으므로 작업마다 공유하는 EntityManagerFactory에서 새로 만들고 끝나면 닫는다.
+ *
+ * 1. 가상 스레드(Java 21): 요청마다 가상 스레드를 하나씩 만든다. 다른 서비스 호출처럼 기다리는 동안에는 캐리어(플랫폼) 스레드를 놓아주므로
+ * 수천 개의 요청을 동시에 받아도 플랫폼 스레드는 CPU 수만큼만 있으면 된다.
+ * 2. 플랫폼 스레드: 고정 크기 스레드 풀. 비교용
+ *
+ * DB 커넥션은 여전히 커넥션 풀 크기만큼만 있다. 가상 스레드 수천 개가 한꺼번에 풀에서 커넥션을 기다리면
+ * connectionTimeout(3초)이 지나 실패하므로, 트랜잭션은 세마포어 허가를 얻은 다음에 시작한다.
+ * 허가 수(maxConcurrentUnits)를 주지 않으면 커넥션 풀 크기를 설정에서 찾는다.
+ * hibernate.hikari.maximumPoolSize, hibernate.connection.pool_size(하이버네이트 기본 풀) 순서이고 둘 다 없으면(ex. hibernate.connection.datasource) DEFAULT_MAX_CONCURRENT_UNITS
+ *
+ * 주의: 가상 스레드가 synchronized 블록 안에서 기다리면 캐리어 스레드에 고정(pinning)된다. (H2, 일부 JDBC 드라이버)
+ * VirtualThreadPinning으로 고정된 위치를 찾는다.
+ *
+ * inReadOnlyTransaction: 읽기 전용 작업 단위. ReplicaRoutingDataSource를 사용하면 복제본으로 가고, 아니면 원본에서 읽기 전용으로 실행한다.
+ *
+ * jpa.n_plus_one_threshold가 0 이상이면 작업 단위마다 SQL을 기록해서 모양이 같은 SELECT가 그 횟수를 넘으면 로그로 남긴다. (NPlusOneDetector)
+ */
+public class UnitOfWorkExecutor implements AutoCloseable {
+    public static final String N_PLUS_ONE_THRESHOLD = "jpa.n_plus_one_threshold";
+    // HikariCP maximumPoolSize 기본값
+    public static final int DEFAULT_MAX_CONCURRENT_UNITS = 10;
+    private static final Logger N_PLUS_ONE_LOG = Logger.getLogger("jpa.n_plus_one");
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final int maxConcurrentUnits;
+    private final int nPlusOneThreshold;
+
+    private UnitOfWorkExecutor(EntityManagerFactory entityManagerFactory, ExecutorService executor, int maxConcurrentUnits) {
+        if (maxConcurrentUnits < 1) {
+            throw new IllegalArgumentException("maxConcurrentUnits는 1 이상이어야 합니다: " + maxConcurrentUnits);
+        }
+        this.entityManagerFactory = entityManagerFactory;
+        this.executor = executor;
+        this.permits = new Semaphore(maxConcurrentUnits);
+        this.maxConcurrentUnits = maxConcurrentUnits;
+        Object threshold = entityManagerFactory.getProperties().get(N_PLUS_ONE_THRESHOLD);
+        this.nPlusOneThreshold = threshold == null ? -1 : Integer.parseInt(threshold.toString().trim());
+    }
+
+    // 동시 트랜잭션 수 = 커넥션 풀 크기
+    public static UnitOfWorkExecutor virtualThreads(EntityManagerFactory entityManagerFactory) {
+        return virtualThreads(entityManagerFactory, poolSize(entityManagerFactory.getProperties()));
+    }
+
+    public static UnitOfWorkExecutor virtualThreads(EntityManagerFactory entityManagerFactory, int maxConcurrentUnits) {
+        return new UnitOfWorkExecutor(entityManagerFactory,
+                Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("unit-of-work-", 0).factory()),
+                maxConcurrentUnits);
+    }
+
+    public static UnitOfWorkExecutor platformThreads(EntityManagerFactory entityManagerFactory, int threads) {
+        return platformThreads(entityManagerFactory, threads, Math.min(threads, poolSize(entityManagerFactory.getProperties())));
+    }
+
+    public static UnitOfWorkExecutor platformThreads(EntityManagerFactory entityManagerFactory, int threads, int maxConcurrentUnits) {
+        return new UnitOfWorkExecutor(entityManagerFactory, Executors.newFixedThreadPool(threads), maxConcurrentUnits);
+    }
+
+    // 작업 단위 하나를 새 스레드에서 실행한다.
+    public <R> Future<R> submit(Function<EntityManager, R> work) {
+        return executor.submit(() -> inTransaction(work));
+    }
+
+    // 요청 하나를 새 스레드에서 실행한다. 요청 안에서 inTransaction으로 작업 단위를 실행한다.
+    public <R> Future<R> submitRequest(Callable<R> request) {
+        return executor.submit(request);
+    }
+
+    // 현재 스레드에서 작업 단위를 실행한다. 예외가 나면 롤백하고 그대로 던진다.
+    public <R> R inTransaction(Function<EntityManager, R> work) {
+        return execute(work, false);
+    }
+
+    // 읽기 전용 작업 단위를 새 스레드에서 실행한다.
+    public <R> Future<R> submitReadOnly(Function<EntityManager, R> work) {
+        return executor.submit(() -> inReadOnlyTransaction(work));
+    }
+
+    /**
+     * 현재 스레드에서 읽기 전용 작업 단위를 실행한다.
+     * 커넥션은 복제본에서 얻고(ReplicaRoutingDataSource.readOnly), 조회한 엔티티는 스냅샷을 만들지 않으며(변경 감지 생략) flush하지 않는다.
+     * 영속화하거나 JPQL로 수정하면 복제본 커넥션이 SQLException을 던지고 롤백한다.
+     */
+    public <R> R inReadOnlyTransaction(Function<EntityManager, R> work) {
+        return ReplicaRoutingDataSource.readOnly(() -> execute(work, true));
+    }
+
+    private <R> R execute(Function<EntityManager, R> work, boolean readOnly) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("트랜잭션 허가를 기다리는 중 중단되었습니다.", e);
+        }
+        // 롤백이나 close가 실패해도(끊어진 커넥션) 허가와 기록은 반드시 돌려놓는다. 허가가 새면 동시 작업 수가 계속 줄어든다.
+        Recording recording = null;
+        try {
+            recording = nPlusOneThreshold < 0 ? null : NPlusOneDetector.start();
+            EntityManager entityManager = entityManagerFactory.createEntityManager();
+            try {
+                if (readOnly) {
+                    Session session = entityManager.unwrap(Session.class);
+                    session.setDefaultReadOnly(true);
+                    session.setHibernateFlushMode(FlushMode.MANUAL);
+                }
+                entityManager.getTransaction().begin();
+                R result = work.apply(entityManager);
+                entityManager.getTransaction().commit();
+                return result;
+            } finally {
+                try {
+                    if (entityManager.getTransaction().isActive()) {
+                        entityManager.getTransaction().rollback();
+                    }
+                } finally {
+                    entityManager.close();
+                }
+            }
+        } finally {
+            permits.release();
+            if (recording != null) {
+                recording.close();
+                logNPlusOne(recording);
+            }
+        }
+    }
+
+    public int getMaxConcurrentUnits() {
+        return maxConcurrentUnits;
+    }
+
+    // 허가를 기다리는 스레드 수 (추정치)
+    public int getWaiting() {
+        return permits.getQueueLength();
+    }
+
+    // 이미 받은 작업은 모두 끝날 때까지 기다린다.
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void logNPlusOne(Recording recording) {
+        List<Violation> violations = recording.getViolations(nPlusOneThreshold);
+        if (!violations.isEmpty()) {
+            N_PLUS_ONE_LOG.warnf("N+1: %d selects, %s", recording.getSelectCount(), violations);
+        }
+    }
+
+    static int poolSize(Map<String, Object> properties) {
+        for (String key : Arrays.asList("hibernate.hikari.maximumPoolSize", AvailableSettings.POOL_SIZE)) {
+            Object poolSize = properties.get(key);
+            if (poolSize != null) {
+                return Integer.parseInt(poolSize.toString().trim());
+            }
+        }
+        return DEFAULT_MAX_CONCURRENT_UNITS;
+    }
+}
@@ -0,0 +1,101 @@
+package jpa.support;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 가상 스레드 고정(pinning) 감지
+ *
+ * 가상 스레드가 synchronized 블록(또는 네이티브 메서드) 안에서 기다리면 캐리어 스레드를 놓아주지 못한다.
+ * 그동안 캐리어 스레드 하나가 통째로 멈추므로 이런 곳이 많으면 가상 스레드를 써도 처리량이 늘지 않는다.
+ *
+ * JFR의 jdk.VirtualThreadPinned 이벤트(threshold 이상 고정된 경우)를 받아서 고정된 위치(스택의 첫 프레임)별로 센다.
+ * 실행 중 바로 출력하려면 -Djdk.tracePinnedThreads=short 를 같이 사용한다.
+ * JFR 스트림은 처리량을 눈에 띄게 떨어뜨린다. (UnitOfWorkHarness, 1 CPU에서 약 40%) 부하 측정과 따로 실행한다.
+ * log()는 jpa.pinning 로거에 WARN으로 남긴다.
+ */
+public class VirtualThreadPinning implements AutoCloseable {
+    private static final String EVENT = "jdk.VirtualThreadPinned";
+    private static final Logger LOG = Logger.getLogger("jpa.pinning");
+
+    private final RecordingStream stream = new RecordingStream();
+    private final Map<String, LongAdder> locations = new ConcurrentHashMap<>();
+    private final LongAdder pinned = new LongAdder();
+    private boolean closed;
+
+    public VirtualThreadPinning(Duration threshold) {
+        stream.enable(EVENT).withThreshold(threshold).withStackTrace();
+        stream.onEvent(EVENT, this::record);
+        stream.startAsync();
+    }
+
+    public long getPinned() {
+        return pinned.sum();
+    }
+
+    // 고정된 위치(클래스.메서드:줄) -> 횟수
+    public Map<String, Long> getLocations() {
+        Map<String, Long> counts = new ConcurrentHashMap<>();
+        locations.forEach((location, count) -> counts.put(location, count.sum()));
+        return counts;
+    }
+
+    // 고정된 위치를 많은 순서로 남긴다.
+    public void log() {
+        if (getPinned() == 0) {
+            return;
+        }
+        LOG.warnf("pinned=%d", getPinned());
+        locations.entrySet().stream()
+                .sorted((a, b) -> Long.compare(b.getValue().sum(), a.getValue().sum()))
+                .forEach(entry -> LOG.warnf("  %6d %s", entry.getValue().sum(), entry.getKey()));
+    }
+
+    // 아직 전달되지 않은 이벤트까지 처리한 다음 멈춘다. 결과를 읽기 전에 호출한다.
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        stream.stop();
+        stream.close();
+    }
+
+    private void record(RecordedEvent event) {
+        pinned.increment();
+        locations.computeIfAbsent(location(event), location -> new LongAdder()).increment();
+    }
+
+    // JDK 내부(java.*, jdk.*) 프레임을 건너뛴 첫 프레임. 대부분 synchronized를 잡은 쪽이다.
+    private static String location(RecordedEvent event) {
+        if (event.getStackTrace() == null) {
+            return "(unknown)";
+        }
+        RecordedFrame first = null;
+        for (RecordedFrame frame : event.getStackTrace().getFrames()) {
+            if (!frame.isJavaFrame()) {
+                continue;
+            }
+            if (first == null) {
+                first = frame;
+            }
+            String type = frame.getMethod().getType().getName();
+            if (!type.startsWith("java.") && !type.startsWith("jdk.") && !type.startsWith("sun.")) {
+                return describe(frame);
+            }
+        }
+        return first == null ? "(unknown)" : describe(first);
+    }
+
+    private static String describe(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+    }
+}
@@ -0,0 +1,116 @@
+package jpa;
+
+import jpa.support.NPlusOneDetector;
+import jpa.support.NPlusOneDetector.Recording;
+import junit.framework.TestCase;
+import org.hibernate.Hibernate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceException;
+import java.util.List;
+
+/**
+ * 개발자 10,000명과 사물함을 어느 쪽에서 조회해도 일대일 연관관계 때문에 SELECT가 더 나가지 않는지 확인한다.
+ * 개발자의 절반만 사물함이 있다.
+ */
+public class DeveloperLockerTest extends TestCase {
+    private static final int DEVELOPERS = 10_000;
+    private static final int LOCKERS = DEVELOPERS / 2;
+
+    private EntityManagerFactory entityManagerFactory;
+    private EntityManager entityManager;
+
+    @Override
+    protected void setUp() {
+        entityManagerFactory = TestPersistence.createEntityManagerFactory("developer_locker_test");
+        entityManager = entityManagerFactory.createEntityManager();
+        entityManager.getTransaction().begin();
+        for (int i = 0; i < DEVELOPERS; i++) {
+            Developer developer = new Developer();
+            developer.setName("developer" + i);
+            if (i % 2 == 0) {
+                Locker locker = new Locker();
+                locker.setName("locker" + i);
+                entityManager.persist(locker);
+                developer.setLocker(locker);
+            }
+            entityManager.persist(developer);
+            if (i % 1_000 == 999) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        entityManager.getTransaction().commit();
+        entityManager.clear();
+    }
+
+    @Override
+    protected void tearDown() {
+        entityManager.close();
+        entityManagerFactory.close();
+    }
+
+    public void testLoadingDevelopersDoesNotLoadLockers() {
+        try (Recording recording = NPlusOneDetector.start()) {
+            List<Developer> developers = entityManager.createQuery("select d from Developer d", Developer.class).getResultList();
+            assertEquals(DEVELOPERS, developers.size());
+
+            int lockers = 0;
+            for (Developer developer : developers) {
+                if (developer.getLocker() != null) {
+                    assertFalse(Hibernate.isInitialized(developer.getLocker()));
+                    assertNotNull(developer.getLocker().getId());
+                    lockers++;
+                }
+            }
+            assertEquals(LOCKERS, lockers);
+            recording.assertSelectCount(1);
+        }
+    }
+
+    public void testLoadingLockersDoesNotLoadDevelopers() {
+        try (Recording recording = NPlusOneDetector.start()) {
+            List<Locker> lockers = entityManager.createQuery("select l from Locker l", Locker.class).getResultList();
+            assertEquals(LOCKERS, lockers.size());
+            recording.assertSelectCount(1);
+
+            // 필요할 때 배치 조회로 100개씩 가져온다.
+            for (Locker locker : lockers) {
+                assertNotNull(locker.getDeveloper().getName());
+            }
+            recording.assertSelectCount(1 + LOCKERS / 100);
+        }
+    }
+
+    // @ManyToOne이지만 locker_id 유니크 제약조건으로 사물함 하나에 개발자 하나만 연결된다.
+    public void testLockerIsSharedByOneDeveloperOnly() {
+        Locker locker = entityManager.createQuery("select l from Locker l", Locker.class)
+                .setMaxResults(1)
+                .getSingleResult();
+        entityManager.getTransaction().begin();
+        Developer developer = new Developer();
+        developer.setName("second");
+        developer.setLocker(locker);
+        entityManager.persist(developer);
+        try {
+            entityManager.flush();
+            fail();
+        } catch (PersistenceException expected) {
+        } finally {
+            entityManager.getTransaction().rollback();
+        }
+    }
+
+    public void testFetchJoinLoadsBothSidesInOneQuery() {
+        try (Recording recording = NPlusOneDetector.start()) {
+            List<Locker> lockers = entityManager.createQuery(
+                    "select l from Locker l join fetch l.developers d", Locker.class).getResultList();
+            assertEquals(LOCKERS, lockers.size());
+            for (Locker locker : lockers) {
+                assertSame(locker, locker.getDeveloper().getLocker());
+            }
+            recording.assertSelectCount(1);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package jpa;
+
+import junit.framework.TestCase;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.persister.entity.JoinedSubclassEntityPersister;
+import org.hibernate.persister.entity.SingleTableEntityPersister;
+import org.hibernate.persister.entity.UnionSubclassEntityPersister;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * jpa.item_inheritance로 고른 전략으로 기동하고, 어느 전략이든 TYPE, TREAT 쿼리 결과가 같은지 확인한다.
+ */
+public class ItemInheritanceTest extends TestCase {
+    public void testSingleTable() {
+        check(ItemInheritance.SINGLE_TABLE, SingleTableEntityPersister.class);
+    }
+
+    public void testJoined() {
+        check(ItemInheritance.JOINED, JoinedSubclassEntityPersister.class);
+    }
+
+    public void testTablePerClass() {
+        check(ItemInheritance.TABLE_PER_CLASS, UnionSubclassEntityPersister.class);
+    }
+
+    public void testRejectsUnknownStrategy() {
+        try {
+            ItemInheritance.from("single");
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        assertEquals(ItemInheritance.SINGLE_TABLE, ItemInheritance.from(null));
+        assertEquals(ItemInheritance.TABLE_PER_CLASS, ItemInheritance.from("table_per_class"));
+    }
+
+    private void check(ItemInheritance inheritance, Class<?> persisterType) {
+        String database = "item_inheritance_" + inheritance.name().toLowerCase();
+        Map<String, Object> overrides = new HashMap<>();
+        overrides.put(ItemInheritance.PROPERTY, inheritance.name().toLowerCase());
+        EntityManagerFactory entityManagerFactory = TestPersistence.createEntityManagerFactory(database, overrides);
+        try {
+            EntityPersister persister = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getMetamodel().entityPersister(Item.class);
+            assertTrue(persister.getClass().getName(), persisterType.isInstance(persister));
+            // 자식 테이블 이름은 orm.xml에만 있다. (단일 테이블 전략은 item_map 하나)
+            AbstractEntityPersister bookPersister = (AbstractEntityPersister) entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                    .getMetamodel().entityPersister(Book.class);
+            assertEquals(inheritance == ItemInheritance.SINGLE_TABLE ? "item_map" : "book_map", bookPersister.getTableName());
+
+            EntityManager entityManager = entityManagerFactory.createEntityManager();
+            entityManager.getTransaction().begin();
+            for (int i = 0; i < 3; i++) {
+                Album album = new Album();
+                album.setName("album" + i);
+                album.setArtist("artist" + i);
+                entityManager.persist(album);
+                Book book = new Book();
+                book.setName("book" + i);
+                book.setAuthor(i == 0 ? "kim" : "lee");
+                entityManager.persist(book);
+                Movie movie = new Movie();
+                movie.setName("movie" + i);
+                movie.setActor("actor" + i);
+                entityManager.persist(movie);
+            }
+            entityManager.getTransaction().commit();
+            entityManager.clear();
+
+            ItemQueries queries = new ItemQueries(entityManager);
+            List<Item> items = queries.findByTypes(Arrays.asList(Album.class, Movie.class), 100);
+            assertEquals(6, items.size());
+            for (Item item : items) {
+                assertFalse(item instanceof Book);
+                assertNotNull(item.getCreatedAt());
+            }
+            List<Item> byAuthor = queries.findByAuthor("kim", 100);
+            assertEquals(1, byAuthor.size());
+            assertEquals("book0", byAuthor.get(0).getName());
+            assertEquals(3, queries.findBooks(100).size());
+            assertEquals(9L, (long) entityManager.createQuery("select count(i) from jpa.Item i", Long.class).getSingleResult());
+
+            // 구분자 컬럼이 있는 전략은 구분자 인덱스도 만든다.
+            Number indexes = (Number) entityManager.createNativeQuery(
+                    "select count(distinct index_name) from information_schema.indexes where index_name = 'IDX_ITEM_MAP_TYPE'").getSingleResult();
+            assertEquals(inheritance == ItemInheritance.TABLE_PER_CLASS ? 0 : 1, indexes.intValue());
+            entityManager.close();
+        } finally {
+            entityManagerFactory.close();
+        }
+    }
+}
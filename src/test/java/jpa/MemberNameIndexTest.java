@@ -0,0 +1,156 @@
+package jpa;
+
+import jpa.support.JdbcRoundTripCounter;
+import jpa.support.QueryPlanChecker;
+import junit.framework.TestCase;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * 이름 검색 결과가 like '%검색어%'와 같고 순위대로 나오는지, 저장, 이름 변경, 삭제할 때 색인이 따라가는지 확인한다.
+ */
+public class MemberNameIndexTest extends TestCase {
+    private static final List<String> NAMES = Arrays.asList(
+            "kim", "Kimchi", "akim", "joakim", "minkyu", "kimin", "lee", "100%_done", "김민준", "민준");
+
+    private EntityManagerFactory entityManagerFactory;
+    private EntityManager entityManager;
+    private MemberOldQueries queries;
+
+    @Override
+    protected void setUp() {
+        entityManagerFactory = TestPersistence.createEntityManagerFactory("member_name_index_test");
+        entityManager = entityManagerFactory.createEntityManager();
+        queries = new MemberOldQueries(entityManager);
+        entityManager.getTransaction().begin();
+        for (String name : NAMES) {
+            entityManager.persist(MemberOld.builder().name(name).age(20).build());
+        }
+        entityManager.getTransaction().commit();
+        entityManager.clear();
+    }
+
+    @Override
+    protected void tearDown() {
+        entityManager.close();
+        entityManagerFactory.close();
+    }
+
+    public void testRanksExactThenPositionThenLength() {
+        assertEquals(Arrays.asList("kim", "kimin", "Kimchi", "akim", "joakim"), names(queries.searchMembersByName("KIM", 10)));
+        assertEquals(Arrays.asList("kim", "kimin"), names(queries.searchMembersByName("kim", 2)));
+    }
+
+    // 후보가 많아서 전체를 읽어도 순위는 같다.
+    public void testScanFallbackRanksTheSame() {
+        assertEquals(Arrays.asList("kim", "kimin", "Kimchi", "akim", "joakim"), names(MemberNameIndex.search(entityManager, "KIM", 10, 0)));
+        assertEquals(Arrays.asList("kim", "kimin"), names(MemberNameIndex.search(entityManager, "kim", 2, 0)));
+    }
+
+    public void testMatchesLikeScan() {
+        for (String fragment : Arrays.asList("k", "ki", "kim", "min", "in", "n", "민준", "준", "%", "_d", "0%_", "xyz", "kimchi", "akimx")) {
+            List<String> expected = new ArrayList<>();
+            for (String name : NAMES) {
+                if (name.toLowerCase().contains(fragment.toLowerCase())) {
+                    expected.add(name);
+                }
+            }
+            assertEquals(fragment, new HashSet<>(expected), new HashSet<>(names(queries.searchMembersByName(fragment, 100))));
+            assertEquals(fragment, new HashSet<>(expected), new HashSet<>(names(MemberNameIndex.search(entityManager, fragment, 100, 0))));
+        }
+    }
+
+    public void testFollowsNameChangesAndDeletes() {
+        entityManager.getTransaction().begin();
+        MemberOld lee = queries.searchMembersByName("lee", 1).get(0);
+        lee.setName("parklee");
+        MemberOld kimchi = queries.searchMembersByName("kimchi", 1).get(0);
+        entityManager.remove(kimchi);
+        entityManager.getTransaction().commit();
+        entityManager.clear();
+
+        assertEquals(Arrays.asList("parklee"), names(queries.searchMembersByName("park", 10)));
+        assertEquals(Arrays.asList("parklee"), names(queries.searchMembersByName("lee", 10)));
+        assertTrue(queries.searchMembersByName("chi", 10).isEmpty());
+    }
+
+    // gram은 회원마다가 아니라 flush마다 배치로 나간다. (batch_size 50)
+    public void testWritesGramsInBatchesPerFlush() {
+        entityManager.getTransaction().begin();
+        JdbcRoundTripCounter counter = JdbcRoundTripCounter.attach(entityManager);
+        int grams = 0;
+        for (int i = 0; i < 100; i++) {
+            String name = "batch" + i;
+            entityManager.persist(MemberOld.builder().name(name).age(20).build());
+            grams += MemberNameIndex.grams(name).size();
+        }
+        long statements = counter.getStatements();
+        entityManager.flush();
+        // 회원 INSERT 2번 + gram INSERT
+        assertEquals(2 + (grams + 49) / 50, counter.getBatches());
+        assertEquals(statements, counter.getStatements());
+
+        // 같은 flush에서 이름을 바꾸고 지우면 DELETE, INSERT 배치가 하나씩 더 나간다.
+        counter.reset();
+        List<MemberOld> members = queries.searchMembersByName("batch1", 100);
+        members.get(0).setName("renamed");
+        entityManager.remove(members.get(1));
+        statements = counter.getStatements();
+        entityManager.flush();
+        // 회원 UPDATE, DELETE + gram DELETE, INSERT
+        assertEquals(4, counter.getBatches());
+        assertEquals(statements, counter.getStatements());
+        assertEquals(Arrays.asList("renamed"), names(queries.searchMembersByName("rename", 10)));
+        entityManager.getTransaction().commit();
+    }
+
+    public void testRebuildsAfterBulkInsert() {
+        entityManager.getTransaction().begin();
+        entityManager.createNativeQuery("insert into member_old (id, name) values (1000000, 'bulkkim')").executeUpdate();
+        assertTrue(queries.searchMembersByName("bulk", 10).isEmpty());
+        int grams = MemberNameIndex.rebuild(entityManager);
+        entityManager.getTransaction().commit();
+
+        int expected = MemberNameIndex.grams("bulkkim").size();
+        for (String name : NAMES) {
+            expected += MemberNameIndex.grams(name).size();
+        }
+        assertEquals(expected, grams);
+        assertEquals(Arrays.asList("bulkkim"), names(queries.searchMembersByName("bulk", 10)));
+    }
+
+    public void testGrams() {
+        assertEquals(new HashSet<>(Arrays.asList("kim", "imi", "min", "in", "n")), MemberNameIndex.grams("KiMin"));
+        assertEquals(new HashSet<>(Arrays.asList("김민준", "민준", "준")), MemberNameIndex.grams("김민준"));
+    }
+
+    public void testSearchDoesNotScanMembers() {
+        entityManager.getTransaction().begin();
+        entityManager.createNativeQuery("insert into member_old (id, name)"
+                + " select 1000000 + x, 'member' || x from system_range(1, 5000)").executeUpdate();
+        MemberNameIndex.rebuild(entityManager);
+        entityManager.createNativeQuery("analyze").executeUpdate();
+        entityManager.getTransaction().commit();
+
+        // 네이티브 쿼리의 이름 있는 파라미터를 ?로 바꿔서 본다.
+        new QueryPlanChecker(entityManagerFactory, 1_000)
+                .registerNative("RAREST_GRAM", MemberNameIndex.RAREST_GRAM.replaceAll(":\\w+", "?"))
+                .registerNative("GRAM_PREFIX", MemberNameIndex.GRAM_PREFIX.replaceAll(":\\w+", "?"))
+                .registerNative("GRAM_POSTINGS", MemberNameIndex.GRAM_POSTINGS.replaceAll(":\\w+", "?"))
+                .registerNative("PREFIX_POSTINGS", MemberNameIndex.PREFIX_POSTINGS.replaceAll(":\\w+", "?"))
+                .assertNoFullScans();
+    }
+
+    private static List<String> names(List<MemberOld> members) {
+        List<String> names = new ArrayList<>();
+        for (MemberOld member : members) {
+            names.add(member.getName());
+        }
+        return names;
+    }
+}
@@ -0,0 +1,106 @@
+package jpa;
+
+import jpa.support.JdbcRoundTripCounter;
+import junit.framework.TestCase;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 주소 이력, 좋아하는 음식을 하나 추가하거나 지울 때 SQL이 한 번만 나가는지 확인한다.
+ * 이력 수(HISTORY)와 상관없이 일정해야 한다.
+ */
+public class MemberOldCollectionTest extends TestCase {
+    private static final int HISTORY = 20;
+
+    private EntityManagerFactory entityManagerFactory;
+    private EntityManager entityManager;
+    private Long memberId;
+
+    @Override
+    protected void setUp() {
+        // 배치로 묶이면 전체 삭제 후 다시 INSERT 해도 SQL 수가 적게 보이므로 배치를 끄고 센다.
+        Map<String, Object> overrides = new HashMap<>();
+        overrides.put("hibernate.jdbc.batch_size", "0");
+        entityManagerFactory = TestPersistence.createEntityManagerFactory("member_old_collection_test", overrides);
+        entityManager = entityManagerFactory.createEntityManager();
+
+        List<Address> addresses = new ArrayList<>();
+        Set<String> foods = new HashSet<>();
+        for (int i = 0; i < HISTORY; i++) {
+            addresses.add(address(i));
+            foods.add("food" + i);
+        }
+
+        entityManager.getTransaction().begin();
+        MemberOld member = MemberOld.builder()
+                .name("kim")
+                .favoriteFood(foods)
+                .addressHistory(addresses)
+                .build();
+        entityManager.persist(member);
+        entityManager.getTransaction().commit();
+        entityManager.clear();
+        memberId = member.getId();
+
+        entityManager.getTransaction().begin();
+    }
+
+    @Override
+    protected void tearDown() {
+        entityManager.getTransaction().rollback();
+        entityManager.close();
+        entityManagerFactory.close();
+    }
+
+    public void testAppendAddressIsOneInsert() {
+        MemberOld member = entityManager.find(MemberOld.class, memberId);
+        member.getAddressHistory().size();
+
+        assertEquals(1, countFlush(() -> member.addAddressHistory(address(HISTORY))));
+    }
+
+    public void testAppendAddressDoesNotLoadHistory() {
+        MemberOld member = entityManager.find(MemberOld.class, memberId);
+
+        assertEquals(1, countFlush(() -> member.addAddressHistory(address(HISTORY))));
+    }
+
+    public void testRemoveAddressIsOneDelete() {
+        MemberOld member = entityManager.find(MemberOld.class, memberId);
+        AddressHistory middle = member.getAddressHistory().get(HISTORY / 2);
+
+        assertEquals(1, countFlush(() -> member.removeAddressHistory(middle)));
+        assertEquals(HISTORY - 1, member.getAddressHistory().size());
+    }
+
+    public void testAddAndRemoveFavoriteFoodIsOneStatementEach() {
+        MemberOld member = entityManager.find(MemberOld.class, memberId);
+        member.getFavoriteFood().size();
+
+        assertEquals(1, countFlush(() -> member.getFavoriteFood().add("pizza")));
+        assertEquals(1, countFlush(() -> member.getFavoriteFood().remove("food0")));
+    }
+
+    // 변경 후 flush 할 때 실행한 SQL 수
+    private long countFlush(Runnable change) {
+        JdbcRoundTripCounter counter = JdbcRoundTripCounter.attach(entityManager);
+        change.run();
+        entityManager.flush();
+        return counter.getStatements();
+    }
+
+    private static Address address(int i) {
+        return Address.builder()
+                .city("city" + i)
+                .street("street" + i)
+                .zipcode("zip" + i)
+                .build();
+    }
+}
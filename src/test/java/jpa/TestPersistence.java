@@ -0,0 +1,38 @@
+package jpa;
+
+import jpa.support.EagerFetchAudit;
+import jpa.support.UnitOfWorkExecutor;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 테스트용 EntityManagerFactory
+ *
+ * "hello" 영속성 유닛을 그대로 사용하되 SQL 출력을 끄고, 테스트마다 별도의 H2 인메모리 DB를 사용한다.
+ * 작업 단위(UnitOfWorkExecutor)의 N+1 감지는 켜고, 즉시 로딩 연관관계가 있으면 기동에 실패한다.
+ */
+public final class TestPersistence {
+    private TestPersistence() {
+    }
+
+    public static EntityManagerFactory createEntityManagerFactory(String database) {
+        return createEntityManagerFactory(database, new HashMap<>());
+    }
+
+    public static EntityManagerFactory createEntityManagerFactory(String database, Map<String, Object> overrides) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("javax.persistence.jdbc.url", "jdbc:h2:mem:" + database);
+        properties.put("hibernate.show_sql", "false");
+        properties.put("hibernate.format_sql", "false");
+        properties.put("hibernate.use_sql_comments", "false");
+        properties.put(UnitOfWorkExecutor.N_PLUS_ONE_THRESHOLD, "10");
+        properties.put(EagerFetchAudit.MODE, "fail");
+        // 풀 MBean 이름이 겹치지 않도록 DB 이름을 사용한다.
+        properties.put("hibernate.hikari.poolName", database);
+        properties.putAll(overrides);
+        return Persistence.createEntityManagerFactory("hello", properties);
+    }
+}
@@ -0,0 +1,220 @@
+package jpa.shop.category;
+
+import jpa.TestPersistence;
+import jpa.shop.domain.Category;
+import jpa.shop.domain.Item;
+import jpa.support.NPlusOneDetector;
+import jpa.support.NPlusOneDetector.Recording;
+import junit.framework.TestCase;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 재귀 CTE 한 번으로 하위 트리를 만들고, 카테고리가 바뀌어 커밋되면 캐시가 비워지는지 확인한다.
+ */
+public class CategoryTreeServiceTest extends TestCase {
+    private static final int DEPTH = 4;
+    private static final int BREADTH = 3;
+
+    private EntityManagerFactory entityManagerFactory;
+    private CategoryTreeService service;
+    private Long rootId;
+
+    @Override
+    protected void setUp() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("hibernate.cache.use_second_level_cache", "false");
+        properties.put("hibernate.cache.use_query_cache", "false");
+        entityManagerFactory = TestPersistence.createEntityManagerFactory("category_tree_test", properties);
+        service = new CategoryTreeService(entityManagerFactory);
+
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        entityManager.getTransaction().begin();
+        Category root = category(entityManager, "root", null);
+        addChildren(entityManager, root, 1);
+        rootId = root.getId();
+        category(entityManager, "other", null);
+        entityManager.getTransaction().commit();
+        entityManager.close();
+        service.invalidate();
+    }
+
+    @Override
+    protected void tearDown() {
+        entityManagerFactory.close();
+    }
+
+    public void testLoadsSubtreeInOneQuery() {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        CategoryNode root;
+        try (Recording recording = NPlusOneDetector.start()) {
+            root = service.loadSubtree(entityManager, rootId);
+            recording.assertSelectCount(1);
+        } finally {
+            entityManager.close();
+        }
+
+        // 1 + 3 + 9 + 27 + 81
+        assertEquals(121, root.size());
+        assertEquals(BREADTH, root.getChildren().size());
+        CategoryNode leaf = root;
+        while (!leaf.getChildren().isEmpty()) {
+            CategoryNode child = leaf.getChildren().get(0);
+            assertEquals(leaf.getId(), child.getParentId());
+            assertEquals(leaf.getDepth() + 1, child.getDepth());
+            leaf = child;
+        }
+        assertEquals(DEPTH, leaf.getDepth());
+
+        // 중간 노드부터 시작하면 depth는 0부터 다시 센다.
+        CategoryNode middle = root.getChildren().get(1);
+        CategoryNode subtree = service.getSubtree(middle.getId());
+        assertEquals(0, subtree.getDepth());
+        assertEquals(middle.size(), subtree.size());
+        assertNull(service.getSubtree(-1L));
+    }
+
+    public void testRootsIncludeEveryTree() {
+        List<CategoryNode> roots = service.getRoots();
+
+        assertEquals(2, roots.size());
+        assertEquals(122, roots.get(0).size() + roots.get(1).size());
+    }
+
+    public void testCacheIsInvalidatedOnCommit() {
+        CategoryNode root = service.getSubtree(rootId);
+        assertSame(root, service.getSubtree(rootId));
+        assertEquals(1, service.getLoads());
+
+        // 카테고리가 아닌 엔티티의 커밋은 캐시를 비우지 않는다.
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        entityManager.getTransaction().begin();
+        Item item = new Item();
+        item.setName("item");
+        entityManager.persist(item);
+        entityManager.getTransaction().commit();
+        entityManager.close();
+        assertSame(root, service.getSubtree(rootId));
+
+        Long leafId = service.create("new", root.getChildren().get(0).getId());
+        CategoryNode reloaded = service.getSubtree(rootId);
+        assertEquals(2, service.getLoads());
+        assertEquals(root.size() + 1, reloaded.size());
+        assertNotNull(reloaded.find(leafId));
+
+        service.move(leafId, root.getChildren().get(2).getId());
+        assertEquals(root.getChildren().get(2).getId(), service.getSubtree(rootId).find(leafId).getParentId());
+    }
+
+    // 리스너는 팩토리에 한 번만 등록되고 서비스마다 구독한다.
+    public void testServicesOnSameFactoryAreAllInvalidated() {
+        CategoryTreeService other = new CategoryTreeService(entityManagerFactory);
+        CategoryNode root = service.getSubtree(rootId);
+        CategoryNode otherRoot = other.getSubtree(rootId);
+
+        other.create("added", rootId);
+
+        assertNotSame(root, service.getSubtree(rootId));
+        assertNotSame(otherRoot, other.getSubtree(rootId));
+        assertEquals(root.size() + 1, other.getSubtree(rootId).size());
+    }
+
+    public void testMoveUnderDescendantIsRejected() {
+        CategoryNode root = service.getSubtree(rootId);
+        Long childId = root.getChildren().get(0).getId();
+        Long grandchildId = root.getChildren().get(0).getChildren().get(0).getId();
+
+        try {
+            service.move(childId, grandchildId);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            service.move(childId, childId);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        assertSame(root, service.getSubtree(rootId));
+    }
+
+    public void testTooDeepTreeIsRejected() {
+        Long parentId = null;
+        Long topId = null;
+        for (int depth = 0; depth <= CategoryTreeService.MAX_DEPTH + 1; depth++) {
+            parentId = service.create("deep" + depth, parentId);
+            if (topId == null) {
+                topId = parentId;
+            }
+        }
+
+        try {
+            service.getSubtree(topId);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        long loads = service.getLoads();
+        try {
+            service.getSubtree(topId);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        // 잘린 트리를 캐시하지 않았으므로 다시 읽는다.
+        assertEquals(loads + 1, service.getLoads());
+    }
+
+    public void testMaxDepthTreeIsLoaded() {
+        Long parentId = null;
+        Long topId = null;
+        for (int depth = 0; depth <= CategoryTreeService.MAX_DEPTH; depth++) {
+            parentId = service.create("deep" + depth, parentId);
+            if (topId == null) {
+                topId = parentId;
+            }
+        }
+
+        assertEquals(CategoryTreeService.MAX_DEPTH + 1, service.getSubtree(topId).size());
+    }
+
+    public void testCycleIsRejected() {
+        CategoryNode root = service.getSubtree(rootId);
+        Long childId = root.getChildren().get(0).getId();
+        Long grandchildId = root.getChildren().get(0).getChildren().get(0).getId();
+        // move()는 순환을 막으므로 SQL로 직접 연결한다.
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        entityManager.getTransaction().begin();
+        entityManager.createNativeQuery("update category set parent_id = :parentId where id = :id")
+                .setParameter("parentId", grandchildId)
+                .setParameter("id", childId)
+                .executeUpdate();
+        entityManager.getTransaction().commit();
+        entityManager.close();
+        service.invalidate();
+
+        try {
+            service.getSubtree(childId);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    private static Category category(EntityManager entityManager, String name, Category parent) {
+        Category category = new Category();
+        category.setName(name);
+        category.setParent(parent);
+        entityManager.persist(category);
+        return category;
+    }
+
+    private static void addChildren(EntityManager entityManager, Category parent, int depth) {
+        if (depth > DEPTH) {
+            return;
+        }
+        for (int i = 0; i < BREADTH; i++) {
+            addChildren(entityManager, category(entityManager, parent.getName() + "-" + i, parent), depth + 1);
+        }
+    }
+}
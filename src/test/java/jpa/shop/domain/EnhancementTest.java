@@ -0,0 +1,87 @@
+package jpa.shop.domain;
+
+import jpa.TestPersistence;
+import jpa.support.NPlusOneDetector;
+import jpa.support.NPlusOneDetector.Recording;
+import junit.framework.TestCase;
+import org.hibernate.engine.spi.PersistentAttributeInterceptable;
+import org.hibernate.engine.spi.SelfDirtinessTracker;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnitUtil;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+/**
+ * 바이트코드 향상 설정(pom.xml enhance 프로필)이 지연 로딩 연관관계를 조회하지 않는지 확인한다.
+ *
+ * 지연 로딩 향상(enableLazyInitialization)을 켜면 주문을 조회할 때 회원, 배송까지 조회하므로 꺼져 있어야 한다.
+ * -DskipEnhance로 빌드하면 변경 추적 확인은 건너뛴다.
+ */
+public class EnhancementTest extends TestCase {
+    private EntityManagerFactory entityManagerFactory;
+    private Long orderId;
+
+    @Override
+    protected void setUp() {
+        entityManagerFactory = TestPersistence.createEntityManagerFactory("enhancement_test");
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        entityManager.getTransaction().begin();
+        Member member = new Member();
+        member.setName("member");
+        entityManager.persist(member);
+        Order order = new Order();
+        order.setMember(member);
+        order.setDelivery(new Delivery());
+        order.setOrderDate(LocalDateTime.now());
+        order.setOrderStatus(OrderStatus.ORDER);
+        entityManager.persist(order);
+        entityManager.getTransaction().commit();
+        entityManager.close();
+        orderId = order.getId();
+    }
+
+    @Override
+    protected void tearDown() {
+        entityManagerFactory.close();
+    }
+
+    public void testLazyInitializationIsNotEnhanced() {
+        for (Class<?> entityClass : Arrays.asList(Order.class, OrderItem.class, Member.class, Delivery.class, Item.class)) {
+            assertFalse(entityClass.getName(), PersistentAttributeInterceptable.class.isAssignableFrom(entityClass));
+        }
+    }
+
+    public void testFindLeavesToOnesUnloaded() {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try (Recording recording = NPlusOneDetector.start()) {
+            Order order = entityManager.find(Order.class, orderId);
+
+            PersistenceUnitUtil util = entityManagerFactory.getPersistenceUnitUtil();
+            assertFalse(util.isLoaded(order, "member"));
+            assertFalse(util.isLoaded(order, "delivery"));
+            assertFalse(util.isLoaded(order, "orderItem"));
+            recording.assertSelectCount(1);
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    public void testDirtyTrackingRecordsChangedField() {
+        if (!SelfDirtinessTracker.class.isAssignableFrom(Order.class)) {
+            return;
+        }
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            Order order = entityManager.find(Order.class, orderId);
+            SelfDirtinessTracker tracker = (SelfDirtinessTracker) order;
+            assertFalse(tracker.$$_hibernate_hasDirtyAttributes());
+
+            order.setOrderStatus(OrderStatus.CANCEL);
+            assertEquals(Arrays.asList("orderStatus"), Arrays.asList(tracker.$$_hibernate_getDirtyAttributes()));
+        } finally {
+            entityManager.close();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package jpa.shop.export;
+
+import jpa.TestPersistence;
+import junit.framework.TestCase;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 내보내는 주문 수가 10배가 되어도 내보내는 동안의 최대 힙 사용량이 늘지 않는지 확인한다.
+ *
+ * 인메모리 DB는 테이블이 힙에 있어서 측정이 안되므로 파일 DB를 사용한다.
+ */
+public class OrderExporterTest extends TestCase {
+    private static final int LINES_PER_ORDER = 3;
+    private static final int SMALL = 10_000;
+    private static final int LARGE = 100_000;
+    // 주문상품 30만 줄을 한 번에 올리면 수십 MB다.
+    private static final long ALLOWED_GROWTH = 8L * 1024 * 1024;
+
+    private EntityManagerFactory entityManagerFactory;
+
+    @Override
+    protected void setUp() {
+        Map<String, Object> overrides = new HashMap<>();
+        overrides.put("javax.persistence.jdbc.url",
+                "jdbc:h2:file:./target/h2/order_export_test;LAZY_QUERY_EXECUTION=1;CACHE_SIZE=4096");
+        overrides.put("hibernate.cache.use_second_level_cache", "false");
+        overrides.put("hibernate.cache.use_query_cache", "false");
+        entityManagerFactory = TestPersistence.createEntityManagerFactory("order_export_test", overrides);
+    }
+
+    @Override
+    protected void tearDown() {
+        entityManagerFactory.close();
+    }
+
+    public void testExportWritesOneLinePerOrderItem() {
+        insertOrders(1, 2);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long lines = new OrderExporter(entityManagerFactory).exportCsv(Channels.newChannel(out));
+
+        String[] csv = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        assertEquals(2 * LINES_PER_ORDER, lines);
+        assertEquals(OrderExporter.HEADER, csv[0]);
+        assertEquals(1 + 2 * LINES_PER_ORDER, csv.length);
+        assertTrue(csv[1].startsWith("1,"));
+        assertTrue(csv[1].contains(",ORDER,"));
+        assertTrue(csv[1].contains("\"item, 1\""));
+    }
+
+    public void testPeakHeapDoesNotGrowWithOrderCount() {
+        insertOrders(1, SMALL);
+        HeapSamplingChannel small = export(SMALL);
+
+        insertOrders(SMALL + 1, LARGE);
+        HeapSamplingChannel large = export(LARGE);
+
+        long smallGrowth = small.getPeakGrowth();
+        long largeGrowth = large.getPeakGrowth();
+        assertTrue("small=" + smallGrowth + " large=" + largeGrowth, largeGrowth < smallGrowth + ALLOWED_GROWTH);
+    }
+
+    private HeapSamplingChannel export(int orders) {
+        HeapSamplingChannel channel = new HeapSamplingChannel();
+        long lines = new OrderExporter(entityManagerFactory).exportCsv(channel);
+        assertEquals((long) orders * LINES_PER_ORDER, lines);
+        return channel;
+    }
+
+    // 네이티브 SQL로 주문 from..to번과 주문마다 주문상품 3개를 넣는다.
+    private void insertOrders(int from, int to) {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        entityManager.getTransaction().begin();
+        if (from == 1) {
+            entityManager.createNativeQuery("insert into item (id, name, price, stockQuantity, version)"
+                    + " select x, 'item, ' || x, 1000 * x, 100, 0 from system_range(1, " + LINES_PER_ORDER + ")")
+                    .executeUpdate();
+        }
+        entityManager.createNativeQuery("insert into orders (id, orderDate, orderStatus)"
+                + " select x, current_timestamp(), 'ORDER' from system_range(?, ?)")
+                .setParameter(1, from)
+                .setParameter(2, to)
+                .executeUpdate();
+        entityManager.createNativeQuery("insert into order_item (id, order_id, item_id, orderPrice, count)"
+                + " select o.x * " + LINES_PER_ORDER + " + i.x, o.x, i.x, 1000 * i.x, 1"
+                + " from system_range(?, ?) o, system_range(1, " + LINES_PER_ORDER + ") i")
+                .setParameter(1, from)
+                .setParameter(2, to)
+                .executeUpdate();
+        entityManager.getTransaction().commit();
+        entityManager.close();
+    }
+
+    /**
+     * 받은 데이터는 버리고 256KB를 받을 때마다 GC 후 힙 사용량을 기록한다.
+     */
+    private static class HeapSamplingChannel implements WritableByteChannel {
+        private static final int SAMPLE_INTERVAL = 256 * 1024;
+
+        private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        private final long baseline;
+        private long peak;
+        private long sinceLastSample;
+
+        HeapSamplingChannel() {
+            baseline = usedAfterGc();
+            peak = baseline;
+        }
+
+        long getPeakGrowth() {
+            return peak - baseline;
+        }
+
+        @Override
+        public int write(ByteBuffer source) {
+            int written = source.remaining();
+            source.position(source.limit());
+            sinceLastSample += written;
+            if (sinceLastSample >= SAMPLE_INTERVAL) {
+                sinceLastSample = 0;
+                peak = Math.max(peak, usedAfterGc());
+            }
+            return written;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        private long usedAfterGc() {
+            System.gc();
+            return memory.getHeapMemoryUsage().getUsed();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package jpa.shop.ingest;
+
+import jpa.TestPersistence;
+import jpa.shop.domain.Delivery;
+import jpa.shop.domain.Item;
+import jpa.shop.domain.Order;
+import jpa.shop.domain.OrderItem;
+import jpa.shop.domain.OrderStatus;
+import junit.framework.TestCase;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+public class BulkIngesterTest extends TestCase {
+    private EntityManagerFactory entityManagerFactory;
+
+    @Override
+    protected void setUp() {
+        entityManagerFactory = TestPersistence.createEntityManagerFactory("bulk_ingester_test");
+    }
+
+    @Override
+    protected void tearDown() {
+        entityManagerFactory.close();
+    }
+
+    public void testIngestItemsInChunks() {
+        long written = new BulkIngester(entityManagerFactory, 1_000, null).ingestItems(items(0, 2_500));
+
+        assertEquals(2_500, written);
+        assertEquals(2_500L, count("select count(i) from jpa.shop.domain.Item i"));
+    }
+
+    public void testFailureRollsBackOnlyCurrentChunk() {
+        Iterable<Item> failing = () -> new Iterator<Item>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public Item next() {
+                if (next == 1_500) {
+                    throw new IllegalStateException("feed broken");
+                }
+                return item(next++);
+            }
+        };
+
+        try {
+            new BulkIngester(entityManagerFactory, 1_000, null).ingestItems(failing);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+
+        assertEquals(1_000L, count("select count(i) from jpa.shop.domain.Item i"));
+    }
+
+    public void testIngestOrdersInParallelByKeyRange() {
+        BulkIngester ingester = new BulkIngester(entityManagerFactory, 100, null);
+        ingester.ingestItems(items(0, 3));
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        List<Item> catalog = entityManager.createQuery("select i from jpa.shop.domain.Item i order by i.id", Item.class)
+                .getResultList();
+        entityManager.close();
+
+        long written = ingester.ingestOrdersInParallel(0, 1_001, 4, (from, to) -> LongStream.range(from, to)
+                .mapToObj(key -> order(catalog))
+                .collect(Collectors.toList()));
+
+        // 주문마다 배송 1 + 주문 1 + 주문상품 3
+        assertEquals(1_001 * 5, written);
+        assertEquals(1_001L, count("select count(o) from Order o"));
+        assertEquals(3_003L, count("select count(oi) from OrderItem oi where oi.order is not null"));
+        assertEquals(1_001L, count("select count(d) from Delivery d"));
+    }
+
+    private long count(String jpql) {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            return entityManager.createQuery(jpql, Long.class).getSingleResult();
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    private static List<Item> items(int from, int to) {
+        return LongStream.range(from, to).mapToObj(i -> item((int) i)).collect(Collectors.toList());
+    }
+
+    private static Item item(int i) {
+        Item item = new Item();
+        item.setName("item" + i);
+        item.setPrice(1_000);
+        item.setStockQuantity(100);
+        return item;
+    }
+
+    private static Order order(List<Item> catalog) {
+        Order order = new Order();
+        order.setOrderDate(LocalDateTime.now());
+        order.setOrderStatus(OrderStatus.ORDER);
+        order.setDelivery(new Delivery());
+        for (Item item : catalog) {
+            OrderItem orderItem = new OrderItem();
+            orderItem.setItem(item);
+            orderItem.setOrderPrice(item.getPrice());
+            orderItem.setCount(1);
+            order.addOrderItem(orderItem);
+        }
+        return order;
+    }
+}
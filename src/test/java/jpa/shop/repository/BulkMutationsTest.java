@@ -0,0 +1,200 @@
+package jpa.shop.repository;
+
+import jpa.TestPersistence;
+import jpa.shop.domain.Category;
+import jpa.shop.domain.Delivery;
+import jpa.shop.domain.Item;
+import jpa.shop.domain.Member;
+import jpa.shop.domain.Order;
+import jpa.shop.domain.OrderItem;
+import jpa.shop.domain.OrderStatus;
+import jpa.support.JdbcRoundTripCounter;
+import junit.framework.TestCase;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 벌크 연산 결과와 영속성 컨텍스트, 2차 캐시가 어긋나지 않는지 확인한다.
+ */
+public class BulkMutationsTest extends TestCase {
+    private static final int ORDERS = 25;
+    private static final int ITEMS = 25;
+
+    private EntityManagerFactory entityManagerFactory;
+    private EntityManager entityManager;
+    private Long memberId;
+    private Long categoryId;
+    private Long firstItemId;
+
+    @Override
+    protected void setUp() {
+        entityManagerFactory = TestPersistence.createEntityManagerFactory("bulk_mutations_test");
+        entityManager = entityManagerFactory.createEntityManager();
+        entityManager.getTransaction().begin();
+
+        Member member = new Member();
+        member.setName("kim");
+        entityManager.persist(member);
+        memberId = member.getId();
+
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < ITEMS; i++) {
+            Item item = new Item();
+            item.setName("item" + i);
+            item.setPrice(1_000);
+            item.setStockQuantity(0);
+            entityManager.persist(item);
+            items.add(item);
+        }
+        firstItemId = items.get(0).getId();
+
+        Category category = new Category();
+        category.setName("book");
+        category.setItems(items);
+        entityManager.persist(category);
+        categoryId = category.getId();
+
+        for (int i = 0; i < ORDERS; i++) {
+            Order order = new Order();
+            order.setMember(member);
+            order.setOrderDate(LocalDateTime.now().minusDays(1));
+            order.setOrderStatus(OrderStatus.ORDER);
+            order.setDelivery(new Delivery());
+            OrderItem orderItem = new OrderItem();
+            orderItem.setItem(items.get(i % ITEMS));
+            orderItem.setOrderPrice(1_000);
+            orderItem.setCount(1);
+            order.addOrderItem(orderItem);
+            entityManager.persist(order);
+        }
+
+        entityManager.getTransaction().commit();
+        entityManager.clear();
+    }
+
+    @Override
+    protected void tearDown() {
+        entityManager.close();
+        entityManagerFactory.close();
+    }
+
+    public void testCancelOrdersIsOneStatementAndRefreshesManagedOrders() {
+        entityManager.getTransaction().begin();
+        Order managed = entityManager.createQuery("select o from Order o order by o.id", Order.class)
+                .setMaxResults(1)
+                .getSingleResult();
+
+        JdbcRoundTripCounter counter = JdbcRoundTripCounter.attach(entityManager);
+        int updated = new BulkMutations(entityManager).cancelOrdersByMember(memberId);
+        long statements = counter.getStatements();
+        entityManager.getTransaction().commit();
+
+        assertEquals(ORDERS, updated);
+        assertEquals(1, statements);
+        assertFalse(entityManager.contains(managed));
+        assertEquals(OrderStatus.CANCEL, entityManager.find(Order.class, managed.getId()).getOrderStatus());
+    }
+
+    public void testRestockEvictsSecondLevelCache() {
+        // 2차 캐시에 재고 0인 상품을 올려둔다.
+        entityManager.find(Item.class, firstItemId);
+        entityManager.clear();
+        assertTrue(entityManagerFactory.getCache().contains(Item.class, firstItemId));
+
+        entityManager.getTransaction().begin();
+        int updated = new BulkMutations(entityManager).restockCategory(categoryId, 10);
+        entityManager.getTransaction().commit();
+
+        assertEquals(ITEMS, updated);
+        assertFalse(entityManagerFactory.getCache().contains(Item.class, firstItemId));
+        assertEquals(Integer.valueOf(10), entityManager.find(Item.class, firstItemId).getStockQuantity());
+    }
+
+    public void testChunkedUpdateCommitsPerIdRange() {
+        BulkMutations mutations = new BulkMutations(entityManager);
+        Item managed = entityManager.find(Item.class, firstItemId);
+
+        JdbcRoundTripCounter counter = JdbcRoundTripCounter.attach(entityManager);
+        int cancelled = mutations.cancelOrdersByMember(memberId, 10);
+        int restocked = mutations.restockCategory(categoryId, 5, 10);
+
+        assertEquals(ORDERS, cancelled);
+        assertEquals(ITEMS, restocked);
+        // 청크마다 식별자 조회 + 수정, 마지막에 빈 식별자 조회 (주문 3청크, 상품 3청크)
+        assertEquals(14, counter.getStatements());
+        assertFalse(entityManager.contains(managed));
+        assertEquals(Long.valueOf(ORDERS), entityManager.createQuery(
+                "select count(o) from Order o where o.orderStatus = :cancel", Long.class)
+                .setParameter("cancel", OrderStatus.CANCEL)
+                .getSingleResult());
+        assertEquals(Integer.valueOf(5), entityManager.find(Item.class, firstItemId).getStockQuantity());
+    }
+
+    // 식별자 사이가 멀어도 있는 행만 청크로 나눈다. (시퀀스 공백, 샤드 식별자)
+    public void testChunkedUpdateSkipsIdGaps() {
+        entityManager.getTransaction().begin();
+        entityManager.createNativeQuery("insert into orders (id, member_id, orderDate, orderStatus)"
+                + " values (1000000000000, ?, current_timestamp, 'ORDER')")
+                .setParameter(1, memberId)
+                .executeUpdate();
+        entityManager.getTransaction().commit();
+
+        JdbcRoundTripCounter counter = JdbcRoundTripCounter.attach(entityManager);
+        int cancelled = new BulkMutations(entityManager).cancelOrdersByMember(memberId, 10);
+
+        assertEquals(ORDERS + 1, cancelled);
+        assertEquals(7, counter.getStatements());
+    }
+
+    public void testChunkedUpdateRequiresNoActiveTransaction() {
+        entityManager.getTransaction().begin();
+        try {
+            new BulkMutations(entityManager).cancelOrdersByMember(memberId, 10);
+            fail();
+        } catch (IllegalStateException expected) {
+        } finally {
+            entityManager.getTransaction().rollback();
+        }
+    }
+
+    public void testDeleteCanceledOrdersRemovesOrderItems() {
+        entityManager.getTransaction().begin();
+        BulkMutations mutations = new BulkMutations(entityManager);
+        mutations.cancelOrdersByMember(memberId);
+        int deleted = mutations.deleteCanceledOrdersBefore(LocalDateTime.now());
+        entityManager.getTransaction().commit();
+
+        assertEquals(ORDERS, deleted);
+        assertEquals(Long.valueOf(0), entityManager.createQuery("select count(oi) from OrderItem oi", Long.class).getSingleResult());
+        assertEquals(Long.valueOf(0), entityManager.createQuery("select count(d) from Delivery d", Long.class).getSingleResult());
+    }
+
+    public void testDeleteCanceledOrdersKeepsSharedDelivery() {
+        entityManager.getTransaction().begin();
+        Order canceled = entityManager.createQuery("select o from Order o order by o.id", Order.class)
+                .setMaxResults(1)
+                .getSingleResult();
+        Member other = new Member();
+        other.setName("lee");
+        entityManager.persist(other);
+        Order kept = new Order();
+        kept.setMember(other);
+        kept.setDelivery(canceled.getDelivery());
+        kept.setOrderDate(LocalDateTime.now().minusDays(1));
+        kept.setOrderStatus(OrderStatus.ORDER);
+        entityManager.persist(kept);
+
+        BulkMutations mutations = new BulkMutations(entityManager);
+        mutations.cancelOrdersByMember(memberId);
+        assertEquals(ORDERS, mutations.deleteCanceledOrdersBefore(LocalDateTime.now()));
+        entityManager.getTransaction().commit();
+        entityManager.clear();
+
+        assertEquals(Long.valueOf(1), entityManager.createQuery("select count(d) from Delivery d", Long.class).getSingleResult());
+        assertNotNull(entityManager.find(Order.class, kept.getId()).getDelivery());
+    }
+}
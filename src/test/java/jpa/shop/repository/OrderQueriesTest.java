@@ -0,0 +1,261 @@
+package jpa.shop.repository;
+
+import jpa.TestPersistence;
+import jpa.shop.domain.Delivery;
+import jpa.shop.domain.Item;
+import jpa.shop.domain.Member;
+import jpa.shop.domain.Order;
+import jpa.shop.domain.OrderItem;
+import jpa.shop.domain.OrderStatus;
+import jpa.shop.dto.OrderLine;
+import jpa.support.JdbcRoundTripCounter;
+import jpa.support.NPlusOneDetector;
+import jpa.support.NPlusOneDetector.Recording;
+import junit.framework.TestCase;
+import org.hibernate.Session;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnitUtil;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 주문 수가 늘어나도 조회 SQL 수가 일정한지 확인한다.
+ */
+public class OrderQueriesTest extends TestCase {
+    private static final int LINES_PER_ORDER = 3;
+
+    private EntityManagerFactory entityManagerFactory;
+
+    @Override
+    protected void setUp() {
+        entityManagerFactory = TestPersistence.createEntityManagerFactory("order_queries_test");
+    }
+
+    @Override
+    protected void tearDown() {
+        entityManagerFactory.close();
+    }
+
+    public void testFindAllFullStatementCountIsConstant() {
+        saveOrders(5);
+        long small = countStatements(queries -> touch(queries.findAllFull()));
+
+        saveOrders(45);
+        long large = countStatements(queries -> touch(queries.findAllFull()));
+
+        assertEquals(1, small);
+        assertEquals(small, large);
+    }
+
+    public void testFindAllWithLinesStatementCountIsConstant() {
+        saveOrders(5);
+        long small = countStatements(queries -> touchLines(queries.findAllWithLines()));
+
+        saveOrders(45);
+        long large = countStatements(queries -> touchLines(queries.findAllWithLines()));
+
+        assertEquals(1, small);
+        assertEquals(small, large);
+    }
+
+    public void testFindRecentUsesBatchFetchForLines() {
+        saveOrders(5);
+        long small = countStatements(queries -> touch(queries.findRecent(0, 100)));
+
+        saveOrders(45);
+        long large = countStatements(queries -> touch(queries.findRecent(0, 100)));
+
+        // 주문 + 회원 + 배송 (페치 조인), 주문상품 (배치), 상품 (배치 또는 2차 캐시)
+        assertTrue(small <= 3);
+        assertEquals(small, large);
+    }
+
+    public void testFindRecentKeepsOrdersWithoutMember() {
+        saveOrders(2);
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        entityManager.getTransaction().begin();
+        Order order = new Order();
+        order.setOrderDate(LocalDateTime.now().plusDays(1));
+        order.setOrderStatus(OrderStatus.ORDER);
+        entityManager.persist(order);
+        entityManager.getTransaction().commit();
+        entityManager.clear();
+
+        List<Order> recent = new OrderQueries(entityManager).findRecent(0, 10);
+        entityManager.close();
+        assertEquals(3, recent.size());
+        assertEquals(order.getId(), recent.get(0).getId());
+        assertNull(recent.get(0).getMember());
+    }
+
+    public void testFindByMemberWithLinesLoadsLinesInOneStatement() {
+        saveOrders(5);
+        long statements = countStatements(queries -> {
+            List<Order> orders = queries.findByMemberWithLines(1L);
+            assertEquals(1, orders.size());
+            touchLines(orders);
+        });
+
+        assertEquals(1, statements);
+    }
+
+    // em.find에 fetchgraph 힌트를 주면 그래프가 무시되었으므로 한 번의 SELECT로 모두 초기화되는지 확인한다.
+    public void testFindFullLoadsGraphInOneStatement() {
+        saveOrders(5);
+        Long orderId = firstOrderId();
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            entityManagerFactory.getCache().evictAll();
+            JdbcRoundTripCounter counter = JdbcRoundTripCounter.attach(entityManager);
+            Order order = new OrderQueries(entityManager).findFull(orderId);
+            assertEquals(1, counter.getStatements());
+            entityManager.close();
+
+            PersistenceUnitUtil util = entityManagerFactory.getPersistenceUnitUtil();
+            assertTrue(util.isLoaded(order, "member"));
+            assertTrue(util.isLoaded(order, "delivery"));
+            assertTrue(util.isLoaded(order, "orderItem"));
+            assertEquals("member0", order.getMember().getName());
+            assertEquals(LINES_PER_ORDER, order.getOrderItem().size());
+            for (OrderItem orderItem : order.getOrderItem()) {
+                assertTrue(util.isLoaded(orderItem, "item"));
+                assertTrue(orderItem.getItem().getName().startsWith("item"));
+            }
+        } finally {
+            if (entityManager.isOpen()) {
+                entityManager.close();
+            }
+        }
+    }
+
+    public void testFindFullReturnsNullForUnknownId() {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            assertNull(new OrderQueries(entityManager).findFull(-1L));
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    // 조회 경로마다 SELECT 수를 고정하고, 같은 모양의 SELECT가 반복되지 않는지 확인한다.
+    public void testReadPathsHaveNoRepeatedSelects() {
+        saveOrders(30);
+        assertSelects(1, queries -> touch(queries.findAllFull()));
+        assertSelects(1, queries -> touchLines(queries.findAllWithLines()));
+        assertSelects(3, queries -> touch(queries.findRecent(0, 20)));
+        // 키셋 페이징은 페치 조인이 없어서 회원, 배송도 배치로 가져온다.
+        assertSelects(5, queries -> touch(queries.findPageByOrderDate(null, 20).getContent()));
+        assertSelects(1, queries -> touchLines(queries.findByMemberWithLines(1L)));
+    }
+
+    public void testFindLinesByMemberReadsDtosWithoutManagedEntities() {
+        saveOrders(5);
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            JdbcRoundTripCounter counter = JdbcRoundTripCounter.attach(entityManager);
+            List<OrderLine> lines = new OrderQueries(entityManager).findLinesByMember(1L);
+
+            assertEquals(LINES_PER_ORDER, lines.size());
+            assertEquals("member0", lines.get(0).getMemberName());
+            assertEquals("item0", lines.get(0).getItemName());
+            assertEquals(1, counter.getStatements());
+            assertEquals(0, entityManager.unwrap(Session.class).getStatistics().getEntityCount());
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    private long countStatements(QueryCallback callback) {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            // 2차 캐시에 남은 상품 때문에 SQL 수가 달라지지 않도록 비운다.
+            entityManagerFactory.getCache().evictAll();
+            JdbcRoundTripCounter counter = JdbcRoundTripCounter.attach(entityManager);
+            callback.run(new OrderQueries(entityManager));
+            return counter.getStatements();
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    private void assertSelects(int expected, QueryCallback callback) {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try (Recording recording = NPlusOneDetector.start()) {
+            entityManagerFactory.getCache().evictAll();
+            callback.run(new OrderQueries(entityManager));
+            recording.assertSelectCount(expected);
+            recording.checkNPlusOne(1);
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    private void touch(List<Order> orders) {
+        for (Order order : orders) {
+            order.getMember().getName();
+            order.getDelivery().getStatus();
+        }
+        touchLines(orders);
+    }
+
+    private void touchLines(List<Order> orders) {
+        for (Order order : orders) {
+            assertEquals(LINES_PER_ORDER, order.getOrderItem().size());
+            for (OrderItem orderItem : order.getOrderItem()) {
+                orderItem.getItem().getName();
+            }
+        }
+    }
+
+    private Long firstOrderId() {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            return entityManager.createQuery("select min(o.id) from Order o", Long.class).getSingleResult();
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    private void saveOrders(int count) {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        entityManager.getTransaction().begin();
+
+        Item[] items = new Item[LINES_PER_ORDER];
+        for (int i = 0; i < items.length; i++) {
+            items[i] = new Item();
+            items[i].setName("item" + i);
+            items[i].setPrice(1000);
+            items[i].setStockQuantity(100);
+            entityManager.persist(items[i]);
+        }
+
+        for (int i = 0; i < count; i++) {
+            Member member = new Member();
+            member.setName("member" + i);
+            entityManager.persist(member);
+
+            Order order = new Order();
+            order.setMember(member);
+            order.setDelivery(new Delivery());
+            order.setOrderDate(LocalDateTime.now());
+            order.setOrderStatus(OrderStatus.ORDER);
+            for (Item item : items) {
+                OrderItem orderItem = new OrderItem();
+                orderItem.setItem(item);
+                orderItem.setOrderPrice(item.getPrice());
+                orderItem.setCount(1);
+                order.addOrderItem(orderItem);
+            }
+            entityManager.persist(order);
+        }
+
+        entityManager.getTransaction().commit();
+        entityManager.close();
+    }
+
+    private interface QueryCallback {
+        void run(OrderQueries queries);
+    }
+}
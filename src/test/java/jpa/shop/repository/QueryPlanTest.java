@@ -0,0 +1,65 @@
+package jpa.shop.repository;
+
+import jpa.TestPersistence;
+import jpa.support.QueryPlanChecker;
+import junit.framework.TestCase;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * 주문, 상품 쿼리가 큰 테이블을 인덱스 없이 전부 읽지 않는지 H2 실행 계획으로 확인한다.
+ *
+ * 테이블마다 ROWS건을 SQL로 넣고 ANALYZE 한 뒤 점검한다.
+ * 전체를 읽는 것이 목적인 쿼리(Order.findAll, MemberOld.findAll, OrderExporter.EXPORT_LINES)는 제외한다.
+ * 조회 쿼리는 @NamedQuery라서 registerNamedQueries로 등록된다.
+ */
+public class QueryPlanTest extends TestCase {
+    private static final int ROWS = 20_000;
+    private static final int MAX_SCANNED_ROWS = 1_000;
+
+    private EntityManagerFactory entityManagerFactory;
+
+    @Override
+    protected void setUp() {
+        entityManagerFactory = TestPersistence.createEntityManagerFactory("query_plan_test");
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        entityManager.getTransaction().begin();
+        String[] inserts = {
+                "insert into member (id, name, city) select x, 'member' || x, 'city' || mod(x, 100) from system_range(1, %d)",
+                "insert into member_old (id, name, age) select x, 'member' || x, mod(x, 60) + 10 from system_range(1, %d)",
+                "insert into delivery (id, city, status) select x, 'city' || mod(x, 100), 'READY' from system_range(1, %d)",
+                "insert into item (id, name, price, stockQuantity, version) select x, 'item' || x, 1000, mod(x, 500), 0 from system_range(1, %d)",
+                "insert into category (id, name, parent_id) select x, 'category' || x, case when x > 100 then mod(x, 100) + 1 end from system_range(1, %d)",
+                "insert into category_item (category_id, item_id) select mod(x, 200) + 1, x from system_range(1, %d)",
+                "insert into orders (id, member_id, delivery_id, orderDate, orderStatus)"
+                        + " select x, mod(x, 2000) + 1, x, dateadd('MINUTE', x, timestamp '2024-01-01 00:00:00'), 'ORDER' from system_range(1, %d)",
+                "insert into order_item (id, order_id, item_id, orderPrice, count) select x, mod(x, 10000) + 1, x, 1000, 1 from system_range(1, %d)",
+        };
+        for (String insert : inserts) {
+            entityManager.createNativeQuery(String.format(insert, ROWS)).executeUpdate();
+        }
+        entityManager.createNativeQuery("analyze").executeUpdate();
+        entityManager.getTransaction().commit();
+        entityManager.close();
+    }
+
+    @Override
+    protected void tearDown() {
+        entityManagerFactory.close();
+    }
+
+    public void testRepositoryQueriesUseIndexes() {
+        new QueryPlanChecker(entityManagerFactory, MAX_SCANNED_ROWS)
+                .register("BulkMutations.CANCEL_ORDERS_BY_MEMBER", BulkMutations.CANCEL_ORDERS_BY_MEMBER)
+                .register("BulkMutations.ORDER_IDS_BY_MEMBER", BulkMutations.ORDER_IDS_BY_MEMBER)
+                .register("BulkMutations.RESTOCK_CATEGORY", BulkMutations.RESTOCK_CATEGORY)
+                .register("BulkMutations.ITEM_IDS_BY_CATEGORY", BulkMutations.ITEM_IDS_BY_CATEGORY)
+                .register("BulkMutations.DELETE_CANCELED_ORDER_ITEMS", BulkMutations.DELETE_CANCELED_ORDER_ITEMS)
+                .register("BulkMutations.DELETE_CANCELED_ORDERS", BulkMutations.DELETE_CANCELED_ORDERS)
+                .registerNamedQueries()
+                .ignore(OrderQueries.FIND_ALL)
+                .ignore("MemberOld.findAll")
+                .assertNoFullScans();
+    }
+}
@@ -0,0 +1,192 @@
+package jpa.shop.shard;
+
+import jpa.shop.domain.Delivery;
+import jpa.shop.domain.Item;
+import jpa.shop.domain.Member;
+import jpa.shop.domain.Order;
+import jpa.shop.domain.OrderItem;
+import jpa.shop.domain.OrderStatus;
+import junit.framework.TestCase;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 회원의 샤드로 주문이 저장되는지, 식별자에 샤드가 담기는지, 여러 샤드 조회 결과가 한 DB에서 정렬한 것과 같은지 확인한다.
+ *
+ * 샤드는 H2 인메모리 DB 4개
+ */
+public class OrderShardsTest extends TestCase {
+    private static final int SHARDS = 4;
+    private static final int MEMBERS = 40;
+    private static final int ORDERS_PER_MEMBER = 3;
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    private OrderShards shards;
+    private List<Item> items;
+    // 주문 식별자 -> 회원 식별자
+    private final Map<Long, Long> orderMembers = new HashMap<>();
+
+    @Override
+    protected void setUp() {
+        shards = OrderShards.inMemory("order_shards_test", SHARDS);
+
+        items = new ArrayList<>();
+        for (long id = 1; id <= 3; id++) {
+            Item item = new Item();
+            item.setId(id);
+            item.setName("item" + id);
+            item.setPrice(1000);
+            item.setStockQuantity(100);
+            // 원본 DB에서 읽은 상품처럼 버전이 있어야 한다.
+            item.setVersion(0L);
+            items.add(item);
+        }
+        shards.replicate(items);
+
+        int sequence = 0;
+        for (long memberId = 1; memberId <= MEMBERS; memberId++) {
+            Member member = new Member();
+            member.setId(memberId);
+            member.setName("member" + memberId);
+            shards.replicate(member);
+            for (int i = 0; i < ORDERS_PER_MEMBER; i++) {
+                Long orderId = shards.save(order(member, START.plusMinutes(sequence++ * 7 % 101)));
+                orderMembers.put(orderId, memberId);
+            }
+        }
+    }
+
+    @Override
+    protected void tearDown() {
+        shards.close();
+    }
+
+    public void testStoresOrdersInMemberShard() {
+        Set<Integer> used = new HashSet<>();
+        for (int shard = 0; shard < SHARDS; shard++) {
+            for (Object[] row : nativeList(shard, "select o.id, o.member_id from orders o", Object[].class)) {
+                long orderId = ((Number) row[0]).longValue();
+                long memberId = ((Number) row[1]).longValue();
+                assertEquals(shard, shards.shardOf(memberId));
+                assertEquals(Long.valueOf(memberId), orderMembers.get(orderId));
+                used.add(shard);
+            }
+        }
+        assertEquals("연속된 회원 식별자가 모든 샤드로 나뉜다.", SHARDS, used.size());
+    }
+
+    public void testIdsCarryShard() {
+        Set<Long> ids = new HashSet<>();
+        for (int shard = 0; shard < SHARDS; shard++) {
+            for (String table : Arrays.asList("orders", "order_item", "delivery")) {
+                for (Number id : nativeList(shard, "select id from " + table, Number.class)) {
+                    assertEquals(table, shard, OrderShards.shardOfId(id.longValue()));
+                    if (table.equals("orders")) {
+                        assertTrue("샤드끼리 주문 식별자가 겹치지 않는다.", ids.add(id.longValue()));
+                    }
+                }
+            }
+        }
+        assertEquals(MEMBERS * ORDERS_PER_MEMBER, ids.size());
+    }
+
+    public void testFindsOrderByIdAndMember() {
+        Long orderId = orderMembers.keySet().iterator().next();
+        Order order = shards.findOrder(orderId);
+        assertEquals(orderMembers.get(orderId), order.getMember().getId());
+        assertEquals(items.size(), order.getOrderItem().size());
+        assertEquals("item1", order.getOrderItem().get(0).getItem().getName());
+
+        List<Order> orders = shards.findByMember(7L);
+        assertEquals(ORDERS_PER_MEMBER, orders.size());
+        for (Order memberOrder : orders) {
+            assertEquals(Long.valueOf(7), memberOrder.getMember().getId());
+        }
+    }
+
+    public void testFindRecentMergesShards() {
+        List<Order> all = new ArrayList<>();
+        for (List<Order> orders : shards.scatter(entityManager ->
+                entityManager.createQuery("select o from Order o join fetch o.member", Order.class).getResultList())) {
+            all.addAll(orders);
+        }
+        assertEquals(MEMBERS * ORDERS_PER_MEMBER, all.size());
+        all.sort(Comparator.comparing(Order::getOrderDate).thenComparing(Order::getId).reversed());
+
+        List<Order> recent = shards.findRecent(25);
+        assertEquals(ids(all.subList(0, 25)), ids(recent));
+        assertEquals(all.get(0).getMember().getName(), recent.get(0).getMember().getName());
+        assertEquals(MEMBERS * ORDERS_PER_MEMBER, shards.findRecent(1_000).size());
+    }
+
+    public void testMergeSorted() {
+        List<List<Integer>> lists = Arrays.asList(Arrays.asList(9, 5, 1), Arrays.<Integer>asList(), Arrays.asList(8, 7, 2), Arrays.asList(6));
+        assertEquals(Arrays.asList(9, 8, 7, 6, 5), OrderShards.mergeSorted(lists, Comparator.<Integer>reverseOrder(), 5));
+        assertEquals(Arrays.asList(9, 8, 7, 6, 5, 2, 1), OrderShards.mergeSorted(lists, Comparator.<Integer>reverseOrder(), 10));
+    }
+
+    public void testRecentFirstPutsMissingOrderDateLast() {
+        Order undated = new Order();
+        undated.setId(1L);
+        Order dated = new Order();
+        dated.setId(2L);
+        dated.setOrderDate(START);
+        List<Order> orders = new ArrayList<>(Arrays.asList(undated, dated));
+        orders.sort(OrderShards.RECENT_FIRST);
+        assertEquals(Arrays.asList(2L, 1L), ids(orders));
+    }
+
+    public void testRejectsMismatchedShards() {
+        try {
+            new OrderShards(Arrays.asList(shards.getShard(1), shards.getShard(0)));
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    private Order order(Member member, LocalDateTime orderDate) {
+        Order order = new Order();
+        order.setMember(member);
+        order.setDelivery(new Delivery());
+        order.setOrderDate(orderDate);
+        order.setOrderStatus(OrderStatus.ORDER);
+        for (Item item : items) {
+            OrderItem orderItem = new OrderItem();
+            orderItem.setItem(item);
+            orderItem.setOrderPrice(item.getPrice());
+            orderItem.setCount(1);
+            order.addOrderItem(orderItem);
+        }
+        return order;
+    }
+
+    private <T> List<T> nativeList(int shard, String sql, Class<T> type) {
+        EntityManager entityManager = shards.getShard(shard).createEntityManager();
+        try {
+            List<T> rows = new ArrayList<>();
+            for (Object row : entityManager.createNativeQuery(sql).getResultList()) {
+                rows.add(type.cast(row));
+            }
+            return rows;
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    private static List<Long> ids(List<Order> orders) {
+        List<Long> ids = new ArrayList<>();
+        for (Order order : orders) {
+            ids.add(order.getId());
+        }
+        return ids;
+    }
+}
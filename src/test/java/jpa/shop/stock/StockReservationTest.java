@@ -0,0 +1,169 @@
+package jpa.shop.stock;
+
+import jpa.TestPersistence;
+import jpa.shop.domain.Item;
+import jpa.shop.stock.StockReservation.Result;
+import junit.framework.TestCase;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+/**
+ * 여러 스레드가 같은 상품을 동시에 주문해도 재고보다 많이 팔리지 않는지 확인한다.
+ */
+public class StockReservationTest extends TestCase {
+    private static final int THREADS = 16;
+    private static final int ORDERS_PER_THREAD = 20;
+    private static final int STOCK = 100;
+
+    private EntityManagerFactory entityManagerFactory;
+    private StockReservation reservation;
+    private Long itemId;
+
+    @Override
+    protected void setUp() {
+        entityManagerFactory = TestPersistence.createEntityManagerFactory("stock_reservation_test");
+        reservation = new StockReservation(entityManagerFactory, 10, 1);
+
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        entityManager.getTransaction().begin();
+        Item item = new Item();
+        item.setName("hot");
+        item.setPrice(1_000);
+        item.setStockQuantity(STOCK);
+        entityManager.persist(item);
+        entityManager.getTransaction().commit();
+        entityManager.close();
+        itemId = item.getId();
+    }
+
+    @Override
+    protected void tearDown() {
+        entityManagerFactory.close();
+    }
+
+    public void testOptimisticNeverOversells() throws Exception {
+        assertNotOversold(run((reservation, id) -> reservation.reserveOptimistic(id, 1)));
+    }
+
+    public void testConditionalNeverOversellsOrAborts() throws Exception {
+        int[] results = run((reservation, id) -> reservation.reserveConditional(id, 1));
+
+        assertNotOversold(results);
+        assertEquals(0, results[Result.ABORTED.ordinal()]);
+        assertEquals(STOCK, results[Result.RESERVED.ordinal()]);
+    }
+
+    public void testConditionalEvictsCachedItem() {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        entityManager.find(Item.class, itemId);
+        entityManager.close();
+        assertTrue(entityManagerFactory.getCache().contains(Item.class, itemId));
+
+        assertEquals(Result.RESERVED, reservation.reserveConditional(itemId, 1));
+
+        assertFalse(entityManagerFactory.getCache().contains(Item.class, itemId));
+        assertEquals(STOCK - 1, remaining());
+    }
+
+    public void testConditionalInvalidatesCachedQueries() {
+        assertEquals(STOCK, cachedStock());
+
+        assertEquals(Result.RESERVED, reservation.reserveConditional(itemId, 1));
+
+        assertEquals(STOCK - 1, cachedStock());
+    }
+
+    public void testNonPositiveQuantityIsRejected() {
+        for (int quantity : new int[]{0, -5}) {
+            try {
+                reservation.reserveOptimistic(itemId, quantity);
+                fail();
+            } catch (IllegalArgumentException expected) {
+            }
+            try {
+                reservation.reserveConditional(itemId, quantity);
+                fail();
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+        assertEquals(STOCK, remaining());
+    }
+
+    public void testUnknownItemIsRejected() {
+        try {
+            reservation.reserveOptimistic(-1L, 1);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            reservation.reserveConditional(-1L, 1);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        assertEquals(0, reservation.getConflicts());
+    }
+
+    // 쿼리 캐시에 올리는 재고 조회
+    private int cachedStock() {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            return entityManager.createQuery("select i.stockQuantity from jpa.shop.domain.Item i where i.id = :id", Integer.class)
+                    .setParameter("id", itemId)
+                    .setHint("org.hibernate.cacheable", true)
+                    .getSingleResult();
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    private void assertNotOversold(int[] results) {
+        int reserved = results[Result.RESERVED.ordinal()];
+        assertTrue(remaining() >= 0);
+        assertEquals(STOCK - reserved, remaining());
+    }
+
+    // 결과별 건수 (Result.ordinal() 순서)
+    private int[] run(BiFunction<StockReservation, Long, Result> reserve) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<int[]>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(() -> {
+                int[] counts = new int[Result.values().length];
+                for (int j = 0; j < ORDERS_PER_THREAD; j++) {
+                    counts[reserve.apply(reservation, itemId).ordinal()]++;
+                }
+                return counts;
+            }));
+        }
+
+        int[] results = new int[Result.values().length];
+        for (Future<int[]> future : futures) {
+            int[] counts = future.get();
+            for (int i = 0; i < counts.length; i++) {
+                results[i] += counts[i];
+            }
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        return results;
+    }
+
+    private int remaining() {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            return entityManager.createQuery("select i.stockQuantity from jpa.shop.domain.Item i where i.id = :id", Integer.class)
+                    .setParameter("id", itemId)
+                    .getSingleResult();
+        } finally {
+            entityManager.close();
+        }
+    }
+}
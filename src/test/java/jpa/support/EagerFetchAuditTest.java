@@ -0,0 +1,101 @@
+package jpa.support;
+
+import jpa.TestPersistence;
+import jpa.support.EagerFetchAudit.Finding;
+import junit.framework.TestCase;
+import org.hibernate.annotations.NotFound;
+import org.hibernate.annotations.NotFoundAction;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+
+import javax.persistence.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 즉시 로딩되는 연관관계를 찾고, 프로젝트의 엔티티에는 없는지 확인한다.
+ */
+public class EagerFetchAuditTest extends TestCase {
+    public void testProjectHasNoEagerAssociations() {
+        // TestPersistence는 fail이라서 하나라도 있으면 기동에 실패한다.
+        EntityManagerFactory entityManagerFactory = TestPersistence.createEntityManagerFactory("eager_fetch_audit_test");
+        try {
+            assertEquals("fail", entityManagerFactory.getProperties().get(EagerFetchAudit.MODE));
+            assertEquals(0, EagerFetchAudit.getFindings(entityManagerFactory).size());
+        } finally {
+            entityManagerFactory.close();
+        }
+    }
+
+    public void testFindsEagerAssociations() {
+        StandardServiceRegistry registry = new StandardServiceRegistryBuilder()
+                .applySetting("hibernate.dialect", "org.hibernate.dialect.H2Dialect")
+                // 매핑 정보만 만들고 DB에 연결하지 않는다.
+                .applySetting("hibernate.temp.use_jdbc_metadata_defaults", "false")
+                .build();
+        List<String> findings = new ArrayList<>();
+        try {
+            for (Finding finding : EagerFetchAudit.audit(new MetadataSources(registry)
+                    .addAnnotatedClass(Owner.class)
+                    .addAnnotatedClass(Target.class)
+                    .buildMetadata())) {
+                findings.add(finding.getProperty());
+            }
+        } finally {
+            StandardServiceRegistryBuilder.destroy(registry);
+        }
+
+        assertEquals(5, findings.size());
+        assertTrue(findings.contains(Owner.class.getName() + ".defaultTarget"));
+        assertTrue(findings.contains(Owner.class.getName() + ".eagerTargets"));
+        assertTrue(findings.contains(Owner.class.getName() + ".ignoreNotFound"));
+        assertTrue(findings.contains(Owner.class.getName() + ".embedded.embeddedTarget"));
+        assertTrue(findings.contains(Target.class.getName() + ".inverse"));
+    }
+
+    @Entity(name = "AuditOwner")
+    public static class Owner {
+        @Id
+        private Long id;
+
+        @ManyToOne
+        private Target defaultTarget;
+
+        @ManyToOne(fetch = FetchType.LAZY)
+        private Target lazyTarget;
+
+        @ManyToOne(fetch = FetchType.LAZY)
+        @NotFound(action = NotFoundAction.IGNORE)
+        private Target ignoreNotFound;
+
+        @OneToOne(fetch = FetchType.LAZY)
+        private Target oneToOne;
+
+        @OneToMany(fetch = FetchType.EAGER)
+        @JoinColumn(name = "eager_owner_id")
+        private List<Target> eagerTargets;
+
+        @OneToMany
+        @JoinColumn(name = "lazy_owner_id")
+        private List<Target> lazyTargets;
+
+        @Embedded
+        private Holder embedded;
+    }
+
+    @Embeddable
+    public static class Holder {
+        @ManyToOne
+        private Target embeddedTarget;
+    }
+
+    @Entity(name = "AuditTarget")
+    public static class Target {
+        @Id
+        private Long id;
+
+        @OneToOne(mappedBy = "oneToOne", fetch = FetchType.LAZY)
+        private Owner inverse;
+    }
+}
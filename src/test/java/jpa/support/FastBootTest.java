@@ -0,0 +1,55 @@
+package jpa.support;
+
+import jpa.TestPersistence;
+import junit.framework.TestCase;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.metamodel.ManagedType;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 빠른 기동(스캔 없이 등록한 클래스만, validate)이 스캔해서 만든 것과 같은 엔티티로 기동하는지 확인한다.
+ */
+public class FastBootTest extends TestCase {
+    private static final String DATABASE = "fast_boot_test";
+
+    private EntityManagerFactory scanned;
+
+    @Override
+    protected void setUp() {
+        // 스키마를 만들고, 닫을 때까지 인메모리 DB를 유지한다.
+        scanned = TestPersistence.createEntityManagerFactory(DATABASE);
+    }
+
+    @Override
+    protected void tearDown() {
+        scanned.close();
+    }
+
+    public void testManagedClassesMatchScannedEntities() {
+        // 같은 DB에 스키마 검증만 하고 기동한다. 풀 이름은 달라야 한다.
+        Map<String, Object> properties = new HashMap<>(FastBoot.fastBootProperties());
+        properties.put("javax.persistence.jdbc.url", "jdbc:h2:mem:" + DATABASE);
+        EntityManagerFactory fast = TestPersistence.createEntityManagerFactory(DATABASE + "_fast", properties);
+        try {
+            assertEquals(managedTypes(scanned), managedTypes(fast));
+            EntityManager entityManager = fast.createEntityManager();
+            assertEquals(0L, (long) entityManager.createQuery("select count(m) from Member m", Long.class).getSingleResult());
+            entityManager.close();
+        } finally {
+            fast.close();
+        }
+    }
+
+    private static Set<Class<?>> managedTypes(EntityManagerFactory entityManagerFactory) {
+        Set<Class<?>> types = new HashSet<>();
+        for (ManagedType<?> type : entityManagerFactory.getMetamodel().getManagedTypes()) {
+            types.add(type.getJavaType());
+        }
+        return types;
+    }
+}
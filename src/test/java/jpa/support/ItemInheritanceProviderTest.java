@@ -0,0 +1,55 @@
+package jpa.support;
+
+import junit.framework.TestCase;
+import org.hibernate.cfg.AvailableSettings;
+
+import javax.persistence.EntityManagerFactory;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * provider로 ItemInheritanceProvider를 적은 영속성 유닛만 가져가는지 확인한다.
+ */
+public class ItemInheritanceProviderTest extends TestCase {
+    private static final String OTHER_PROVIDER_XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<persistence version=\"2.2\" xmlns=\"http://xmlns.jcp.org/xml/ns/persistence\">\n"
+            + "    <persistence-unit name=\"other\">\n"
+            + "        <provider>org.eclipse.persistence.jpa.PersistenceProvider</provider>\n"
+            + "    </persistence-unit>\n"
+            + "</persistence>\n";
+
+    public void testIgnoresUnitOfOtherProvider() throws IOException {
+        Path root = Files.createTempDirectory("other_provider");
+        Path persistenceXml = Files.createDirectories(root.resolve("META-INF")).resolve("persistence.xml");
+        Files.write(persistenceXml, OTHER_PROVIDER_XML.getBytes(StandardCharsets.UTF_8));
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{root.toUri().toURL()}, getClass().getClassLoader())) {
+            Map<String, Object> properties = new HashMap<>();
+            properties.put(AvailableSettings.CLASSLOADERS, Collections.singletonList(classLoader));
+
+            assertNull(new ItemInheritanceProvider().createEntityManagerFactory("other", properties));
+        } finally {
+            Files.delete(persistenceXml);
+            Files.delete(persistenceXml.getParent());
+            Files.delete(root);
+        }
+    }
+
+    // 속성으로 이 클래스를 provider로 지정해도 처리한다.
+    public void testClaimsUnitWhenRequestedByName() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("javax.persistence.provider", ItemInheritanceProvider.class.getName());
+        properties.put("javax.persistence.jdbc.url", "jdbc:h2:mem:item_inheritance_provider_test");
+        properties.put("hibernate.hikari.poolName", "item_inheritance_provider_test");
+        properties.put("hibernate.show_sql", "false");
+        EntityManagerFactory entityManagerFactory = new ItemInheritanceProvider().createEntityManagerFactory("hello", properties);
+        assertNotNull(entityManagerFactory);
+        entityManagerFactory.close();
+    }
+}
@@ -0,0 +1,157 @@
+package jpa.support;
+
+import jpa.TestPersistence;
+import jpa.shop.domain.Item;
+import jpa.shop.domain.Order;
+import jpa.shop.domain.OrderStatus;
+import jpa.shop.repository.ItemQueries;
+import jpa.shop.repository.OrderQueries;
+import junit.framework.TestCase;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 키셋 페이징으로 끝까지 넘겼을 때 누락이나 중복 없이 (정렬키, id) 순서대로 나오는지 확인한다.
+ */
+public class KeysetPaginatorTest extends TestCase {
+    private static final int PAGE_SIZE = 7;
+
+    private EntityManagerFactory entityManagerFactory;
+    private EntityManager entityManager;
+
+    @Override
+    protected void setUp() {
+        entityManagerFactory = TestPersistence.createEntityManagerFactory("keyset_paginator_test");
+        entityManager = entityManagerFactory.createEntityManager();
+    }
+
+    @Override
+    protected void tearDown() {
+        entityManager.close();
+        entityManagerFactory.close();
+    }
+
+    public void testOrderPagesFollowOrderDateThenId() {
+        // 주문일이 같은 주문이 여러 건이어도 id로 순서가 정해져야 한다.
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 0, 0);
+        entityManager.getTransaction().begin();
+        for (int i = 0; i < 50; i++) {
+            Order order = new Order();
+            order.setOrderDate(base.plusDays((50 - i) / 4));
+            order.setOrderStatus(OrderStatus.ORDER);
+            entityManager.persist(order);
+        }
+        entityManager.getTransaction().commit();
+        entityManager.clear();
+
+        List<Order> expected = entityManager.createQuery(
+                "select o from Order o order by o.orderDate, o.id", Order.class).getResultList();
+
+        OrderQueries queries = new OrderQueries(entityManager);
+        List<Long> actual = new ArrayList<>();
+        int pages = 0;
+        KeysetPage<Order> page = queries.findPageByOrderDate(null, PAGE_SIZE);
+        while (true) {
+            pages++;
+            assertTrue(page.getContent().size() <= PAGE_SIZE);
+            for (Order order : page.getContent()) {
+                actual.add(order.getId());
+            }
+            if (!page.hasNext()) {
+                break;
+            }
+            page = queries.findPageByOrderDate(page.getNextToken(), PAGE_SIZE);
+        }
+
+        assertEquals(ids(expected), actual);
+        assertEquals(8, pages);
+    }
+
+    public void testItemPagesFollowNameThenId() {
+        entityManager.getTransaction().begin();
+        for (int i = 0; i < 20; i++) {
+            Item item = new Item();
+            item.setName("item" + (i % 3));
+            item.setPrice(1000);
+            item.setStockQuantity(10);
+            entityManager.persist(item);
+        }
+        entityManager.getTransaction().commit();
+        entityManager.clear();
+
+        List<Item> expected = entityManager.createQuery(
+                "select i from jpa.shop.domain.Item i order by i.name, i.id", Item.class).getResultList();
+
+        ItemQueries queries = new ItemQueries(entityManager);
+        List<Long> actual = new ArrayList<>();
+        String token = null;
+        do {
+            KeysetPage<Item> page = queries.findPageByName(token, PAGE_SIZE);
+            for (Item item : page.getContent()) {
+                actual.add(item.getId());
+            }
+            token = page.getNextToken();
+        } while (token != null);
+
+        assertEquals(ids(expected), actual);
+    }
+
+    public void testLastFullPageHasNoNextToken() {
+        entityManager.getTransaction().begin();
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            Order order = new Order();
+            order.setOrderDate(LocalDateTime.now());
+            entityManager.persist(order);
+        }
+        entityManager.getTransaction().commit();
+
+        KeysetPage<Order> page = new OrderQueries(entityManager).findPageByOrderDate(null, PAGE_SIZE);
+
+        assertEquals(PAGE_SIZE, page.getContent().size());
+        assertFalse(page.hasNext());
+    }
+
+    public void testInvalidTokenIsRejected() {
+        try {
+            new OrderQueries(entityManager).findPageByOrderDate("not-a-token", PAGE_SIZE);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    // null인 정렬키는 비교 조건에서 빠져서 조용히 누락되므로 nullable 컬럼은 처음부터 거부한다.
+    public void testNullableSortAttributeIsRejected() {
+        try {
+            new KeysetPaginator<>(entityManager, Order.class, "orderStatus");
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    public void testNotNullSortKeyIsEnforced() {
+        entityManager.getTransaction().begin();
+        Order order = new Order();
+        order.setOrderStatus(OrderStatus.ORDER);
+        try {
+            entityManager.persist(order);
+            entityManager.flush();
+            fail();
+        } catch (PersistenceException expected) {
+        } finally {
+            entityManager.getTransaction().rollback();
+        }
+    }
+
+    private static List<Long> ids(List<?> entities) {
+        List<Long> ids = new ArrayList<>();
+        for (Object entity : entities) {
+            ids.add(entity instanceof Order ? ((Order) entity).getId() : ((Item) entity).getId());
+        }
+        return ids;
+    }
+}
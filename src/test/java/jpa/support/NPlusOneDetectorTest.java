@@ -0,0 +1,132 @@
+package jpa.support;
+
+import jpa.TestPersistence;
+import jpa.shop.domain.Member;
+import jpa.shop.domain.Order;
+import jpa.shop.domain.OrderStatus;
+import jpa.support.NPlusOneDetector.NPlusOneException;
+import jpa.support.NPlusOneDetector.Recording;
+import junit.framework.TestCase;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 식별자만 다른 SELECT를 같은 모양으로 묶어서 N+1을 찾는지 확인한다.
+ */
+public class NPlusOneDetectorTest extends TestCase {
+    private static final int ORDERS = 20;
+
+    private EntityManagerFactory entityManagerFactory;
+
+    @Override
+    protected void setUp() {
+        // 배치 조회가 N+1을 가리지 않도록 끈다. (페치 조인을 빠뜨린 경우)
+        entityManagerFactory = TestPersistence.createEntityManagerFactory("n_plus_one_test",
+                Collections.singletonMap("hibernate.default_batch_fetch_size", "0"));
+        saveOrders();
+    }
+
+    @Override
+    protected void tearDown() {
+        entityManagerFactory.close();
+    }
+
+    public void testShapeIgnoresLiteralsCommentsAndInListSize() {
+        assertEquals(
+                NPlusOneDetector.shapeOf("/* load Member */ select m.id from member m where m.id in (?, ?, ?)"),
+                NPlusOneDetector.shapeOf("select m.id from member m where m.id in (?)"));
+        assertEquals(
+                NPlusOneDetector.shapeOf("select o0_.id from orders o0_ where o0_.member_id=1 and o0_.status='ORDER'"),
+                NPlusOneDetector.shapeOf("select o0_.id from orders o0_ where o0_.member_id=42 and o0_.status='CANCEL'"));
+    }
+
+    public void testDetectsLazyLoadStorm() {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try (Recording recording = NPlusOneDetector.start()) {
+            List<Order> orders = entityManager.createQuery("select o from Order o", Order.class).getResultList();
+            for (Order order : orders) {
+                order.getMember().getName();
+            }
+
+            recording.assertSelectCount(1 + ORDERS);
+            try {
+                recording.checkNPlusOne(10);
+                fail();
+            } catch (NPlusOneException e) {
+                assertEquals(1, e.getViolations().size());
+                assertEquals(ORDERS, e.getViolations().get(0).getCount());
+            }
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    public void testFetchJoinPassesCheck() {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try (Recording recording = NPlusOneDetector.start()) {
+            List<Order> orders = entityManager.createQuery("select o from Order o join fetch o.member", Order.class).getResultList();
+            for (Order order : orders) {
+                order.getMember().getName();
+            }
+
+            recording.assertSelectCount(1);
+            recording.checkNPlusOne(1);
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    public void testAssertSelectCountListsRepeatedShapes() {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try (Recording recording = NPlusOneDetector.start()) {
+            for (Order order : entityManager.createQuery("select o from Order o", Order.class).getResultList()) {
+                order.getMember().getName();
+            }
+
+            try {
+                recording.assertSelectCount(1);
+                fail();
+            } catch (AssertionError e) {
+                assertTrue(e.getMessage(), e.getMessage().contains(ORDERS + "x select"));
+            }
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    public void testRecordsOnlyCurrentThread() throws Exception {
+        try (Recording recording = NPlusOneDetector.start()) {
+            Thread other = new Thread(() -> {
+                EntityManager otherEntityManager = entityManagerFactory.createEntityManager();
+                otherEntityManager.createQuery("select m from Member m", Member.class).getResultList();
+                otherEntityManager.close();
+            });
+            other.start();
+            other.join();
+
+            recording.assertSelectCount(0);
+        }
+    }
+
+    private void saveOrders() {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        entityManager.getTransaction().begin();
+        for (int i = 0; i < ORDERS; i++) {
+            Member member = new Member();
+            member.setName("member" + i);
+            entityManager.persist(member);
+
+            Order order = new Order();
+            order.setMember(member);
+            order.setOrderDate(LocalDateTime.now());
+            order.setOrderStatus(OrderStatus.ORDER);
+            entityManager.persist(order);
+        }
+        entityManager.getTransaction().commit();
+        entityManager.close();
+    }
+}
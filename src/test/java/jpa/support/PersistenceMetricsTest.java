@@ -0,0 +1,158 @@
+package jpa.support;
+
+import jpa.TestPersistence;
+import jpa.shop.domain.Item;
+import jpa.support.PersistenceMetrics.EntityMetrics;
+import jpa.support.PersistenceMetrics.QueryMetrics;
+import junit.framework.TestCase;
+
+import javax.management.ObjectName;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Tuple;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 엔티티별, JPQL별 통계와 flush, 변경 감지 시간, 느린 쿼리 로그가 집계되는지 확인한다.
+ */
+public class PersistenceMetricsTest extends TestCase {
+    private static final String DATABASE = "persistence_metrics_test";
+    private static final String FIND_BY_NAME = "select i from jpa.shop.domain.Item i where i.name = :name";
+
+    private EntityManagerFactory entityManagerFactory;
+    private PersistenceMetrics metrics;
+
+    @Override
+    protected void setUp() {
+        Map<String, Object> properties = new HashMap<>();
+        // 모든 쿼리를 느린 쿼리로 기록한다.
+        properties.put(InstrumentedStatistics.SLOW_QUERY_THRESHOLD, "0");
+        entityManagerFactory = TestPersistence.createEntityManagerFactory(DATABASE, properties);
+        metrics = PersistenceMetrics.of(entityManagerFactory);
+    }
+
+    @Override
+    protected void tearDown() {
+        if (entityManagerFactory.isOpen()) {
+            entityManagerFactory.close();
+        }
+    }
+
+    public void testCountsEntitiesQueriesAndFlushes() {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        entityManager.getTransaction().begin();
+        for (int i = 0; i < 10; i++) {
+            Item item = new Item();
+            item.setName("item" + i);
+            entityManager.persist(item);
+        }
+        entityManager.flush();
+        Item item = entityManager.createQuery(FIND_BY_NAME, Item.class)
+                .setParameter("name", "item1")
+                .getSingleResult();
+        item.setPrice(2_000);
+        entityManager.createQuery(FIND_BY_NAME, Item.class)
+                .setParameter("name", "item2")
+                .getSingleResult();
+        entityManager.getTransaction().commit();
+        entityManager.close();
+
+        EntityMetrics items = entity(Item.class.getName());
+        assertEquals(10, items.getInserts());
+        assertEquals(1, items.getUpdates());
+
+        QueryMetrics query = query(FIND_BY_NAME);
+        assertEquals(2, query.getExecutions());
+        assertEquals(2, query.getRows());
+        assertEquals(2, metrics.getSlowQueryCount());
+
+        // 명시적 flush, 쿼리마다 자동 flush, 커밋
+        assertEquals(4, metrics.getFlushCount());
+        assertTrue(metrics.getFlushMaxMicros() > 0);
+        // flush마다 영속성 컨텍스트의 상품 10건
+        assertEquals(40, metrics.getDirtyCheckCount());
+
+        metrics.clear();
+        assertEquals(0, metrics.getFlushCount());
+        assertEquals(0, metrics.getSlowQueryCount());
+    }
+
+    public void testCacheHitRatio() {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        entityManager.getTransaction().begin();
+        Item item = new Item();
+        item.setName("cached");
+        entityManager.persist(item);
+        entityManager.getTransaction().commit();
+        entityManager.close();
+        entityManagerFactory.getCache().evictAll();
+
+        for (int i = 0; i < 4; i++) {
+            entityManager = entityManagerFactory.createEntityManager();
+            entityManager.find(Item.class, item.getId());
+            entityManager.close();
+        }
+
+        // 첫 조회만 실패
+        assertEquals(0.75, metrics.getSecondLevelCacheHitRatio(), 0.001);
+    }
+
+    public void testRegistersMBean() throws Exception {
+        ObjectName name = new ObjectName("jpa:type=PersistenceMetrics,name=" + ObjectName.quote(DATABASE));
+        assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+        assertEquals(0L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "SlowQueryCount"));
+
+        entityManagerFactory.close();
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    }
+
+    // 기동할 때 번역한 Named 쿼리, 네이티브 쿼리, 실행하지 않은 번역은 적중률에 들어가지 않는다.
+    public void testCountsQueryPlanCompiles() {
+        long bootCompiles = metrics.getQueryPlanCompileCount();
+        assertTrue(bootCompiles > 0);
+        new QueryPlanChecker(entityManagerFactory, Long.MAX_VALUE)
+                .register("FIND_BY_NAME", FIND_BY_NAME)
+                .assertNoFullScans();
+        assertEquals(bootCompiles + 1, metrics.getQueryPlanCompileCount());
+
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        // 리터럴이 바뀔 때마다 다른 JPQL이라 SQL로 다시 번역한다.
+        for (int i = 0; i < 5; i++) {
+            entityManager.createQuery("select i from jpa.shop.domain.Item i where i.stockQuantity < " + i, Item.class)
+                    .getResultList();
+            entityManager.createNativeQuery("select count(*) from item").getSingleResult();
+        }
+        assertEquals(bootCompiles + 6, metrics.getQueryPlanCompileCount());
+
+        // Named 쿼리는 기동할 때 번역해둔 계획을 다시 쓴다.
+        for (int i = 0; i < 5; i++) {
+            entityManager.createNamedQuery("jpa.shop.domain.Item.findStockBelow", Tuple.class)
+                    .setParameter("threshold", i)
+                    .getResultList();
+        }
+        entityManager.close();
+        assertEquals(bootCompiles + 6, metrics.getQueryPlanCompileCount());
+        assertEquals(10, metrics.getJpqlExecutionCount());
+        assertEquals(0.5, metrics.getQueryPlanCacheHitRatio(), 0.001);
+    }
+
+    private EntityMetrics entity(String name) {
+        for (EntityMetrics entity : metrics.getEntities()) {
+            if (entity.getName().equals(name)) {
+                return entity;
+            }
+        }
+        throw new AssertionError(name);
+    }
+
+    private QueryMetrics query(String query) {
+        for (QueryMetrics metrics : metrics.getQueries()) {
+            if (metrics.getQuery().equals(query)) {
+                return metrics;
+            }
+        }
+        throw new AssertionError(query);
+    }
+}
@@ -0,0 +1,61 @@
+package jpa.support;
+
+import jpa.TestPersistence;
+import jpa.support.QueryPlanChecker.Violation;
+import junit.framework.TestCase;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+
+/**
+ * 인덱스가 없는 조건만 전체 읽기로 잡고, 작은 테이블은 봐주는지 확인한다.
+ */
+public class QueryPlanCheckerTest extends TestCase {
+    private static final int MEMBERS = 5_000;
+    // App의 회원 조회
+    private static final String BY_AGE = "select m from MemberOld m where m.age > 18";
+    private static final String BY_ROLE = "select m from MemberOld m where m.roleType = :roleType";
+
+    private EntityManagerFactory entityManagerFactory;
+
+    @Override
+    protected void setUp() {
+        entityManagerFactory = TestPersistence.createEntityManagerFactory("query_plan_checker_test");
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        entityManager.getTransaction().begin();
+        entityManager.createNativeQuery("insert into member_old (id, name, age, roleType)"
+                + " select x, 'member' || x, mod(x, 100), 'USER' from system_range(1, " + MEMBERS + ")").executeUpdate();
+        entityManager.createNativeQuery("analyze").executeUpdate();
+        entityManager.getTransaction().commit();
+        entityManager.close();
+    }
+
+    @Override
+    protected void tearDown() {
+        entityManagerFactory.close();
+    }
+
+    public void testIndexedConditionPasses() {
+        new QueryPlanChecker(entityManagerFactory, MEMBERS - 1)
+                .register("age", BY_AGE)
+                .assertNoFullScans();
+    }
+
+    public void testUnindexedConditionIsFullScan() {
+        List<Violation> violations = new QueryPlanChecker(entityManagerFactory, MEMBERS - 1)
+                .register("age", BY_AGE)
+                .register("roleType", BY_ROLE)
+                .check();
+        assertEquals(1, violations.size());
+        assertEquals("roleType", violations.get(0).getQuery());
+        assertEquals("PUBLIC.MEMBER_OLD", violations.get(0).getTable());
+        assertEquals(MEMBERS, violations.get(0).getRows());
+    }
+
+    public void testSmallTablesMayBeScanned() {
+        new QueryPlanChecker(entityManagerFactory, MEMBERS)
+                .register("roleType", BY_ROLE)
+                .assertNoFullScans();
+    }
+}
@@ -0,0 +1,196 @@
+package jpa.support;
+
+import jpa.TestPersistence;
+import jpa.shop.domain.Member;
+import jpa.support.ReplicaRoutingDataSource.LagProbe;
+import junit.framework.TestCase;
+import org.h2.jdbcx.JdbcDataSource;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * H2 인메모리 DB 두 개(원본, 복제본)로 읽기 전용 작업 단위만 복제본으로 가고 쓰기는 복제본에 들어가지 않는지 확인한다.
+ * 복제는 원본을 SCRIPT로 내보내서 복제본에서 다시 실행하는 것으로 흉내낸다. (replicate)
+ */
+public class ReplicaRoutingDataSourceTest extends TestCase {
+    private static final String PRIMARY = "jdbc:h2:mem:replica_routing_primary";
+    private static final String REPLICA = "jdbc:h2:mem:replica_routing_replica";
+    private static final Duration MAX_LAG = Duration.ofSeconds(1);
+
+    private final AtomicReference<Duration> lag = new AtomicReference<>(Duration.ZERO);
+    private ReplicaRoutingDataSource dataSource;
+    private EntityManagerFactory entityManagerFactory;
+    private UnitOfWorkExecutor executor;
+
+    @Override
+    protected void setUp() throws Exception {
+        // 확인 주기 0: 매번 지연을 확인한다.
+        dataSource = ReplicaRoutingDataSource.hikari(PRIMARY, Collections.singletonList(REPLICA), 4,
+                replica -> lag.get(), MAX_LAG, Duration.ZERO);
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("hibernate.connection.provider_class",
+                "org.hibernate.engine.jdbc.connections.internal.DatasourceConnectionProviderImpl");
+        properties.put("hibernate.connection.datasource", dataSource);
+        // 2차 캐시에서 읽으면 어느 DB에서 읽었는지 알 수 없다.
+        properties.put("hibernate.cache.use_second_level_cache", "false");
+        properties.put("hibernate.cache.use_query_cache", "false");
+        entityManagerFactory = TestPersistence.createEntityManagerFactory("replica_routing_test", properties);
+        executor = UnitOfWorkExecutor.virtualThreads(entityManagerFactory, 4);
+
+        // 스키마는 원본에만 만들어지므로 복제본으로 옮긴다.
+        replicate();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        executor.close();
+        entityManagerFactory.close();
+        dataSource.close();
+    }
+
+    public void testWritesGoToPrimaryOnly() throws Exception {
+        saveMember("member1");
+
+        assertEquals(1, countMembers(PRIMARY));
+        assertEquals(0, countMembers(REPLICA));
+        assertEquals(0, dataSource.getReplicaConnections());
+    }
+
+    public void testReadOnlyUnitReadsReplica() throws Exception {
+        saveMember("member1");
+        replicate();
+        saveMember("member2");
+
+        // 복제본은 member2를 아직 받지 못했다.
+        assertEquals(1L, executor.inReadOnlyTransaction(this::countMembers).longValue());
+        assertEquals(2L, executor.inTransaction(this::countMembers).longValue());
+        assertEquals(1, dataSource.getReplicaConnections());
+    }
+
+    public void testWriteInReadOnlyUnitFails() throws Exception {
+        saveMember("member1");
+        replicate();
+
+        try {
+            executor.inReadOnlyTransaction(entityManager -> {
+                Member member = new Member();
+                member.setName("member2");
+                entityManager.persist(member);
+                entityManager.flush();
+                return null;
+            });
+            fail();
+        } catch (PersistenceException expected) {
+        }
+        try {
+            executor.inReadOnlyTransaction(entityManager -> entityManager
+                    .createQuery("update Member m set m.name = 'changed'")
+                    .executeUpdate());
+            fail();
+        } catch (PersistenceException expected) {
+        }
+
+        assertEquals(1, countMembers(PRIMARY));
+        assertEquals(1, countMembers(REPLICA));
+        assertEquals("member1", executor.inReadOnlyTransaction(entityManager -> entityManager
+                .createQuery("select m.name from Member m", String.class)
+                .getSingleResult()));
+    }
+
+    public void testLaggingReplicaFallsBackToPrimary() throws Exception {
+        saveMember("member1");
+        replicate();
+        saveMember("member2");
+
+        lag.set(MAX_LAG.plusSeconds(1));
+        assertEquals(2L, executor.inReadOnlyTransaction(this::countMembers).longValue());
+        assertEquals(1, dataSource.getFallbacks());
+        assertEquals(0, dataSource.getReplicaConnections());
+
+        lag.set(Duration.ZERO);
+        assertEquals(1L, executor.inReadOnlyTransaction(this::countMembers).longValue());
+        assertEquals(1, dataSource.getReplicaConnections());
+    }
+
+    public void testHeartbeatProbe() throws Exception {
+        LagProbe probe = LagProbe.heartbeat("heartbeat");
+        try (Connection connection = DriverManager.getConnection(PRIMARY, "sa", "");
+             Statement statement = connection.createStatement()) {
+            statement.execute("create table heartbeat (id int primary key, beat timestamp)");
+        }
+        LagProbe.writeHeartbeat(h2(PRIMARY), "heartbeat");
+
+        // 하트비트를 받지 못한 복제본은 사용하지 않는다.
+        try {
+            probe.lag(h2(REPLICA));
+            fail();
+        } catch (SQLException expected) {
+        }
+
+        replicate();
+        assertTrue(probe.lag(h2(REPLICA)).compareTo(MAX_LAG) < 0);
+    }
+
+    private void saveMember(String name) {
+        executor.inTransaction(entityManager -> {
+            Member member = new Member();
+            member.setName(name);
+            entityManager.persist(member);
+            return member.getId();
+        });
+    }
+
+    private Long countMembers(EntityManager entityManager) {
+        return entityManager.createQuery("select count(m) from Member m", Long.class).getSingleResult();
+    }
+
+    private static int countMembers(String url) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(url, "sa", "");
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select count(*) from member")) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+
+    private static JdbcDataSource h2(String url) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL(url);
+        dataSource.setUser("sa");
+        return dataSource;
+    }
+
+    // 원본의 스키마와 데이터를 그대로 복제본에 옮긴다.
+    private static void replicate() throws SQLException {
+        List<String> script = new ArrayList<>();
+        try (Connection primary = DriverManager.getConnection(PRIMARY, "sa", "");
+             Statement statement = primary.createStatement();
+             ResultSet resultSet = statement.executeQuery("script")) {
+            while (resultSet.next()) {
+                script.add(resultSet.getString(1));
+            }
+        }
+        try (Connection replica = DriverManager.getConnection(REPLICA, "sa", "");
+             Statement statement = replica.createStatement()) {
+            statement.execute("drop all objects");
+            for (String sql : script) {
+                statement.execute(sql);
+            }
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package jpa.support;
+
+import jpa.TestPersistence;
+import jpa.shop.domain.Item;
+import junit.framework.TestCase;
+import org.hibernate.Session;
+
+import javax.persistence.EntityManagerFactory;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 가상 스레드 작업 단위가 각자 트랜잭션으로 커밋/롤백되고, 동시 트랜잭션 수가 풀 크기를 넘지 않는지 확인한다.
+ */
+public class UnitOfWorkExecutorTest extends TestCase {
+    private static final int POOL_SIZE = 4;
+    private static final int TASKS = 1_000;
+
+    private EntityManagerFactory entityManagerFactory;
+
+    @Override
+    protected void setUp() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("hibernate.hikari.maximumPoolSize", String.valueOf(POOL_SIZE));
+        properties.put("hibernate.hikari.minimumIdle", String.valueOf(POOL_SIZE));
+        entityManagerFactory = TestPersistence.createEntityManagerFactory("unit_of_work_test", properties);
+    }
+
+    @Override
+    protected void tearDown() {
+        entityManagerFactory.close();
+    }
+
+    // 하이카리 풀이 아니어도(하이버네이트 기본 풀, 외부 DataSource) 실패하지 않는다.
+    public void testPoolSizeFallsBackWithoutHikari() {
+        Map<String, Object> properties = new HashMap<>();
+        assertEquals(UnitOfWorkExecutor.DEFAULT_MAX_CONCURRENT_UNITS, UnitOfWorkExecutor.poolSize(properties));
+        properties.put("hibernate.connection.pool_size", "3");
+        assertEquals(3, UnitOfWorkExecutor.poolSize(properties));
+        properties.put("hibernate.hikari.maximumPoolSize", "7");
+        assertEquals(7, UnitOfWorkExecutor.poolSize(properties));
+    }
+
+    public void testPlatformThreadsTakeExplicitPermits() {
+        try (UnitOfWorkExecutor executor = UnitOfWorkExecutor.platformThreads(entityManagerFactory, 8, 2)) {
+            assertEquals(2, executor.getMaxConcurrentUnits());
+        }
+    }
+
+    public void testEachTaskCommitsWithinPoolSize() throws Exception {
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        List<Future<Long>> futures = new ArrayList<>();
+        try (UnitOfWorkExecutor executor = UnitOfWorkExecutor.virtualThreads(entityManagerFactory)) {
+            assertEquals(POOL_SIZE, executor.getMaxConcurrentUnits());
+            for (int i = 0; i < TASKS; i++) {
+                int index = i;
+                futures.add(executor.submit(entityManager -> {
+                    maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                    try {
+                        Item item = new Item();
+                        item.setName("item" + index);
+                        entityManager.persist(item);
+                        Thread.sleep(1);
+                        return item.getId();
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    } finally {
+                        active.decrementAndGet();
+                    }
+                }));
+            }
+            for (Future<Long> future : futures) {
+                assertNotNull(future.get());
+            }
+        }
+
+        assertTrue("maxActive=" + maxActive.get(), maxActive.get() <= POOL_SIZE);
+        assertEquals(TASKS, countItems());
+    }
+
+    public void testFailedTaskRollsBack() throws Exception {
+        try (UnitOfWorkExecutor executor = UnitOfWorkExecutor.virtualThreads(entityManagerFactory)) {
+            Future<Long> future = executor.submit(entityManager -> {
+                Item item = new Item();
+                item.setName("item");
+                entityManager.persist(item);
+                throw new IllegalStateException("rollback");
+            });
+            try {
+                future.get();
+                fail();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+        }
+
+        assertEquals(0, countItems());
+    }
+
+    // 커넥션이 끊겨서 롤백이 실패해도 허가를 돌려줘야 다음 작업 단위가 실행된다.
+    public void testFailedRollbackReleasesPermit() throws Exception {
+        try (UnitOfWorkExecutor executor = UnitOfWorkExecutor.virtualThreads(entityManagerFactory, 1)) {
+            for (int i = 0; i < 2; i++) {
+                Future<Object> future = executor.submit(entityManager -> {
+                    entityManager.unwrap(Session.class).doWork(Connection::close);
+                    throw new IllegalStateException("broken connection");
+                });
+                try {
+                    future.get(5, TimeUnit.SECONDS);
+                    fail();
+                } catch (ExecutionException expected) {
+                }
+            }
+
+            assertEquals(Integer.valueOf(1), executor.submit(entityManager -> 1).get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    public void testDetectsPinnedVirtualThread() throws Exception {
+        Object lock = new Object();
+        try (VirtualThreadPinning pinning = new VirtualThreadPinning(Duration.ofMillis(10))) {
+            Thread.ofVirtual().start(() -> {
+                synchronized (lock) {
+                    try {
+                        Thread.sleep(50);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }).join();
+            pinning.close();
+
+            assertEquals(1, pinning.getPinned());
+            String location = pinning.getLocations().keySet().iterator().next();
+            assertTrue(location, location.startsWith(UnitOfWorkExecutorTest.class.getName()));
+        }
+    }
+
+    private long countItems() {
+        try (UnitOfWorkExecutor executor = UnitOfWorkExecutor.virtualThreads(entityManagerFactory)) {
+            return executor.inTransaction(entityManager -> entityManager
+                    .createQuery("select count(i) from jpa.shop.domain.Item i", Long.class)
+                    .getSingleResult());
+        }
+    }
+}